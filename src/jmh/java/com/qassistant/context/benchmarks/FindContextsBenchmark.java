@@ -0,0 +1,84 @@
+package com.qassistant.context.benchmarks;
+
+import com.qassistant.context.db.index.FlatVectorIndex;
+import com.qassistant.context.db.index.IndexHit;
+import com.qassistant.context.db.index.LexicalIndex;
+import com.qassistant.context.db.index.ReciprocalRankFusion;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The in-memory part of {@code RelationalDbService.findContexts}: the vector scan, the BM25 ranking
+ * and their fusion, over one project of synthetic sections. Database reads and the embedding
+ * request are left out, they are measured by the service metrics in production.
+ * <p>
+ * Vectors have 256 dimensions so that the largest project still fits a benchmark heap; scan cost
+ * grows linearly with the dimension.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FindContextsBenchmark {
+    private static final int DIMENSION = 256;
+    private static final int LIMIT = 10;
+    private static final int BATCH = 64;
+    @Param({"10000", "100000", "1000000"})
+    public int sections;
+    private FlatVectorIndex vectorIndex;
+    private LexicalIndex lexicalIndex;
+    private float[] query;
+    private float[][] queries;
+    private String question;
+
+    @Setup
+    public void setUp() {
+        Random random = SyntheticCorpus.random();
+        this.vectorIndex = new FlatVectorIndex();
+        this.lexicalIndex = new LexicalIndex();
+        for (int i = 0; i < this.sections; i++) {
+            String id = "section-" + i;
+            this.vectorIndex.add(id, SyntheticCorpus.vector(random, DIMENSION), 0);
+            this.lexicalIndex.add(id, SyntheticCorpus.section(random));
+        }
+        this.query = SyntheticCorpus.vector(random, DIMENSION);
+        this.queries = new float[BATCH][];
+        for (int i = 0; i < BATCH; i++) {
+            this.queries[i] = SyntheticCorpus.vector(random, DIMENSION);
+        }
+        this.question = SyntheticCorpus.question(random);
+    }
+
+    @Benchmark
+    public List<IndexHit> vectorSearch() {
+        return this.vectorIndex.search(this.query, LIMIT);
+    }
+
+    @Benchmark
+    public List<IndexHit> lexicalSearch() {
+        return this.lexicalIndex.search(this.question, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> hybridSearch() {
+        return ReciprocalRankFusion.fuse(60, LIMIT, this.vectorIndex.search(this.query, LIMIT),
+                this.lexicalIndex.search(this.question, LIMIT));
+    }
+
+    /**
+     * One batch of {@value #BATCH} queries scored in a single pass; divide by the batch size to
+     * compare with {@link #vectorSearch()}.
+     */
+    @Benchmark
+    public List<List<IndexHit>> vectorSearchBatch() {
+        return this.vectorIndex.searchBatch(this.queries, LIMIT);
+    }
+}
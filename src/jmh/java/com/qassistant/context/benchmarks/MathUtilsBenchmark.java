@@ -0,0 +1,58 @@
+package com.qassistant.context.benchmarks;
+
+import com.qassistant.context.utils.MathUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cosine similarity of one pair of embeddings, for the float32 path used by the indexes and the
+ * boxed path still used where embeddings come straight from the API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MathUtilsBenchmark {
+    @Param({"384", "1536"})
+    public int dimension;
+    private float[] a;
+    private float[] b;
+    private List<Double> boxedA;
+    private List<Double> boxedB;
+
+    @Setup
+    public void setUp() {
+        Random random = SyntheticCorpus.random();
+        this.a = SyntheticCorpus.vector(random, this.dimension);
+        this.b = SyntheticCorpus.vector(random, this.dimension);
+        this.boxedA = boxed(this.a);
+        this.boxedB = boxed(this.b);
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return MathUtils.cosineSimilarity(this.a, this.b);
+    }
+
+    @Benchmark
+    public double cosineSimilarityBoxed() {
+        return MathUtils.cosineSimilarity(this.boxedA, this.boxedB);
+    }
+
+    private static List<Double> boxed(float[] vector) {
+        List<Double> values = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            values.add((double) value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,93 @@
+package com.qassistant.context.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Seeded synthetic inputs for the benchmarks, so every run and every release scores the same data.
+ * <p>
+ * Source files are Java-like lines with identifiers drawn from a fixed vocabulary; file lengths
+ * follow a log-normal distribution around 200 lines, the median of the repositories we index.
+ */
+public final class SyntheticCorpus {
+    public static final long SEED = 20240611L;
+    private static final String[] WORDS = {
+            "project", "section", "embedding", "context", "index", "vector", "weight", "prompt",
+            "file", "chunk", "checksum", "repository", "service", "config", "request", "response",
+            "user", "session", "token", "search", "result", "query", "cache", "model", "distance"
+    };
+    private static final String[] TEMPLATES = {
+            "    private final %s %s;",
+            "    public %s get%s() {",
+            "        return this.%s.%s();",
+            "        if (%s == null) {",
+            "            throw new RuntimeException(\"No %s found for %s\");",
+            "        }",
+            "    }",
+            "        List<%s> %s = new ArrayList<>();",
+            "        // Keeps the %s of every %s in sync",
+            "        %s.forEach(item -> %s.add(item));",
+            "",
+    };
+
+    private SyntheticCorpus() {
+    }
+
+    public static Random random() {
+        return new Random(SEED);
+    }
+
+    public static float[] vector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * @return a source file of the given number of lines
+     */
+    public static String sourceFile(Random random, int lines) {
+        StringBuilder text = new StringBuilder(lines * 40);
+        text.append("package com.example.").append(word(random)).append(";\n\n");
+        text.append("public class ").append(identifier(random, true)).append(" {\n");
+        for (int i = 0; i < lines; i++) {
+            String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            text.append(String.format(template, identifier(random, true), identifier(random, false))).append('\n');
+        }
+        return text.append("}\n").toString();
+    }
+
+    /**
+     * @return a source file with a realistic, randomly drawn number of lines
+     */
+    public static String sourceFile(Random random) {
+        int lines = (int) Math.min(20_000, Math.max(5, Math.exp(Math.log(200) + random.nextGaussian() * 0.9)));
+        return sourceFile(random, lines);
+    }
+
+    /**
+     * @return the content of one indexed section, a few lines of a source file
+     */
+    public static String section(Random random) {
+        return sourceFile(random, 4 + random.nextInt(12));
+    }
+
+    /**
+     * @return a question about the corpus, as users ask it in chat
+     */
+    public static String question(Random random) {
+        return "How does " + identifier(random, true) + " update the " + word(random) + " " + word(random) + "?";
+    }
+
+    private static String identifier(Random random, boolean type) {
+        String first = word(random);
+        String second = word(random);
+        String head = type ? Character.toUpperCase(first.charAt(0)) + first.substring(1) : first;
+        return head + Character.toUpperCase(second.charAt(0)) + second.substring(1);
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,40 @@
+package com.qassistant.context.benchmarks;
+
+import com.qassistant.context.utils.TextUtils;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Hashing of file content for change detection and splitting of answers into Slack messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextUtilsBenchmark {
+    @Param({"50", "500", "5000"})
+    public int lines;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        this.text = SyntheticCorpus.sourceFile(SyntheticCorpus.random(), this.lines);
+    }
+
+    @Benchmark
+    public String generateSha256() {
+        return TextUtils.generateSha256(this.text);
+    }
+
+    @Benchmark
+    public List<String> splitTextWithMarkdown() {
+        return TextUtils.splitTextWithMarkdown(this.text, 2800);
+    }
+}
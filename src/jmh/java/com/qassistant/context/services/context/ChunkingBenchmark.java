@@ -0,0 +1,38 @@
+package com.qassistant.context.services.context;
+
+import com.qassistant.context.benchmarks.SyntheticCorpus;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Splitting of source files into sections before they are embedded, at the default chunk size.
+ * Lives in the service package to reach the protected splitter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkingBenchmark {
+    private final AbstractContextService service = new AbstractContextService() {
+    };
+    @Param({"50", "500", "5000"})
+    public int lines;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        this.text = SyntheticCorpus.sourceFile(SyntheticCorpus.random(), this.lines);
+    }
+
+    @Benchmark
+    public List<String> splitTextIntoChunks() {
+        return this.service.splitTextIntoChunks(this.text, 1000);
+    }
+}
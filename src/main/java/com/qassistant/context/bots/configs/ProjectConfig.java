@@ -1,11 +1,13 @@
 package com.qassistant.context.bots.configs;
 
+import com.qassistant.context.entities.ContextFilter;
 import org.springframework.stereotype.Component;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class ProjectConfig {
     private final ConcurrentHashMap<String, String> userProjectMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ContextFilter> userFilterMap = new ConcurrentHashMap<>();
 
     public void setProjectForUser(String userId, String project) {
         userProjectMap.put(userId, project);
@@ -18,4 +20,16 @@ public class ProjectConfig {
     public boolean isProjectSet(String userId) {
         return userProjectMap.containsKey(userId);
     }
+
+    public void setFilterForUser(String userId, ContextFilter filter) {
+        if (filter.isEmpty()) {
+            userFilterMap.remove(userId);
+        } else {
+            userFilterMap.put(userId, filter);
+        }
+    }
+
+    public ContextFilter getFilterForUser(String userId) {
+        return userFilterMap.getOrDefault(userId, ContextFilter.NONE);
+    }
 }
\ No newline at end of file
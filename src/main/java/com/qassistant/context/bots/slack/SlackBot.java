@@ -4,6 +4,7 @@ import com.qassistant.context.bots.configs.ProjectConfig;
 import com.qassistant.context.bots.configs.SlackConfig;
 import com.qassistant.context.bots.slack.events.MessageToBotHandler;
 import com.qassistant.context.bots.slack.events.RegenerateHandler;
+import com.qassistant.context.entities.ContextFilter;
 import com.slack.api.bolt.App;
 import com.slack.api.bolt.AppConfig;
 import com.slack.api.bolt.socket_mode.SocketModeApp;
@@ -81,6 +82,12 @@ public class SlackBot {
             return ctx.ack("Project set to: " + projectId);
         });
 
+        app.command("/setfilter", (req, ctx) -> {
+            ContextFilter filter = ContextFilter.parse(req.getPayload().getText());
+            projectConfig.setFilterForUser(req.getPayload().getUserId(), filter);
+            return ctx.ack(filter.isEmpty() ? "Filter cleared" : "Filter set to: " + filter);
+        });
+
         SocketModeApp socketModeApp = new SocketModeApp(slackConfig.getAppToken(), app);
         socketModeApp.startAsync();
         return socketModeApp;
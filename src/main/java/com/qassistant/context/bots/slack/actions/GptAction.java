@@ -91,7 +91,8 @@ public class GptAction implements AiAction<Message> {
                 SystemMessageContext systemMessageContext = contextFormatter.formatContextToSystemMessage(
                         project,
                         StyleWithContext.CODE_CONTEXT.getSystemMessage(),
-                        text);
+                        text,
+                        projectConfig.getFilterForUser(userId));
                 chatContextService.setSystemMessage(systemMessageContext.getSystemMessage(), String.valueOf(ts));
                 chatText = chatContextService.completionChat(text, String.valueOf(ts));
             } catch (Exception e) {
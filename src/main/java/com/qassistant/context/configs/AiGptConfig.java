@@ -8,21 +8,26 @@ import org.springframework.ai.openai.OpenAiEmbeddingClient;
 import org.springframework.ai.openai.OpenAiEmbeddingOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.openai.api.OpenAiImageApi;
-import org.springframework.ai.retry.RetryUtils;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.support.RetryTemplate;
 
 @Configuration
 @ConfigurationProperties(value="application.gpt")
 public class AiGptConfig {
     private String secretKey;
     private String embeddingsModel;
+    private Integer embeddingDimensions;
+    private Integer embeddingBatchSize;
+    private Integer embeddingBatchTokens;
     private String chatModel;
     private Integer maxTokens;
     private Integer chatContextLength;
     private Integer diffThreshold;
+    // Embedding and chat calls are retried by the ApiGovernor, which has to see every rate limit response.
+    private static final RetryTemplate NO_RETRY_TEMPLATE = RetryTemplate.builder().maxAttempts(1).build();
 
     public void setSecretKey(String secretKey) {
         this.secretKey = secretKey;
@@ -40,6 +45,39 @@ public class AiGptConfig {
         this.embeddingsModel = embeddingsModel;
     }
 
+    /**
+     * @return the size of the vectors the embeddings model returns, part of the section cache key
+     */
+    public Integer getEmbeddingDimensions() {
+        return Optional.ofNullable(this.embeddingDimensions).orElse(1536);
+    }
+
+    public void setEmbeddingDimensions(Integer embeddingDimensions) {
+        this.embeddingDimensions = embeddingDimensions;
+    }
+
+    /**
+     * @return the maximum number of inputs per embeddings request, the API accepts up to 2048
+     */
+    public Integer getEmbeddingBatchSize() {
+        return Optional.ofNullable(this.embeddingBatchSize).orElse(512);
+    }
+
+    public void setEmbeddingBatchSize(Integer embeddingBatchSize) {
+        this.embeddingBatchSize = embeddingBatchSize;
+    }
+
+    /**
+     * @return the maximum estimated number of tokens per embeddings request, below the API limit of 300000
+     */
+    public Integer getEmbeddingBatchTokens() {
+        return Optional.ofNullable(this.embeddingBatchTokens).orElse(200000);
+    }
+
+    public void setEmbeddingBatchTokens(Integer embeddingBatchTokens) {
+        this.embeddingBatchTokens = embeddingBatchTokens;
+    }
+
     public String getChatModel() {
         return Optional.ofNullable(this.chatModel).orElse("gpt-4-turbo-preview");
     }
@@ -87,12 +125,13 @@ public class AiGptConfig {
     @Bean
     @ConditionalOnMissingBean
     public OpenAiEmbeddingClient getEmbeddingClient(OpenAiApi openAiApi) {
-        return new OpenAiEmbeddingClient(openAiApi, MetadataMode.EMBED, OpenAiEmbeddingOptions.builder().withModel(this.embeddingsModel).withUser("user").build(), RetryUtils.DEFAULT_RETRY_TEMPLATE);
+        return new OpenAiEmbeddingClient(openAiApi, MetadataMode.EMBED, OpenAiEmbeddingOptions.builder().withModel(getEmbeddingsModel()).withUser("user").build(), NO_RETRY_TEMPLATE);
     }
 
     @Bean
     @ConditionalOnMissingBean
     public OpenAiChatClient getChatClient(OpenAiApi openAiApi) {
-        return new OpenAiChatClient(openAiApi, OpenAiChatOptions.builder().withModel(this.chatModel).withMaxTokens(this.maxTokens).withUser("user").build());
+        // No function callbacks are registered, the client is only used for plain completions.
+        return new OpenAiChatClient(openAiApi, OpenAiChatOptions.builder().withModel(this.chatModel).withMaxTokens(this.maxTokens).withUser("user").build(), null, NO_RETRY_TEMPLATE);
     }
 }
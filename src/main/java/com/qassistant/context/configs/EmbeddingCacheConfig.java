@@ -0,0 +1,44 @@
+package com.qassistant.context.configs;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(value="application.embedding-cache")
+public class EmbeddingCacheConfig {
+    private Long maxBytes;
+    private Duration ttl;
+    private String diskDirectory;
+
+    /**
+     * @return the memory budget of cached query embeddings
+     */
+    public long getMaxBytes() {
+        return Optional.ofNullable(this.maxBytes).orElse(64L * 1024 * 1024);
+    }
+
+    public void setMaxBytes(Long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Duration getTtl() {
+        return Optional.ofNullable(this.ttl).orElse(Duration.ofHours(24));
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the directory of the on-disk tier, or null to cache in memory only
+     */
+    public String getDiskDirectory() {
+        return this.diskDirectory;
+    }
+
+    public void setDiskDirectory(String diskDirectory) {
+        this.diskDirectory = diskDirectory;
+    }
+}
@@ -0,0 +1,95 @@
+package com.qassistant.context.configs;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(value="application.governor")
+public class GovernorConfig {
+    private Integer requestsPerMinute;
+    private Integer tokensPerMinute;
+    private Integer initialConcurrency;
+    private Integer maxConcurrency;
+    private Duration latencyTarget;
+    private Integer maxRetries;
+    private Duration baseBackoff;
+    private Duration maxBackoff;
+
+    /**
+     * @return the request rate limit of the API key, shared by embedding and chat calls
+     */
+    public int getRequestsPerMinute() {
+        return Optional.ofNullable(this.requestsPerMinute).orElse(3000);
+    }
+
+    public void setRequestsPerMinute(Integer requestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    /**
+     * @return the token rate limit of the API key, shared by embedding and chat calls
+     */
+    public int getTokensPerMinute() {
+        return Optional.ofNullable(this.tokensPerMinute).orElse(1000000);
+    }
+
+    public void setTokensPerMinute(Integer tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public int getInitialConcurrency() {
+        return Optional.ofNullable(this.initialConcurrency).orElse(4);
+    }
+
+    public void setInitialConcurrency(Integer initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    /**
+     * @return the upper bound of concurrent calls, also the number of embedding threads of an ingest
+     */
+    public int getMaxConcurrency() {
+        return Optional.ofNullable(this.maxConcurrency).orElse(16);
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return the call latency above which concurrency is reduced as if the API was overloaded
+     */
+    public Duration getLatencyTarget() {
+        return Optional.ofNullable(this.latencyTarget).orElse(Duration.ofSeconds(20));
+    }
+
+    public void setLatencyTarget(Duration latencyTarget) {
+        this.latencyTarget = latencyTarget;
+    }
+
+    public int getMaxRetries() {
+        return Optional.ofNullable(this.maxRetries).orElse(5);
+    }
+
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public Duration getBaseBackoff() {
+        return Optional.ofNullable(this.baseBackoff).orElse(Duration.ofSeconds(1));
+    }
+
+    public void setBaseBackoff(Duration baseBackoff) {
+        this.baseBackoff = baseBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return Optional.ofNullable(this.maxBackoff).orElse(Duration.ofSeconds(60));
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
@@ -0,0 +1,60 @@
+package com.qassistant.context.configs;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(value="application.graph")
+public class GraphConfig {
+    private Integer ingestBatchSize;
+    private Duration schemaAwaitTimeout;
+    private Integer deleteBatchSize;
+    private Integer overFetchFactor;
+
+    /**
+     * @return the number of documents written per transaction, with their files, when projects are ingested into Neo4j
+     */
+    public int getIngestBatchSize() {
+        return Optional.ofNullable(this.ingestBatchSize).orElse(500);
+    }
+
+    public void setIngestBatchSize(Integer ingestBatchSize) {
+        this.ingestBatchSize = ingestBatchSize;
+    }
+
+    /**
+     * @return how long startup waits for the lookup indexes and constraints to come online
+     */
+    public Duration getSchemaAwaitTimeout() {
+        return Optional.ofNullable(this.schemaAwaitTimeout).orElse(Duration.ofMinutes(5));
+    }
+
+    public void setSchemaAwaitTimeout(Duration schemaAwaitTimeout) {
+        this.schemaAwaitTimeout = schemaAwaitTimeout;
+    }
+
+    /**
+     * @return the number of nodes deleted per transaction when projects and files are removed from Neo4j
+     */
+    public int getDeleteBatchSize() {
+        return Optional.ofNullable(this.deleteBatchSize).orElse(1000);
+    }
+
+    public void setDeleteBatchSize(Integer deleteBatchSize) {
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    /**
+     * @return how many times more neighbours than requested are read from the vector index, so
+     *         that filtering and weight adjustment still leave enough candidates
+     */
+    public int getOverFetchFactor() {
+        return Optional.ofNullable(this.overFetchFactor).orElse(4);
+    }
+
+    public void setOverFetchFactor(Integer overFetchFactor) {
+        this.overFetchFactor = overFetchFactor;
+    }
+}
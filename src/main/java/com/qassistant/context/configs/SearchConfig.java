@@ -0,0 +1,284 @@
+package com.qassistant.context.configs;
+
+import com.qassistant.context.db.index.ParallelScanner;
+import com.qassistant.context.db.index.QuantizationCalibration;
+import com.qassistant.context.db.index.VectorIndexEngine;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(value="application.search")
+public class SearchConfig {
+    private VectorIndexEngine engine;
+    private String indexDirectory;
+    private Map<String, VectorIndexEngine> projectEngines;
+    private Integer hnswM;
+    private Integer hnswEfConstruction;
+    private Integer hnswEfSearch;
+    private QuantizationCalibration int8Calibration;
+    private Integer int8TrainingSize;
+    private Integer int8RerankFactor;
+    private Boolean int8KeepFullVectors;
+    private Integer pqM;
+    private Integer pqTrainingSize;
+    private Integer pqIterations;
+    private Integer pqRerankFactor;
+    private Double pqDriftTolerance;
+    private Integer parallelScanThreshold;
+    private Integer scanPartitionBytes;
+    private Long indexCacheMaxBytes;
+    private Boolean hybridSearch;
+    private Long lexicalCacheMaxBytes;
+    private Long fileMapCacheMaxBytes;
+    private Integer rrfK;
+    private Integer batchSize;
+
+    public VectorIndexEngine getEngine() {
+        return Optional.ofNullable(this.engine).orElse(VectorIndexEngine.FLAT);
+    }
+
+    public void setEngine(VectorIndexEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return the directory flat project indexes are persisted to, or null to keep them in memory only
+     */
+    public String getIndexDirectory() {
+        return this.indexDirectory;
+    }
+
+    public void setIndexDirectory(String indexDirectory) {
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * @return engines overriding the default one, keyed by project id or project name
+     */
+    public Map<String, VectorIndexEngine> getProjectEngines() {
+        return Optional.ofNullable(this.projectEngines).orElse(Collections.emptyMap());
+    }
+
+    public void setProjectEngines(Map<String, VectorIndexEngine> projectEngines) {
+        this.projectEngines = projectEngines;
+    }
+
+    public int getHnswM() {
+        return Optional.ofNullable(this.hnswM).orElse(16);
+    }
+
+    public void setHnswM(Integer hnswM) {
+        this.hnswM = hnswM;
+    }
+
+    public int getHnswEfConstruction() {
+        return Optional.ofNullable(this.hnswEfConstruction).orElse(200);
+    }
+
+    public void setHnswEfConstruction(Integer hnswEfConstruction) {
+        this.hnswEfConstruction = hnswEfConstruction;
+    }
+
+    public int getHnswEfSearch() {
+        return Optional.ofNullable(this.hnswEfSearch).orElse(64);
+    }
+
+    public void setHnswEfSearch(Integer hnswEfSearch) {
+        this.hnswEfSearch = hnswEfSearch;
+    }
+
+    public QuantizationCalibration getInt8Calibration() {
+        return Optional.ofNullable(this.int8Calibration).orElse(QuantizationCalibration.PER_DIMENSION);
+    }
+
+    public void setInt8Calibration(QuantizationCalibration int8Calibration) {
+        this.int8Calibration = int8Calibration;
+    }
+
+    /**
+     * @return the number of sections the int8 ranges are calibrated on
+     */
+    public int getInt8TrainingSize() {
+        return Optional.ofNullable(this.int8TrainingSize).orElse(2000);
+    }
+
+    public void setInt8TrainingSize(Integer int8TrainingSize) {
+        this.int8TrainingSize = int8TrainingSize;
+    }
+
+    /**
+     * @return how many int8 candidates per requested entry are re-scored with full precision
+     */
+    public int getInt8RerankFactor() {
+        return Optional.ofNullable(this.int8RerankFactor).orElse(4);
+    }
+
+    public void setInt8RerankFactor(Integer int8RerankFactor) {
+        this.int8RerankFactor = int8RerankFactor;
+    }
+
+    /**
+     * @return whether float32 vectors are kept in memory next to the int8 codes instead of being loaded for re-scoring
+     */
+    public boolean isInt8KeepFullVectors() {
+        return Optional.ofNullable(this.int8KeepFullVectors).orElse(false);
+    }
+
+    public void setInt8KeepFullVectors(Boolean int8KeepFullVectors) {
+        this.int8KeepFullVectors = int8KeepFullVectors;
+    }
+
+    /**
+     * @return the number of product quantization sub-spaces, i.e. bytes stored per section
+     */
+    public int getPqM() {
+        return Optional.ofNullable(this.pqM).orElse(96);
+    }
+
+    public void setPqM(Integer pqM) {
+        this.pqM = pqM;
+    }
+
+    /**
+     * @return the number of sections the product quantization codebooks are trained on
+     */
+    public int getPqTrainingSize() {
+        return Optional.ofNullable(this.pqTrainingSize).orElse(5000);
+    }
+
+    public void setPqTrainingSize(Integer pqTrainingSize) {
+        this.pqTrainingSize = pqTrainingSize;
+    }
+
+    public int getPqIterations() {
+        return Optional.ofNullable(this.pqIterations).orElse(10);
+    }
+
+    public void setPqIterations(Integer pqIterations) {
+        this.pqIterations = pqIterations;
+    }
+
+    public int getPqRerankFactor() {
+        return Optional.ofNullable(this.pqRerankFactor).orElse(8);
+    }
+
+    public void setPqRerankFactor(Integer pqRerankFactor) {
+        this.pqRerankFactor = pqRerankFactor;
+    }
+
+    /**
+     * @return how many times the training reconstruction error newly indexed sections may reach before codebooks are retrained
+     */
+    public double getPqDriftTolerance() {
+        return Optional.ofNullable(this.pqDriftTolerance).orElse(1.5);
+    }
+
+    public void setPqDriftTolerance(Double pqDriftTolerance) {
+        this.pqDriftTolerance = pqDriftTolerance;
+    }
+
+    /**
+     * @return the number of sections from which a project scan is split across cores
+     */
+    public int getParallelScanThreshold() {
+        return Optional.ofNullable(this.parallelScanThreshold).orElse(ParallelScanner.DEFAULT_THRESHOLD);
+    }
+
+    public void setParallelScanThreshold(Integer parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    /**
+     * @return the approximate amount of vector data, in bytes, scored by one scan partition
+     */
+    public int getScanPartitionBytes() {
+        return Optional.ofNullable(this.scanPartitionBytes).orElse(ParallelScanner.DEFAULT_PARTITION_BYTES);
+    }
+
+    public void setScanPartitionBytes(Integer scanPartitionBytes) {
+        this.scanPartitionBytes = scanPartitionBytes;
+    }
+
+    /**
+     * @return the memory budget of project indexes kept in memory between searches
+     */
+    public long getIndexCacheMaxBytes() {
+        return Optional.ofNullable(this.indexCacheMaxBytes).orElse(1024L * 1024 * 1024);
+    }
+
+    public void setIndexCacheMaxBytes(Long indexCacheMaxBytes) {
+        this.indexCacheMaxBytes = indexCacheMaxBytes;
+    }
+
+    /**
+     * @return whether vector hits are fused with BM25 hits over section content
+     */
+    public boolean isHybridSearch() {
+        return Optional.ofNullable(this.hybridSearch).orElse(true);
+    }
+
+    public void setHybridSearch(Boolean hybridSearch) {
+        this.hybridSearch = hybridSearch;
+    }
+
+    /**
+     * @return the memory budget of lexical project indexes kept in memory between searches
+     */
+    public long getLexicalCacheMaxBytes() {
+        return Optional.ofNullable(this.lexicalCacheMaxBytes).orElse(256L * 1024 * 1024);
+    }
+
+    public void setLexicalCacheMaxBytes(Long lexicalCacheMaxBytes) {
+        this.lexicalCacheMaxBytes = lexicalCacheMaxBytes;
+    }
+
+    /**
+     * @return the memory budget of the per-project maps from file paths to sections that path filters are resolved with
+     */
+    public long getFileMapCacheMaxBytes() {
+        return Optional.ofNullable(this.fileMapCacheMaxBytes).orElse(64L * 1024 * 1024);
+    }
+
+    public void setFileMapCacheMaxBytes(Long fileMapCacheMaxBytes) {
+        this.fileMapCacheMaxBytes = fileMapCacheMaxBytes;
+    }
+
+    /**
+     * @return the rank damping constant of reciprocal rank fusion
+     */
+    public int getRrfK() {
+        return Optional.ofNullable(this.rrfK).orElse(60);
+    }
+
+    public void setRrfK(Integer rrfK) {
+        this.rrfK = rrfK;
+    }
+
+    /**
+     * @return the number of prompts embedded and scored together by batch context requests
+     */
+    public int getBatchSize() {
+        return Optional.ofNullable(this.batchSize).orElse(256);
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Resolves the engine of a project, looking up overrides by id first and by name second.
+     *
+     * @param projectId the project id
+     * @param projectName the project name
+     * @return the engine to build the project index with
+     */
+    public VectorIndexEngine getEngineForProject(String projectId, String projectName) {
+        Map<String, VectorIndexEngine> overrides = getProjectEngines();
+        return Optional.ofNullable(overrides.get(projectId))
+                .or(() -> Optional.ofNullable(projectName).map(overrides::get))
+                .orElse(getEngine());
+    }
+}
@@ -0,0 +1,58 @@
+package com.qassistant.context.configs;
+
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(value="application.section-cache")
+public class SectionCacheConfig {
+    private Long memoryMaxBytes;
+    private String directory;
+    private Long segmentBytes;
+    private Long diskMaxBytes;
+
+    /**
+     * @return the memory budget of cached section embeddings
+     */
+    public long getMemoryMaxBytes() {
+        return Optional.ofNullable(this.memoryMaxBytes).orElse(256L * 1024 * 1024);
+    }
+
+    public void setMemoryMaxBytes(Long memoryMaxBytes) {
+        this.memoryMaxBytes = memoryMaxBytes;
+    }
+
+    /**
+     * @return the directory of the segment files, or null to cache in memory only
+     */
+    public String getDirectory() {
+        return this.directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the size at which the active segment file is sealed and a new one is started
+     */
+    public long getSegmentBytes() {
+        return Optional.ofNullable(this.segmentBytes).orElse(64L * 1024 * 1024);
+    }
+
+    public void setSegmentBytes(Long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * @return the disk budget of all segment files, beyond which cold entries are dropped by compaction
+     */
+    public long getDiskMaxBytes() {
+        return Optional.ofNullable(this.diskMaxBytes).orElse(4L * 1024 * 1024 * 1024);
+    }
+
+    public void setDiskMaxBytes(Long diskMaxBytes) {
+        this.diskMaxBytes = diskMaxBytes;
+    }
+}
@@ -1,24 +1,37 @@
 package com.qassistant.context.controllers;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qassistant.context.configs.SearchConfig;
 import com.qassistant.context.db.service.DbService;
+import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.PromptContext;
 import com.qassistant.context.services.PromptsClassificationService;
+import com.qassistant.context.utils.Mapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 @RestController
 @Tag(name = "Classification")
@@ -27,11 +40,15 @@ import java.nio.file.StandardCopyOption;
 @ConditionalOnBean(DbService.class)
 public class ClassificationController {
     private final PromptsClassificationService classificationService;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private final ObjectWriter lineWriter = Mapper.getObjectMapper().writer().without(SerializationFeature.INDENT_OUTPUT);
     private final DbService dbService;
+    private final int batchSize;
 
-    public ClassificationController(PromptsClassificationService classificationService, DbService dbService) {
+    public ClassificationController(PromptsClassificationService classificationService, DbService dbService, SearchConfig searchConfig) {
         this.classificationService = classificationService;
         this.dbService = dbService;
+        this.batchSize = searchConfig.getBatchSize();
     }
 
     @Operation(summary = "Create classification", description = "Create a new classification by uploading a file.")
@@ -53,9 +70,38 @@ public class ClassificationController {
     public ResponseEntity<Object> classify(
             @Parameter(description = "Project identifier", required = true) @RequestParam String projectId,
             @Parameter(description = "Prompt to classify", required = true) @RequestParam String prompt,
-            @Parameter(description = "Number of classification options", required = false) @RequestParam(defaultValue = "3") int options) {
+            @Parameter(description = "Number of classification options", required = false) @RequestParam(defaultValue = "3") int options,
+            @Parameter(description = "Comma-separated path globs limiting the searched files, e.g. src/main/**,*.yaml", required = false) @RequestParam(required = false) String filter) {
 
-        Object context = dbService.findContext(projectId, prompt, options);
+        Object context = dbService.findContext(projectId, prompt, options, ContextFilter.parse(filter));
         return ResponseEntity.ok(context);
     }
+
+    @Operation(summary = "Classify prompts in bulk", description = "Classify many prompts of a project, streaming one JSON line per prompt as soon as its batch is scored.")
+    @ApiResponse(responseCode = "200", description = "Stream of classification results in prompt order")
+    @PostMapping(path = "/classifyBatch", consumes = "application/json", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> classifyBatch(
+            @Parameter(description = "Project identifier", required = true) @RequestParam String projectId,
+            @Parameter(description = "Number of classification options per prompt", required = false) @RequestParam(defaultValue = "3") int options,
+            @Parameter(description = "Comma-separated path globs limiting the searched files, e.g. src/main/**,*.yaml", required = false) @RequestParam(required = false) String filter,
+            @Parameter(description = "Prompts to classify", required = true) @RequestBody List<String> prompts) {
+
+        ContextFilter contextFilter = ContextFilter.parse(filter);
+        StreamingResponseBody body = outputStream -> {
+            for (int from = 0; from < prompts.size(); from += batchSize) {
+                List<String> batch = prompts.subList(from, Math.min(from + batchSize, prompts.size()));
+                List<List<Context>> contexts = dbService.findContextBatch(projectId, batch, options, contextFilter);
+                for (int i = 0; i < batch.size(); i++) {
+                    writeLine(outputStream, new PromptContext(from + i, batch.get(i), contexts.get(i)));
+                }
+                outputStream.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream outputStream, Object value) throws IOException {
+        outputStream.write(lineWriter.writeValueAsBytes(value));
+        outputStream.write('\n');
+    }
 }
@@ -1,6 +1,7 @@
 package com.qassistant.context.controllers;
 
 import com.qassistant.context.db.service.DbService;
+import com.qassistant.context.entities.ContextFilter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -32,9 +33,10 @@ public class ContextController {
     public ResponseEntity<Object> getContext(
             @Parameter(description = "Project ID for which the context is fetched") @RequestParam String projectId,
             @Parameter(description = "Prompt to query within the project") @RequestParam String prompt,
-            @Parameter(description = "Number of context entries to return", required = false) @RequestParam(defaultValue = "3") int entries) {
+            @Parameter(description = "Number of context entries to return", required = false) @RequestParam(defaultValue = "3") int entries,
+            @Parameter(description = "Comma-separated path globs limiting the searched files, e.g. src/main/**,*.yaml", required = false) @RequestParam(required = false) String filter) {
 
-        Object contextData = contextDbService.findContext(projectId, prompt, entries);
+        Object contextData = contextDbService.findContext(projectId, prompt, entries, ContextFilter.parse(filter));
         return new ResponseEntity<>(contextData, HttpStatus.OK);
     }
 }
@@ -2,6 +2,7 @@ package com.qassistant.context.controllers;
 
 import com.qassistant.context.db.dbEntity.Project;
 import com.qassistant.context.db.service.DbService;
+import com.qassistant.context.entities.DeletionJob;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -41,12 +42,23 @@ public class ProjectController {
     }
 
     @Operation(description = "Delete project")
-    @ApiResponses(@ApiResponse(responseCode = "200", description = "OK"))
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "Deleted"),
+            @ApiResponse(responseCode = "202", description = "Deletion running in the background, poll /deletionJob")})
     @DeleteMapping(path = "/deleteProject")
     public ResponseEntity<Object> deleteProject(
             @Parameter(description = "project", required = true) @RequestParam(name = "project") String projectId) {
-        dbService.deleteProject(projectId);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return deletionResponse(dbService.deleteProject(projectId));
+    }
+
+    @Operation(description = "Progress of a project or file deletion")
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "404", description = "Unknown or expired job")})
+    @GetMapping(path = "/deletionJob", produces = "application/json")
+    public ResponseEntity<Object> deletionJob(
+            @Parameter(description = "job id", required = true) @RequestParam(name = "id") String jobId) {
+        return dbService.findDeletionJob(jobId)
+                .<ResponseEntity<Object>>map(job -> new ResponseEntity<>(job, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @Operation(description = "Count files of project")
@@ -79,22 +91,36 @@ public class ProjectController {
         return new ResponseEntity<>(updatedWeight, HttpStatus.OK);
     }
 
-    @Operation(description = "Delete all files from the project")
+    @Operation(description = "Recall@k of the project search engine against the exact scan")
     @ApiResponses(@ApiResponse(responseCode = "200", description = "OK"))
+    @GetMapping(path = "/recallReport", produces = "application/json")
+    public ResponseEntity<Object> recallReport(
+            @Parameter(description = "project", required = true) @RequestParam(name = "project") String projectId,
+            @Parameter(description = "k", required = false) @RequestParam(name = "k", defaultValue = "10") int k,
+            @Parameter(description = "samples", required = false) @RequestParam(name = "samples", defaultValue = "100") int samples) {
+        return new ResponseEntity<>(dbService.evaluateRecall(projectId, k, samples), HttpStatus.OK);
+    }
+
+    @Operation(description = "Delete all files from the project")
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "Deleted"),
+            @ApiResponse(responseCode = "202", description = "Deletion running in the background, poll /deletionJob")})
     @DeleteMapping(path = "/deleteFilesFromTheProject")
     public ResponseEntity<Object> deleteAllFilesFromProject(
             @Parameter(description = "project", required = true) @RequestParam(name = "project") String projectId) {
-        dbService.deleteAllFilesByProject(projectId);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return deletionResponse(dbService.deleteAllFilesByProject(projectId));
     }
 
     @Operation(description = "Delete file from the project by name")
-    @ApiResponses(@ApiResponse(responseCode = "200", description = "OK"))
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "Deleted"),
+            @ApiResponse(responseCode = "202", description = "Deletion running in the background, poll /deletionJob")})
     @DeleteMapping(path = "/deleteFileFromTheProjectByName")
     public ResponseEntity<Object> deleteFileFromProjectByName(
             @Parameter(description = "project", required = true) @RequestParam(name = "project") String projectId,
             @Parameter(description = "fileName", required = true) @RequestParam(name = "fileName") String fileName) {
-        dbService.deleteFileByProjectAndName(projectId, fileName);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return deletionResponse(dbService.deleteFileByProjectAndName(projectId, fileName));
+    }
+
+    private static ResponseEntity<Object> deletionResponse(DeletionJob job) {
+        return new ResponseEntity<>(job, job.isFinished() ? HttpStatus.OK : HttpStatus.ACCEPTED);
     }
 }
\ No newline at end of file
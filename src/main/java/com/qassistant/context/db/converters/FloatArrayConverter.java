@@ -0,0 +1,52 @@
+package com.qassistant.context.db.converters;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Stores embedding vectors as a compact little-endian float32 byte array.
+ * A 1536-dimensional vector takes 6 KB instead of ~30 KB of pretty-printed JSON.
+ */
+@Converter
+public class FloatArrayConverter implements AttributeConverter<float[], byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(float[] attribute) {
+        return attribute == null ? null : toBytes(attribute);
+    }
+
+    @Override
+    public float[] convertToEntityAttribute(byte[] dbData) {
+        return dbData == null ? null : fromBytes(dbData);
+    }
+
+    /**
+     * Encodes a vector as little-endian float32 values.
+     *
+     * @param values the vector to encode
+     * @return the encoded bytes, four per component
+     */
+    public static byte[] toBytes(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes little-endian float32 values produced by {@link #toBytes(float[])}.
+     *
+     * @param bytes the encoded vector
+     * @return the decoded vector
+     * @throws IllegalArgumentException if the length is not a multiple of four
+     */
+    public static float[] fromBytes(byte[] bytes) {
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("Embedding bytes length should be a multiple of " + Float.BYTES + ": " + bytes.length);
+        }
+        float[] values = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+}
@@ -1,8 +1,11 @@
 package com.qassistant.context.db.dbEntity;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.qassistant.context.db.converters.FloatArrayConverter;
 import com.qassistant.context.utils.Mapper;
+import com.qassistant.context.utils.MathUtils;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -11,6 +14,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
 import java.util.List;
 
 @Entity
@@ -23,9 +27,16 @@ public class FileSection {
     private File file;
     @Lob
     private String content;
+    /**
+     * Legacy JSON encoded embedding, kept only so rows written before the binary column
+     * existed can still be read and migrated. New rows never populate it.
+     */
     @Lob
-    @Column(length=100000)
-    private String embeddings;
+    @Column(name="embeddings", length=100000)
+    private String legacyEmbeddings;
+    @Convert(converter=FloatArrayConverter.class)
+    @Column(name="embedding", length=65536)
+    private float[] embedding;
     private double weight;
 
     public FileSection() {
@@ -75,11 +86,34 @@ public class FileSection {
         this.weight = weight;
     }
 
+    /**
+     * Stores the embedding normalized to unit length, so similarity against it is a dot product.
+     */
     public void setEmbeddings(List<Double> embeddings) {
-        this.embeddings = Mapper.serialize(embeddings);
+        this.embedding = MathUtils.normalize(MathUtils.toFloatArray(embeddings));
     }
 
-    public List<Double> getEmbeddings() {
-        return (List)Mapper.deserialize((String)this.embeddings, (TypeReference)new TypeReference<List<Double>>(){});
+    public float[] getEmbedding() {
+        return this.embedding;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
+
+    /**
+     * Moves the legacy JSON embedding into the binary column so the next flush rewrites the row.
+     */
+    public void migrateLegacyEmbeddings() {
+        decodeLegacyEmbeddings();
+        this.legacyEmbeddings = null;
+    }
+
+    @PostLoad
+    private void decodeLegacyEmbeddings() {
+        if (this.embedding == null && this.legacyEmbeddings != null) {
+            List<Double> values = Mapper.deserialize(this.legacyEmbeddings, new TypeReference<List<Double>>(){});
+            this.embedding = MathUtils.normalize(MathUtils.toFloatArray(values));
+        }
     }
 }
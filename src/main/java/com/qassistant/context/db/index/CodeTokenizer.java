@@ -0,0 +1,86 @@
+package com.qassistant.context.db.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lower-case terms the way identifiers are written in code.
+ * <p>
+ * Every run of letters, digits and underscores is an identifier. It is split at underscores,
+ * at lower-to-upper case changes, before the last capital of an acronym ({@code HTTPServer} gives
+ * {@code http}, {@code server}) and between letters and digits. Identifiers made of several parts
+ * are also kept whole, so a pasted class name or config key matches exactly before it matches
+ * its parts. Single letters are dropped as noise, numbers of any length are kept.
+ */
+public final class CodeTokenizer {
+
+    private CodeTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !isIdentifierChar(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && isIdentifierChar(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                addIdentifier(text, start, end, terms);
+            }
+            start = end;
+        }
+        return terms;
+    }
+
+    private static void addIdentifier(String text, int start, int end, List<String> terms) {
+        int before = terms.size();
+        int partStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || isBoundary(text, i, partStart)) {
+                addPart(text, partStart, i, terms);
+                partStart = text.length() > i && text.charAt(i) == '_' ? i + 1 : i;
+            }
+        }
+        if (terms.size() - before > 1) {
+            terms.add(text.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static boolean isBoundary(String text, int i, int partStart) {
+        char current = text.charAt(i);
+        if (current == '_') {
+            return true;
+        }
+        if (i == partStart) {
+            return false;
+        }
+        char previous = text.charAt(i - 1);
+        if (Character.isDigit(previous) != Character.isDigit(current)) {
+            return true;
+        }
+        if (Character.isLowerCase(previous) && Character.isUpperCase(current)) {
+            return true;
+        }
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+                && i + 1 < text.length() && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    private static void addPart(String text, int start, int end, List<String> terms) {
+        if (end - start > 1 || (end - start == 1 && Character.isDigit(text.charAt(start)))) {
+            terms.add(text.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,113 @@
+package com.qassistant.context.db.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Section ids of one project grouped by the path of their file.
+ * <p>
+ * Lets a path filter be resolved to sections in memory: the filter is evaluated once per file
+ * path and the sections of matching files are collected, without reading files or sections
+ * from the database on every filtered query.
+ */
+public class FileSectionMap implements ResidentIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, List<String>> sectionsByPath = new HashMap<>();
+    private final Map<String, String> pathsBySection = new HashMap<>();
+    private long pathChars;
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.pathsBySection.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            // Section ids are charged twice, once per map; paths are charged once with their characters.
+            return (long) this.pathsBySection.size() * 2 * VectorIndex.SECTION_OVERHEAD_BYTES
+                    + (long) this.sectionsByPath.size() * VectorIndex.SECTION_OVERHEAD_BYTES + this.pathChars * Character.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a section, moving it when it was stored under another path.
+     *
+     * @param id the section id
+     * @param path the path of the file holding the section
+     */
+    public void add(String id, String path) {
+        lock.writeLock().lock();
+        try {
+            removeSection(id);
+            List<String> sections = this.sectionsByPath.computeIfAbsent(path, key -> {
+                this.pathChars += key.length();
+                return new ArrayList<>();
+            });
+            sections.add(id);
+            this.pathsBySection.put(id, path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the section was present
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            return removeSection(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param pathFilter accepts the file paths whose sections are wanted
+     * @return the ids of the sections of all accepted files
+     */
+    public Set<String> sectionIds(Predicate<String> pathFilter) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = new HashSet<>();
+            this.sectionsByPath.forEach((path, sections) -> {
+                if (pathFilter.test(path)) {
+                    ids.addAll(sections);
+                }
+            });
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeSection(String id) {
+        String path = this.pathsBySection.remove(id);
+        if (path == null) {
+            return false;
+        }
+        List<String> sections = this.sectionsByPath.get(path);
+        sections.remove(id);
+        if (sections.isEmpty()) {
+            this.sectionsByPath.remove(path);
+            this.pathChars -= path.length();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact in-memory vector index of one project.
+ * <p>
+ * All embeddings are L2-normalized once and packed row by row into a single contiguous
+ * {@code float[]}, with section ids and weights kept in parallel arrays. Scoring a query is
+ * a {@link VectorKernels} dot product per row over that block, so no entity, boxed value or
+ * JSON is touched at query time and the heap holds a few bytes of overhead per section
+ * instead of a JPA entity.
+ * Only the best hits are kept while scanning, see {@link TopK}; large indexes are scanned in
+ * parallel partitions, see {@link ParallelScanner}.
+ * Batches of queries are scored block by block: a block of rows small enough to stay in cache
+ * is dotted with every query before moving on, so the matrix is read once per batch rather than
+ * once per query.
+ * Removing a section moves the last row into its slot, so the block stays dense.
+ */
+public class FlatVectorIndex implements VectorIndex {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    // Rows scored against every query of a batch before moving on, sized to stay in L2.
+    static final int BLOCK_BYTES = 256 * 1024;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private int dimension;
+    private int size;
+    private float[] vectors = new float[0];
+    private String[] ids = new String[16];
+    private double[] weights = new double[16];
+    private final ParallelScanner scanner;
+
+    public FlatVectorIndex() {
+        this(ParallelScanner.defaults());
+    }
+
+    public FlatVectorIndex(ParallelScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public VectorIndexEngine getEngine() {
+        return VectorIndexEngine.FLAT;
+    }
+
+    @Override
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return this.dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String id, float[] vector, double weight) {
+        lock.writeLock().lock();
+        try {
+            if (this.dimension == 0) {
+                this.dimension = vector.length;
+                this.vectors = new float[this.ids.length * this.dimension];
+            } else if (vector.length != this.dimension) {
+                throw new IllegalArgumentException("Section " + id + " has dimension " + vector.length + ", expected " + this.dimension);
+            }
+            Integer existingRow = this.rowsById.get(id);
+            int row = existingRow != null ? existingRow : appendRow(id);
+            int offset = row * this.dimension;
+            System.arraycopy(vector, 0, this.vectors, offset, this.dimension);
+            KERNELS.normalize(this.vectors, offset, this.dimension);
+            this.weights[row] = weight;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = this.rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --this.size;
+            if (row != last) {
+                System.arraycopy(this.vectors, last * this.dimension, this.vectors, row * this.dimension, this.dimension);
+                this.ids[row] = this.ids[last];
+                this.weights[row] = this.weights[last];
+                this.rowsById.put(this.ids[row], row);
+            }
+            this.ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit) {
+        return exactSearch(query, limit);
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds) {
+        lock.readLock().lock();
+        try {
+            int[] rows = rowsOf(this.rowsById, sectionIds);
+            if (rows.length == 0 || limit <= 0) {
+                return List.of();
+            }
+            if (query.length != this.dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+            }
+            float[] normalizedQuery = query.clone();
+            KERNELS.normalize(normalizedQuery, 0, this.dimension);
+            float[] vectors = this.vectors;
+            double[] weights = this.weights;
+            int dimension = this.dimension;
+            TopK topK = this.scanner.scan(rows.length, dimension * Float.BYTES, limit,
+                    i -> 1.0 - KERNELS.dot(normalizedQuery, 0, vectors, rows[i] * dimension, dimension) - weights[rows[i]]);
+            return topK.drainHits(this.ids, this.weights, rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the sections closest to the query.
+     * The distance of a section is {@code 1 - cosine similarity - weight}, lower is better.
+     *
+     * @param query the query embedding, does not need to be normalized
+     * @param limit the maximum number of hits to return
+     * @return hits ordered by ascending distance
+     */
+    @Override
+    public List<IndexHit> exactSearch(float[] query, int limit) {
+        lock.readLock().lock();
+        try {
+            if (this.size == 0) {
+                return List.of();
+            }
+            if (query.length != this.dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+            }
+            float[] normalizedQuery = query.clone();
+            KERNELS.normalize(normalizedQuery, 0, this.dimension);
+            float[] vectors = this.vectors;
+            double[] weights = this.weights;
+            int dimension = this.dimension;
+            TopK topK = this.scanner.scan(this.size, dimension * Float.BYTES, limit,
+                    row -> 1.0 - KERNELS.dot(normalizedQuery, 0, vectors, row * dimension, dimension) - weights[row]);
+            return topK.drainHits(this.ids, this.weights);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<List<IndexHit>> searchBatch(float[][] queries, int limit) {
+        lock.readLock().lock();
+        try {
+            if (this.size == 0 || queries.length == 0) {
+                List<List<IndexHit>> empty = new ArrayList<>(queries.length);
+                for (int i = 0; i < queries.length; i++) {
+                    empty.add(List.of());
+                }
+                return empty;
+            }
+            int dimension = this.dimension;
+            float[] normalizedQueries = new float[queries.length * dimension];
+            for (int i = 0; i < queries.length; i++) {
+                if (queries[i].length != dimension) {
+                    throw new IllegalArgumentException("Query dimension " + queries[i].length + " does not match index dimension " + dimension);
+                }
+                System.arraycopy(queries[i], 0, normalizedQueries, i * dimension, dimension);
+                KERNELS.normalize(normalizedQueries, i * dimension, dimension);
+            }
+            float[] vectors = this.vectors;
+            double[] weights = this.weights;
+            int blockRows = Math.max(1, BLOCK_BYTES / (dimension * Float.BYTES));
+            TopK[] topKs = this.scanner.scanBatch(this.size, dimension * Float.BYTES, queries.length, limit, (from, to, selections) -> {
+                for (int blockFrom = from; blockFrom < to; blockFrom += blockRows) {
+                    int blockTo = Math.min(to, blockFrom + blockRows);
+                    for (int query = 0; query < selections.length; query++) {
+                        int queryOffset = query * dimension;
+                        TopK topK = selections[query];
+                        for (int row = blockFrom; row < blockTo; row++) {
+                            topK.offer(row, 1.0 - KERNELS.dot(normalizedQueries, queryOffset, vectors, row * dimension, dimension) - weights[row]);
+                        }
+                    }
+                }
+            });
+            List<List<IndexHit>> hits = new ArrayList<>(queries.length);
+            for (TopK topK : topKs) {
+                hits.add(topK.drainHits(this.ids, this.weights));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the rows of the given sections in ascending order, so filtered scans still walk the block forward
+     */
+    static int[] rowsOf(Map<String, Integer> rowsById, Collection<String> sectionIds) {
+        return sectionIds.stream().map(rowsById::get).filter(Objects::nonNull)
+                .mapToInt(Integer::intValue).distinct().sorted().toArray();
+    }
+
+    @Override
+    public List<float[]> sample(int count, Random random) {
+        lock.readLock().lock();
+        try {
+            List<float[]> samples = new ArrayList<>(Math.min(count, this.size));
+            for (int i = 0; i < count && this.size > 0; i++) {
+                int offset = random.nextInt(this.size) * this.dimension;
+                samples.add(Arrays.copyOfRange(this.vectors, offset, offset + this.dimension));
+            }
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits every section under the read lock. Vectors passed to the visitor are normalized copies.
+     */
+    void forEachRow(RowVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < this.size; row++) {
+                int offset = row * this.dimension;
+                visitor.visit(this.ids[row], Arrays.copyOfRange(this.vectors, offset, offset + this.dimension), this.weights[row]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int appendRow(String id) {
+        if (this.size == this.ids.length) {
+            int capacity = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+            this.vectors = Arrays.copyOf(this.vectors, capacity * this.dimension);
+        }
+        int row = this.size++;
+        this.ids[row] = id;
+        this.rowsById.put(id, row);
+        return row;
+    }
+
+    @FunctionalInterface
+    interface RowVisitor {
+        void visit(String id, float[] vector, double weight);
+    }
+}
@@ -0,0 +1,483 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate vector index of one project based on a hierarchical navigable small world graph.
+ * <p>
+ * Every node is linked to its closest neighbours on each layer it belongs to; a query descends
+ * greedily from the sparse upper layers and explores the densest layer with a candidate list of
+ * {@code efSearch} nodes, so it visits a logarithmic fraction of the sections instead of all of them.
+ * On the densest layer candidates are ordered by similarity plus weight, the score results are
+ * ranked by. A boosted section far from the query in the graph is still never reached by the
+ * exploration, so sections with a positive weight, typically a handful of files, are scored
+ * exactly on every query as well.
+ * <p>
+ * Removed sections are tombstoned: they keep routing queries but never show up in results. Once
+ * tombstones outnumber live sections {@link #needsRebuild()} turns true and the owner is expected
+ * to rebuild the index from the stored sections; the graph is never rebuilt inside a change.
+ */
+public class HnswVectorIndex implements VectorIndex {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final int m;
+    private final int maxLinksLevel0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private int dimension;
+    private int nodeCount;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private float[] vectors = new float[0];
+    private String[] ids = new String[16];
+    private double[] weights = new double[16];
+    private int[][][] links = new int[16][][];
+    private int[][] linkCounts = new int[16][];
+    private final BitSet deleted = new BitSet();
+    private final BitSet boosted = new BitSet();
+
+    /**
+     * @param m the number of links per node on the upper layers, twice as many are kept on layer 0
+     * @param efConstruction the candidate list size used while linking a new node
+     * @param efSearch the candidate list size used by queries, raised to the limit when smaller
+     */
+    public HnswVectorIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, new Random(42));
+    }
+
+    HnswVectorIndex(int m, int efConstruction, int efSearch, Random random) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW m should be at least 2, got " + m);
+        }
+        this.m = m;
+        this.maxLinksLevel0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(efSearch, 1);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = random;
+    }
+
+    @Override
+    public VectorIndexEngine getEngine() {
+        return VectorIndexEngine.HNSW;
+    }
+
+    @Override
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return this.dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.nodeCount - this.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            // Most nodes only live on layer 0, so its links dominate the graph.
+            long bytesPerNode = (long) this.dimension * Float.BYTES + (long) this.maxLinksLevel0 * Integer.BYTES + SECTION_OVERHEAD_BYTES;
+            return this.nodeCount * bytesPerNode;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once tombstones outnumber live sections, which still cost every query that routes through them
+     */
+    @Override
+    public boolean needsRebuild() {
+        lock.readLock().lock();
+        try {
+            return this.deletedCount > this.nodeCount - this.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String id, float[] vector, double weight) {
+        lock.writeLock().lock();
+        try {
+            if (this.dimension == 0) {
+                this.dimension = vector.length;
+                this.vectors = new float[this.ids.length * this.dimension];
+            } else if (vector.length != this.dimension) {
+                throw new IllegalArgumentException("Section " + id + " has dimension " + vector.length + ", expected " + this.dimension);
+            }
+            Integer existing = this.nodesById.get(id);
+            if (existing != null) {
+                tombstone(existing);
+            }
+            insert(id, vector, weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = this.nodesById.get(id);
+            if (node == null) {
+                return false;
+            }
+            tombstone(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit) {
+        lock.readLock().lock();
+        try {
+            if (this.entryPoint < 0 || limit <= 0) {
+                return List.of();
+            }
+            float[] normalizedQuery = normalizedQuery(query);
+            int current = this.entryPoint;
+            for (int level = this.maxLevel; level > 0; level--) {
+                current = greedyClosest(normalizedQuery, current, level);
+            }
+            // Over-fetch by the number of tombstones we may run into so the result still holds `limit` live hits.
+            int ef = Math.max(this.efSearch, limit) + Math.min(this.deletedCount, limit);
+            List<Candidate> candidates = searchLayer(normalizedQuery, current, ef, 0, true);
+
+            BitSet offered = new BitSet(this.nodeCount);
+            TopK topK = new TopK(Math.min(limit, candidates.size() + this.boosted.cardinality()));
+            for (Candidate candidate : candidates) {
+                if (!this.deleted.get(candidate.node)) {
+                    // The candidate score already includes the weight.
+                    topK.offer(candidate.node, 1.0 - candidate.similarity);
+                    offered.set(candidate.node);
+                }
+            }
+            for (int node = this.boosted.nextSetBit(0); node >= 0; node = this.boosted.nextSetBit(node + 1)) {
+                if (!offered.get(node)) {
+                    topK.offer(node, 1.0 - similarity(normalizedQuery, node) - this.weights[node]);
+                }
+            }
+            return topK.drainHits(this.ids, this.weights);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores the given sections exactly. Walking the graph and dropping nodes outside a narrow filter
+     * would visit mostly rejected nodes, while a filtered set is small enough to scan directly.
+     */
+    @Override
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds) {
+        lock.readLock().lock();
+        try {
+            int[] nodes = sectionIds.stream().map(this.nodesById::get).filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue).filter(node -> !this.deleted.get(node)).distinct().sorted().toArray();
+            if (nodes.length == 0 || limit <= 0) {
+                return List.of();
+            }
+            float[] normalizedQuery = normalizedQuery(query);
+            TopK topK = new TopK(Math.min(limit, nodes.length));
+            for (int i = 0; i < nodes.length; i++) {
+                topK.offer(i, 1.0 - similarity(normalizedQuery, nodes[i]) - this.weights[nodes[i]]);
+            }
+            return topK.drainHits(this.ids, this.weights, nodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> exactSearch(float[] query, int limit) {
+        lock.readLock().lock();
+        try {
+            if (this.entryPoint < 0 || limit <= 0) {
+                return List.of();
+            }
+            float[] normalizedQuery = normalizedQuery(query);
+            TopK topK = new TopK(Math.min(limit, this.nodeCount - this.deletedCount));
+            for (int node = 0; node < this.nodeCount; node++) {
+                if (!this.deleted.get(node)) {
+                    topK.offer(node, 1.0 - similarity(normalizedQuery, node) - this.weights[node]);
+                }
+            }
+            return topK.drainHits(this.ids, this.weights);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<float[]> sample(int count, Random random) {
+        lock.readLock().lock();
+        try {
+            List<float[]> samples = new ArrayList<>();
+            if (this.nodeCount == this.deletedCount) {
+                return samples;
+            }
+            while (samples.size() < count) {
+                int node = random.nextInt(this.nodeCount);
+                if (!this.deleted.get(node)) {
+                    int offset = node * this.dimension;
+                    samples.add(Arrays.copyOfRange(this.vectors, offset, offset + this.dimension));
+                }
+            }
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String id, float[] vector, double weight) {
+        int node = allocateNode(id, vector, weight);
+        int level = (int) (-Math.log(1.0 - this.random.nextDouble()) * this.levelMultiplier);
+        this.links[node] = new int[level + 1][];
+        this.linkCounts[node] = new int[level + 1];
+        for (int l = 0; l <= level; l++) {
+            this.links[node][l] = new int[l == 0 ? this.maxLinksLevel0 : this.m];
+        }
+
+        if (this.entryPoint < 0) {
+            this.entryPoint = node;
+            this.maxLevel = level;
+            return;
+        }
+
+        float[] nodeVector = Arrays.copyOfRange(this.vectors, node * this.dimension, (node + 1) * this.dimension);
+        int current = this.entryPoint;
+        for (int l = this.maxLevel; l > level; l--) {
+            current = greedyClosest(nodeVector, current, l);
+        }
+        for (int l = Math.min(level, this.maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(nodeVector, current, this.efConstruction, l, false);
+            List<Candidate> neighbours = selectNeighbours(candidates, this.m);
+            for (Candidate neighbour : neighbours) {
+                this.links[node][l][this.linkCounts[node][l]++] = neighbour.node;
+                connect(neighbour.node, node, l);
+            }
+            current = candidates.get(0).node;
+        }
+        if (level > this.maxLevel) {
+            this.entryPoint = node;
+            this.maxLevel = level;
+        }
+    }
+
+    private int allocateNode(String id, float[] vector, double weight) {
+        if (this.nodeCount == this.ids.length) {
+            int capacity = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+            this.vectors = Arrays.copyOf(this.vectors, capacity * this.dimension);
+            this.links = Arrays.copyOf(this.links, capacity);
+            this.linkCounts = Arrays.copyOf(this.linkCounts, capacity);
+        }
+        int node = this.nodeCount++;
+        int offset = node * this.dimension;
+        System.arraycopy(vector, 0, this.vectors, offset, this.dimension);
+        KERNELS.normalize(this.vectors, offset, this.dimension);
+        this.ids[node] = id;
+        this.weights[node] = weight;
+        this.boosted.set(node, weight > 0);
+        this.nodesById.put(id, node);
+        return node;
+    }
+
+    /**
+     * Adds a back link from {@code node} to {@code target}, pruning the links of {@code node}
+     * with the neighbour selection heuristic when it is already full.
+     */
+    private void connect(int node, int target, int level) {
+        int[] nodeLinks = this.links[node][level];
+        int count = this.linkCounts[node][level];
+        if (count < nodeLinks.length) {
+            nodeLinks[count] = target;
+            this.linkCounts[node][level] = count + 1;
+            return;
+        }
+        float[] nodeVector = Arrays.copyOfRange(this.vectors, node * this.dimension, (node + 1) * this.dimension);
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(nodeLinks[i], similarity(nodeVector, nodeLinks[i])));
+        }
+        candidates.add(new Candidate(target, similarity(nodeVector, target)));
+        candidates.sort(Candidate.BY_SIMILARITY_DESC);
+        List<Candidate> kept = selectNeighbours(candidates, nodeLinks.length);
+        for (int i = 0; i < kept.size(); i++) {
+            nodeLinks[i] = kept.get(i).node;
+        }
+        this.linkCounts[node][level] = kept.size();
+    }
+
+    /**
+     * Keeps candidates that are closer to the base node than to any already selected neighbour,
+     * which spreads links in different directions; fills up with the closest discarded ones.
+     *
+     * @param candidates candidates ordered by descending similarity to the base node
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate other : selected) {
+                if (similarity(candidate.node, other.node) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < max; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentSimilarity = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = this.links[current][level];
+            int count = this.linkCounts[current][level];
+            for (int i = 0; i < count; i++) {
+                float candidateSimilarity = similarity(query, nodeLinks[i]);
+                if (candidateSimilarity > currentSimilarity) {
+                    currentSimilarity = candidateSimilarity;
+                    current = nodeLinks[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first exploration of one layer.
+     *
+     * @param weighted whether nodes are scored by similarity plus weight, as queries rank them,
+     *                 instead of by similarity alone, as the graph is built
+     * @return up to {@code ef} best scored nodes found, ordered by descending score
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level, boolean weighted) {
+        BitSet visited = new BitSet(this.nodeCount);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Candidate.BY_SIMILARITY_DESC);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Candidate.BY_SIMILARITY_DESC.reversed());
+        Candidate first = new Candidate(start, score(query, start, weighted));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+                break;
+            }
+            int[] nodeLinks = this.links[closest.node][level];
+            int count = this.linkCounts[closest.node][level];
+            for (int i = 0; i < count; i++) {
+                int neighbour = nodeLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float neighbourSimilarity = score(query, neighbour, weighted);
+                if (results.size() < ef || neighbourSimilarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, neighbourSimilarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(Candidate.BY_SIMILARITY_DESC);
+        return ordered;
+    }
+
+    private void tombstone(int node) {
+        this.nodesById.remove(this.ids[node]);
+        this.deleted.set(node);
+        this.boosted.clear(node);
+        this.deletedCount++;
+    }
+
+    private float[] normalizedQuery(float[] query) {
+        if (query.length != this.dimension) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+        }
+        float[] normalized = query.clone();
+        KERNELS.normalize(normalized, 0, this.dimension);
+        return normalized;
+    }
+
+    private float score(float[] query, int node, boolean weighted) {
+        float similarity = similarity(query, node);
+        return weighted ? (float) (similarity + this.weights[node]) : similarity;
+    }
+
+    private float similarity(float[] query, int node) {
+        return KERNELS.dot(query, 0, this.vectors, node * this.dimension, this.dimension);
+    }
+
+    private float similarity(int first, int second) {
+        return KERNELS.dot(this.vectors, first * this.dimension, this.vectors, second * this.dimension, this.dimension);
+    }
+
+    private static final class Candidate {
+        static final Comparator<Candidate> BY_SIMILARITY_DESC = (a, b) -> Float.compare(b.similarity, a.similarity);
+        final int node;
+        final float similarity;
+
+        Candidate(int node, float similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.qassistant.context.db.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists flat project indexes as versioned binary files and opens them memory-mapped.
+ * <p>
+ * File layout, all values little-endian:
+ * <pre>
+ * header   128 bytes: magic "QAVI", version, dimension, section count, id block length, fingerprint
+ * vectors  count * dimension float32, normalized, row by row
+ * weights  count float64
+ * offsets  count + 1 int32, start of every id in the id block
+ * ids      UTF-8 section ids
+ * </pre>
+ * The fingerprint identifies the database state the file was written from; a file whose fingerprint
+ * differs from the current one is stale and ignored. Files are written next to their target and
+ * atomically moved into place, so a crash leaves either the old or the new file, never a torn one.
+ */
+public class IndexFileStore {
+    static final int MAGIC = 0x49564151;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 128;
+    private static final int FINGERPRINT_BYTES = 64;
+    private static final int FINGERPRINT_OFFSET = 24;
+    private static final String EXTENSION = ".qavi";
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexFileStore.class);
+    private final Path directory;
+    private final ParallelScanner scanner;
+
+    public IndexFileStore(Path directory) {
+        this(directory, ParallelScanner.defaults());
+    }
+
+    /**
+     * @param directory where index files are kept
+     * @param scanner scans the opened indexes
+     */
+    public IndexFileStore(Path directory, ParallelScanner scanner) {
+        this.directory = directory;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Maps the index file of a project.
+     *
+     * @param projectId the project id
+     * @param fingerprint the fingerprint of the current database state of the project
+     * @return the mapped index, or empty if there is no file or it is stale or unreadable
+     */
+    public Optional<MappedVectorIndex> open(String projectId, String fingerprint) {
+        Path path = pathOf(projectId);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                LOGGER.warn("Index file {} is truncated, ignoring it", path);
+                return Optional.empty();
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                LOGGER.warn("Index file {} has an unknown format, ignoring it", path);
+                return Optional.empty();
+            }
+            byte[] storedFingerprint = new byte[FINGERPRINT_BYTES];
+            header.get(FINGERPRINT_OFFSET, storedFingerprint);
+            if (!fingerprintBytes(fingerprint).equals(ByteBuffer.wrap(storedFingerprint))) {
+                LOGGER.info("Index file {} is stale, ignoring it", path);
+                return Optional.empty();
+            }
+            int dimension = header.getInt(8);
+            int count = header.getInt(12);
+            long idBytes = header.getLong(16);
+            long vectorBytes = (long) count * dimension * Float.BYTES;
+            long tailBytes = (long) count * Double.BYTES + (long) (count + 1) * Integer.BYTES + idBytes;
+            if (channel.size() != HEADER_BYTES + vectorBytes + tailBytes || tailBytes > Integer.MAX_VALUE) {
+                LOGGER.warn("Index file {} does not match its header, ignoring it", path);
+                return Optional.empty();
+            }
+
+            // A single mapping is limited to 2 GB, so large vector blocks are mapped in whole-row chunks.
+            int rowBytes = Math.max(1, dimension * Float.BYTES);
+            int rowsPerChunk = Math.max(1, Integer.MAX_VALUE / rowBytes);
+            List<ByteBuffer> chunks = new ArrayList<>();
+            for (int firstRow = 0; firstRow < count; firstRow += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, count - firstRow);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + (long) firstRow * rowBytes, (long) rows * rowBytes);
+                chunks.add(chunk.order(ByteOrder.LITTLE_ENDIAN));
+            }
+            ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + vectorBytes, tailBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            return Optional.of(new MappedVectorIndex(dimension, count, chunks.toArray(ByteBuffer[]::new), rowsPerChunk, tail, this.scanner));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to open index file {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the index of a project, atomically replacing any previous file.
+     *
+     * @param projectId the project id
+     * @param fingerprint the fingerprint of the database state the index was built from
+     * @param index the index to write
+     */
+    public void write(String projectId, String fingerprint, FlatVectorIndex index) {
+        Path path = pathOf(projectId);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(this.directory);
+            List<String> ids = new ArrayList<>();
+            List<Double> weights = new ArrayList<>();
+            int dimension = index.getDimension();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_BYTES);
+                ByteBuffer buffer = ByteBuffer.allocate(Math.max(1 << 20, dimension * Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+                index.forEachRow((id, vector, weight) -> {
+                    if (buffer.remaining() < vector.length * Float.BYTES) {
+                        flush(channel, buffer);
+                    }
+                    for (float value : vector) {
+                        buffer.putFloat(value);
+                    }
+                    ids.add(id);
+                    weights.add(weight);
+                });
+                for (double weight : weights) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putDouble(weight);
+                }
+                List<byte[]> encodedIds = new ArrayList<>(ids.size());
+                int idOffset = 0;
+                for (String id : ids) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putInt(idOffset);
+                    byte[] encoded = id.getBytes(StandardCharsets.UTF_8);
+                    encodedIds.add(encoded);
+                    idOffset += encoded.length;
+                }
+                if (buffer.remaining() < Integer.BYTES) {
+                    flush(channel, buffer);
+                }
+                buffer.putInt(idOffset);
+                for (byte[] encoded : encodedIds) {
+                    if (buffer.remaining() < encoded.length) {
+                        flush(channel, buffer);
+                    }
+                    buffer.put(encoded);
+                }
+                flush(channel, buffer);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(ids.size()).putLong(idOffset);
+                header.put(fingerprintBytes(fingerprint));
+                header.clear();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info("Wrote index file {} with {} sections", path, ids.size());
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Failed to write index file {}", path, e);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // The temporary file is overwritten by the next attempt anyway.
+            }
+        }
+    }
+
+    /**
+     * Removes the index file of a project, if any.
+     */
+    public void delete(String projectId) {
+        try {
+            Files.deleteIfExists(pathOf(projectId));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete index file of project {}", projectId, e);
+        }
+    }
+
+    Path pathOf(String projectId) {
+        return this.directory.resolve(projectId.replaceAll("[^A-Za-z0-9_-]", "_") + EXTENSION);
+    }
+
+    private static ByteBuffer fingerprintBytes(String fingerprint) {
+        byte[] bytes = new byte[FINGERPRINT_BYTES];
+        byte[] encoded = fingerprint.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(encoded, 0, bytes, 0, Math.min(encoded.length, FINGERPRINT_BYTES));
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
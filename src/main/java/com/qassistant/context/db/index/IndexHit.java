@@ -0,0 +1,55 @@
+package com.qassistant.context.db.index;
+
+import java.util.Objects;
+
+/**
+ * A single search result of a project index: the section id together with its
+ * weight-adjusted distance to the query.
+ */
+public final class IndexHit {
+    private final String id;
+    private final double distance;
+    private final double weight;
+
+    public IndexHit(String id, double distance, double weight) {
+        this.id = id;
+        this.distance = distance;
+        this.weight = weight;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public double getDistance() {
+        return this.distance;
+    }
+
+    public double getWeight() {
+        return this.weight;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        IndexHit indexHit = (IndexHit) obj;
+        return Objects.equals(this.id, indexHit.id)
+                && Double.doubleToLongBits(this.distance) == Double.doubleToLongBits(indexHit.distance)
+                && Double.doubleToLongBits(this.weight) == Double.doubleToLongBits(indexHit.weight);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id, this.distance, this.weight);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexHit[id=" + this.id + ", distance=" + this.distance + ", weight=" + this.weight + "]";
+    }
+}
@@ -0,0 +1,228 @@
+package com.qassistant.context.db.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the content of one project's sections, ranked with BM25.
+ * <p>
+ * Content is split by {@link CodeTokenizer}, so exact identifiers pasted into a question find the
+ * sections that contain them even when their embeddings are not close. Every term keeps a posting
+ * list of (row, term frequency) pairs. Removed sections are only masked; their postings are dropped
+ * once they outnumber live sections. Document frequencies include masked rows until then, which
+ * slightly lowers the weight of terms in re-indexed files and is not worth tracking per row.
+ * Hits carry the negated BM25 score as their distance, so lower is better as for vector hits.
+ */
+public class LexicalIndex implements ResidentIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_COMPACTION_ROWS = 1024;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private Map<String, Postings> postings = new HashMap<>();
+    private String[] ids = new String[16];
+    private int[] lengths = new int[16];
+    private int rows;
+    private int live;
+    private long totalLength;
+    private long postingCount;
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            // Postings cost two ints each, terms are charged like section ids.
+            return this.postingCount * 2 * Integer.BYTES
+                    + (long) this.postings.size() * VectorIndex.SECTION_OVERHEAD_BYTES
+                    + (long) this.rows * (VectorIndex.SECTION_OVERHEAD_BYTES + Integer.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a section, replacing any section with the same id.
+     *
+     * @param id the section id
+     * @param content the section content
+     */
+    public void add(String id, String content) {
+        List<String> terms = CodeTokenizer.tokenize(content);
+        Map<String, Integer> frequencies = new HashMap<>();
+        terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+        lock.writeLock().lock();
+        try {
+            removeRow(id);
+            if (this.rows == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.rows * 2);
+                this.lengths = Arrays.copyOf(this.lengths, this.rows * 2);
+            }
+            int row = this.rows++;
+            this.ids[row] = id;
+            this.lengths[row] = terms.size();
+            this.rowsById.put(id, row);
+            this.live++;
+            this.totalLength += terms.size();
+            frequencies.forEach((term, frequency) -> this.postings.computeIfAbsent(term, key -> new Postings()).add(row, frequency));
+            this.postingCount += frequencies.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a section.
+     *
+     * @param id the section id
+     * @return true if the section was present
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removeRow(id);
+            if (this.rows - this.live > Math.max(MIN_COMPACTION_ROWS, this.live)) {
+                compact();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks sections by BM25 against the terms of a query.
+     *
+     * @param query the query text
+     * @param limit the maximum number of hits to return
+     * @return hits ordered by descending score, with the negated score as distance and no weight
+     */
+    public List<IndexHit> search(String query, int limit) {
+        return search(query, limit, null);
+    }
+
+    /**
+     * Ranks the given sections only by BM25 against the terms of a query.
+     *
+     * @param query the query text
+     * @param limit the maximum number of hits to return
+     * @param sectionIds the sections to consider, or null for all of them
+     * @return hits ordered by descending score, with the negated score as distance and no weight
+     */
+    public List<IndexHit> search(String query, int limit, Collection<String> sectionIds) {
+        Set<String> allowed = sectionIds == null ? null : sectionIds instanceof Set<String> set ? set : new HashSet<>(sectionIds);
+        Set<String> terms = new LinkedHashSet<>(CodeTokenizer.tokenize(query));
+        lock.readLock().lock();
+        try {
+            if (this.live == 0 || limit <= 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = Math.max(1.0, (double) this.totalLength / this.live);
+            double[] scores = new double[this.rows];
+            for (String term : terms) {
+                Postings termPostings = this.postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                double idf = Math.log(1.0 + (this.rows - termPostings.size + 0.5) / (termPostings.size + 0.5));
+                for (int i = 0; i < termPostings.size; i++) {
+                    int row = termPostings.rows[i];
+                    int length = this.lengths[row];
+                    if (length < 0) {
+                        continue;
+                    }
+                    int frequency = termPostings.frequencies[i];
+                    scores[row] += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+                }
+            }
+            TopK topK = new TopK(Math.min(limit, this.live));
+            for (int row = 0; row < this.rows; row++) {
+                if (scores[row] > 0 && (allowed == null || allowed.contains(this.ids[row]))) {
+                    topK.offer(row, -scores[row]);
+                }
+            }
+            return topK.drainHits(this.ids, new double[this.rows]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeRow(String id) {
+        Integer row = this.rowsById.remove(id);
+        if (row == null) {
+            return false;
+        }
+        this.totalLength -= this.lengths[row];
+        this.lengths[row] = -1;
+        this.live--;
+        return true;
+    }
+
+    private void compact() {
+        int[] newRows = new int[this.rows];
+        int next = 0;
+        for (int row = 0; row < this.rows; row++) {
+            if (this.lengths[row] >= 0) {
+                newRows[row] = next;
+                this.ids[next] = this.ids[row];
+                this.lengths[next] = this.lengths[row];
+                this.rowsById.put(this.ids[next], next);
+                next++;
+            } else {
+                newRows[row] = -1;
+            }
+        }
+        Arrays.fill(this.ids, next, this.rows, null);
+        this.rows = next;
+
+        Map<String, Postings> compacted = new HashMap<>();
+        this.postingCount = 0;
+        this.postings.forEach((term, termPostings) -> {
+            Postings kept = new Postings();
+            for (int i = 0; i < termPostings.size; i++) {
+                int row = newRows[termPostings.rows[i]];
+                if (row >= 0) {
+                    kept.add(row, termPostings.frequencies[i]);
+                }
+            }
+            if (kept.size > 0) {
+                compacted.put(term, kept);
+                this.postingCount += kept.size;
+            }
+        });
+        this.postings = compacted;
+    }
+
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int row, int frequency) {
+            if (this.size == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.size * 2);
+                this.frequencies = Arrays.copyOf(this.frequencies, this.size * 2);
+            }
+            this.rows[this.size] = row;
+            this.frequencies[this.size] = frequency;
+            this.size++;
+        }
+    }
+}
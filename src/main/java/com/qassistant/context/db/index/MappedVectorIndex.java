@@ -0,0 +1,314 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact vector index of one project served from a memory-mapped {@link IndexFileStore} file.
+ * <p>
+ * Opening costs no reads: vectors are scored straight from the mapping, so the OS page cache rather
+ * than the heap holds hot projects, and section ids are decoded only for the returned hits.
+ * The file is never modified. Sections removed afterwards are masked out and sections added
+ * afterwards go to an in-heap {@link FlatVectorIndex} whose hits are merged into the results.
+ */
+public class MappedVectorIndex implements VectorIndex {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int dimension;
+    private final int count;
+    private final ByteBuffer[] vectorChunks;
+    private final int rowsPerChunk;
+    private final ByteBuffer tail;
+    private final int offsetsPosition;
+    private final int idsPosition;
+    private final BitSet removed = new BitSet();
+    private final ParallelScanner scanner;
+    private final FlatVectorIndex delta;
+    private volatile Map<String, Integer> rowsById;
+    private int removedCount;
+
+    MappedVectorIndex(int dimension, int count, ByteBuffer[] vectorChunks, int rowsPerChunk, ByteBuffer tail,
+                      ParallelScanner scanner) {
+        this.scanner = scanner;
+        this.delta = new FlatVectorIndex(scanner);
+        this.dimension = dimension;
+        this.count = count;
+        this.vectorChunks = vectorChunks;
+        this.rowsPerChunk = rowsPerChunk;
+        this.tail = tail;
+        this.offsetsPosition = count * Double.BYTES;
+        this.idsPosition = this.offsetsPosition + (count + 1) * Integer.BYTES;
+    }
+
+    @Override
+    public VectorIndexEngine getEngine() {
+        return VectorIndexEngine.FLAT;
+    }
+
+    @Override
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.count - this.removedCount + this.delta.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vectors, weights and ids stay in the mapping and are accounted to the page cache, not the heap.
+     */
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long rowMapBytes = this.rowsById == null ? 0 : (long) this.count * SECTION_OVERHEAD_BYTES;
+            return this.count / Byte.SIZE + rowMapBytes + this.delta.estimatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String id, float[] vector, double weight) {
+        lock.writeLock().lock();
+        try {
+            maskMappedRow(id);
+            this.delta.add(id, vector, weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            boolean removedFromDelta = this.delta.remove(id);
+            return maskMappedRow(id) || removedFromDelta;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit) {
+        return exactSearch(query, limit);
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds) {
+        if (this.rowsById == null) {
+            lock.writeLock().lock();
+            try {
+                indexRows();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lock.readLock().lock();
+        try {
+            if (limit <= 0) {
+                return List.of();
+            }
+            if (query.length != this.dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+            }
+            float[] normalizedQuery = query.clone();
+            KERNELS.normalize(normalizedQuery, 0, this.dimension);
+            int[] rows = FlatVectorIndex.rowsOf(this.rowsById, sectionIds);
+            TopK topK = this.scanner.scan(rows.length, this.dimension * Float.BYTES, limit,
+                    i -> this.removed.get(rows[i]) ? Double.NaN : 1.0 - similarity(normalizedQuery, rows[i]) - weightAt(rows[i]));
+            int[] positions = new int[topK.size()];
+            double[] distances = new double[topK.size()];
+            int mappedCount = topK.drainSorted(positions, distances);
+            for (int i = 0; i < mappedCount; i++) {
+                positions[i] = rows[positions[i]];
+            }
+            return merge(positions, distances, mappedCount, this.delta.search(normalizedQuery, limit, sectionIds), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> exactSearch(float[] query, int limit) {
+        lock.readLock().lock();
+        try {
+            if (limit <= 0) {
+                return List.of();
+            }
+            if (query.length != this.dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+            }
+            float[] normalizedQuery = query.clone();
+            KERNELS.normalize(normalizedQuery, 0, this.dimension);
+            TopK topK = this.scanner.scan(this.count, this.dimension * Float.BYTES, limit,
+                    row -> this.removed.get(row) ? Double.NaN : 1.0 - similarity(normalizedQuery, row) - weightAt(row));
+            int[] rows = new int[topK.size()];
+            double[] distances = new double[topK.size()];
+            int mappedCount = topK.drainSorted(rows, distances);
+            return merge(rows, distances, mappedCount, this.delta.exactSearch(normalizedQuery, limit), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores all queries in one pass over the mapping. Rows are taken in blocks that stay in the
+     * cache while every query is scored against them, so each mapped page is read once per batch
+     * instead of once per query.
+     */
+    @Override
+    public List<List<IndexHit>> searchBatch(float[][] queries, int limit) {
+        lock.readLock().lock();
+        try {
+            List<List<IndexHit>> hits = new ArrayList<>(queries.length);
+            if (limit <= 0 || queries.length == 0) {
+                for (int i = 0; i < queries.length; i++) {
+                    hits.add(List.of());
+                }
+                return hits;
+            }
+            float[][] normalizedQueries = new float[queries.length][];
+            for (int i = 0; i < queries.length; i++) {
+                if (queries[i].length != this.dimension) {
+                    throw new IllegalArgumentException("Query dimension " + queries[i].length + " does not match index dimension " + this.dimension);
+                }
+                normalizedQueries[i] = queries[i].clone();
+                KERNELS.normalize(normalizedQueries[i], 0, this.dimension);
+            }
+            int blockRows = Math.max(1, FlatVectorIndex.BLOCK_BYTES / (this.dimension * Float.BYTES));
+            TopK[] topKs = this.scanner.scanBatch(this.count, this.dimension * Float.BYTES, queries.length, limit, (from, to, selections) -> {
+                for (int blockFrom = from; blockFrom < to; blockFrom += blockRows) {
+                    int blockTo = Math.min(to, blockFrom + blockRows);
+                    for (int query = 0; query < selections.length; query++) {
+                        float[] normalizedQuery = normalizedQueries[query];
+                        TopK topK = selections[query];
+                        for (int row = blockFrom; row < blockTo; row++) {
+                            if (!this.removed.get(row)) {
+                                topK.offer(row, 1.0 - similarity(normalizedQuery, row) - weightAt(row));
+                            }
+                        }
+                    }
+                }
+            });
+            List<List<IndexHit>> deltaHits = this.delta.searchBatch(normalizedQueries, limit);
+            for (int query = 0; query < queries.length; query++) {
+                int[] rows = new int[topKs[query].size()];
+                double[] distances = new double[topKs[query].size()];
+                int mappedCount = topKs[query].drainSorted(rows, distances);
+                hits.add(merge(rows, distances, mappedCount, deltaHits.get(query), limit));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the best mapped rows with hits from the in-heap delta.
+     */
+    private List<IndexHit> merge(int[] rows, double[] distances, int mappedCount, List<IndexHit> deltaHits, int limit) {
+        int total = mappedCount + deltaHits.size();
+        String[] ids = new String[total];
+        double[] weights = new double[total];
+        double[] allDistances = new double[total];
+        for (int i = 0; i < mappedCount; i++) {
+            ids[i] = idAt(rows[i]);
+            weights[i] = weightAt(rows[i]);
+            allDistances[i] = distances[i];
+        }
+        for (int i = 0; i < deltaHits.size(); i++) {
+            IndexHit hit = deltaHits.get(i);
+            ids[mappedCount + i] = hit.getId();
+            weights[mappedCount + i] = hit.getWeight();
+            allDistances[mappedCount + i] = hit.getDistance();
+        }
+        return TopK.select(ids, weights, allDistances, limit);
+    }
+
+    @Override
+    public List<float[]> sample(int count, Random random) {
+        lock.readLock().lock();
+        try {
+            List<float[]> samples = new ArrayList<>();
+            if (this.count == this.removedCount) {
+                return this.delta.sample(count, random);
+            }
+            while (samples.size() < count) {
+                int row = random.nextInt(this.count);
+                if (!this.removed.get(row)) {
+                    float[] vector = new float[this.dimension];
+                    ByteBuffer chunk = this.vectorChunks[row / this.rowsPerChunk];
+                    int offset = (row % this.rowsPerChunk) * this.dimension * Float.BYTES;
+                    for (int i = 0; i < this.dimension; i++) {
+                        vector[i] = chunk.getFloat(offset + i * Float.BYTES);
+                    }
+                    samples.add(vector);
+                }
+            }
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean maskMappedRow(String id) {
+        indexRows();
+        Integer row = this.rowsById.get(id);
+        if (row == null || this.removed.get(row)) {
+            return false;
+        }
+        this.removed.set(row);
+        this.removedCount++;
+        return true;
+    }
+
+    /**
+     * Decodes all ids into a lookup map. Only needed once the index is modified or filtered, so
+     * opening stays free of id decoding. Must be called with the write lock held.
+     */
+    private void indexRows() {
+        if (this.rowsById == null) {
+            Map<String, Integer> rows = new HashMap<>(this.count * 2);
+            for (int row = 0; row < this.count; row++) {
+                rows.put(idAt(row), row);
+            }
+            this.rowsById = rows;
+        }
+    }
+
+    private float similarity(float[] query, int row) {
+        ByteBuffer chunk = this.vectorChunks[row / this.rowsPerChunk];
+        return KERNELS.dot(query, chunk, (row % this.rowsPerChunk) * this.dimension * Float.BYTES, this.dimension);
+    }
+
+    private double weightAt(int row) {
+        return this.tail.getDouble(row * Double.BYTES);
+    }
+
+    private String idAt(int row) {
+        int start = this.tail.getInt(this.offsetsPosition + row * Integer.BYTES);
+        int end = this.tail.getInt(this.offsetsPosition + (row + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        this.tail.get(this.idsPosition + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package com.qassistant.context.db.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scores every row of an index and keeps the best ones, splitting large scans across cores.
+ * <p>
+ * Scans of at least {@code threshold} rows are cut into partitions of about {@code partitionBytes}
+ * of vector data, small enough to stay in the per-core cache while they are scored. Partitions run
+ * on a dedicated {@link ForkJoinPool}, so searches neither wait behind nor starve the common pool
+ * used by {@code CompletableFuture.runAsync}, and every partition keeps its own {@link TopK} which
+ * are merged on the way back. Smaller scans run on the calling thread.
+ */
+public class ParallelScanner {
+    public static final int DEFAULT_THRESHOLD = 20_000;
+    public static final int DEFAULT_PARTITION_BYTES = 1 << 20;
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("vector-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+    private static final ParallelScanner DEFAULTS = new ParallelScanner(DEFAULT_THRESHOLD, DEFAULT_PARTITION_BYTES);
+    private final int threshold;
+    private final int partitionBytes;
+
+    /**
+     * @param threshold the number of rows from which a scan is split across cores
+     * @param partitionBytes the approximate amount of vector data scored by one task
+     */
+    public ParallelScanner(int threshold, int partitionBytes) {
+        this.threshold = threshold;
+        this.partitionBytes = Math.max(1, partitionBytes);
+    }
+
+    public static ParallelScanner defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param rows the number of rows to score
+     * @param rowBytes the size of the vector data of one row, used to size partitions
+     * @param limit the number of best rows to keep
+     * @param scorer computes the distance of a row
+     * @return the best rows
+     */
+    public TopK scan(int rows, int rowBytes, int limit, RowScorer scorer) {
+        int k = Math.max(0, Math.min(limit, rows));
+        if (rows < this.threshold || POOL.getParallelism() < 2) {
+            return scanRange(0, rows, k, scorer);
+        }
+        int partitionRows = Math.max(64, this.partitionBytes / Math.max(1, rowBytes));
+        return POOL.invoke(new ScanTask(0, rows, partitionRows, k, scorer));
+    }
+
+    /**
+     * Scores every row against several queries at once, partitioned like {@link #scan}.
+     *
+     * @param rows the number of rows to score
+     * @param rowBytes the size of the vector data of one row, used to size partitions
+     * @param queries the number of queries
+     * @param limit the number of best rows to keep per query
+     * @param scorer offers the rows of a range to the selection of every query
+     * @return the best rows of every query, in query order
+     */
+    public TopK[] scanBatch(int rows, int rowBytes, int queries, int limit, BlockScorer scorer) {
+        int k = Math.max(0, Math.min(limit, rows));
+        if (rows < this.threshold || POOL.getParallelism() < 2) {
+            return scanBlock(0, rows, queries, k, scorer);
+        }
+        int partitionRows = Math.max(64, this.partitionBytes / Math.max(1, rowBytes));
+        return POOL.invoke(new BatchScanTask(0, rows, partitionRows, queries, k, scorer));
+    }
+
+    private static TopK[] scanBlock(int from, int to, int queries, int k, BlockScorer scorer) {
+        TopK[] topKs = new TopK[queries];
+        for (int query = 0; query < queries; query++) {
+            topKs[query] = new TopK(k);
+        }
+        scorer.score(from, to, topKs);
+        return topKs;
+    }
+
+    private static TopK scanRange(int from, int to, int k, RowScorer scorer) {
+        TopK topK = new TopK(k);
+        for (int row = from; row < to; row++) {
+            double distance = scorer.distance(row);
+            if (!Double.isNaN(distance)) {
+                topK.offer(row, distance);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Distance of one row, lower is better. Rows scored as {@link Double#NaN} are skipped.
+     */
+    @FunctionalInterface
+    public interface RowScorer {
+        double distance(int row);
+    }
+
+    /**
+     * Scores the rows {@code [from, to)} against every query, offering each distance to the
+     * {@link TopK} of its query.
+     */
+    @FunctionalInterface
+    public interface BlockScorer {
+        void score(int from, int to, TopK[] topKs);
+    }
+
+    private static final class ScanTask extends RecursiveTask<TopK> {
+        private final int from;
+        private final int to;
+        private final int partitionRows;
+        private final int k;
+        private final RowScorer scorer;
+
+        ScanTask(int from, int to, int partitionRows, int k, RowScorer scorer) {
+            this.from = from;
+            this.to = to;
+            this.partitionRows = partitionRows;
+            this.k = k;
+            this.scorer = scorer;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (this.to - this.from <= this.partitionRows) {
+                return scanRange(this.from, this.to, this.k, this.scorer);
+            }
+            int middle = (this.from + this.to) >>> 1;
+            ScanTask right = new ScanTask(middle, this.to, this.partitionRows, this.k, this.scorer);
+            right.fork();
+            TopK merged = new ScanTask(this.from, middle, this.partitionRows, this.k, this.scorer).compute();
+            merged.merge(right.join());
+            return merged;
+        }
+    }
+
+    private static final class BatchScanTask extends RecursiveTask<TopK[]> {
+        private final int from;
+        private final int to;
+        private final int partitionRows;
+        private final int queries;
+        private final int k;
+        private final BlockScorer scorer;
+
+        BatchScanTask(int from, int to, int partitionRows, int queries, int k, BlockScorer scorer) {
+            this.from = from;
+            this.to = to;
+            this.partitionRows = partitionRows;
+            this.queries = queries;
+            this.k = k;
+            this.scorer = scorer;
+        }
+
+        @Override
+        protected TopK[] compute() {
+            if (this.to - this.from <= this.partitionRows) {
+                return scanBlock(this.from, this.to, this.queries, this.k, this.scorer);
+            }
+            int middle = (this.from + this.to) >>> 1;
+            BatchScanTask right = new BatchScanTask(middle, this.to, this.partitionRows, this.queries, this.k, this.scorer);
+            right.fork();
+            TopK[] merged = new BatchScanTask(this.from, middle, this.partitionRows, this.queries, this.k, this.scorer).compute();
+            TopK[] rightTopKs = right.join();
+            for (int query = 0; query < this.queries; query++) {
+                merged[query].merge(rightTopKs[query]);
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vector index of one project holding product-quantized embeddings, {@code m} bytes per section.
+ * <p>
+ * Codebooks are trained on the first {@code trainingSize} sections, which are kept in an exact
+ * {@link FlatVectorIndex} until then. A search scores every code through the query lookup table of
+ * the {@link ProductQuantizer}, keeps {@code limit * rerankFactor} candidates and re-scores them with
+ * full-precision vectors loaded from a {@link VectorSource}, so returned distances are exact.
+ * <p>
+ * The reconstruction error of sections added after training is tracked against the error on a
+ * held-out part of the training sample. When re-indexing shifts the data so that the codebooks no longer fit it,
+ * {@link #needsRebuild()} turns true and the owner is expected to rebuild the index, which retrains
+ * the codebooks on current sections.
+ */
+public class ProductQuantizedVectorIndex implements VectorIndex {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    private static final int MIN_DRIFT_SAMPLES = 100;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final int requestedM;
+    private final int trainingSize;
+    private final int iterations;
+    private final int rerankFactor;
+    private final double driftTolerance;
+    private final VectorSource vectorSource;
+    private final Random random;
+    private final ParallelScanner scanner;
+    private FlatVectorIndex pending;
+    private ProductQuantizer quantizer;
+    private double trainingError;
+    private double addedErrorSum;
+    private int addedCount;
+    private int m;
+    private int size;
+    private byte[] codes;
+    private String[] ids;
+    private double[] weights;
+
+    /**
+     * @param m the number of sub-spaces, i.e. bytes per section
+     * @param trainingSize the number of sections the codebooks are trained on
+     * @param iterations the number of k-means iterations
+     * @param rerankFactor how many candidates per requested hit are re-scored with full precision
+     * @param driftTolerance how many times the training reconstruction error new sections may reach before a rebuild is requested
+     * @param vectorSource where to load full vectors from for re-scoring, may be null
+     */
+    public ProductQuantizedVectorIndex(int m, int trainingSize, int iterations, int rerankFactor,
+                                       double driftTolerance, VectorSource vectorSource) {
+        this(m, trainingSize, iterations, rerankFactor, driftTolerance, vectorSource, ParallelScanner.defaults());
+    }
+
+    /**
+     * @param scanner scans the codes of large indexes in parallel
+     */
+    public ProductQuantizedVectorIndex(int m, int trainingSize, int iterations, int rerankFactor,
+                                       double driftTolerance, VectorSource vectorSource, ParallelScanner scanner) {
+        this(m, trainingSize, iterations, rerankFactor, driftTolerance, vectorSource, scanner, new Random(42));
+    }
+
+    ProductQuantizedVectorIndex(int m, int trainingSize, int iterations, int rerankFactor,
+                                double driftTolerance, VectorSource vectorSource, Random random) {
+        this(m, trainingSize, iterations, rerankFactor, driftTolerance, vectorSource, ParallelScanner.defaults(), random);
+    }
+
+    ProductQuantizedVectorIndex(int m, int trainingSize, int iterations, int rerankFactor,
+                                double driftTolerance, VectorSource vectorSource, ParallelScanner scanner, Random random) {
+        this.scanner = scanner;
+        this.pending = new FlatVectorIndex(scanner);
+        this.requestedM = Math.max(1, m);
+        this.trainingSize = Math.max(1, trainingSize);
+        this.iterations = Math.max(1, iterations);
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.driftTolerance = driftTolerance;
+        this.vectorSource = vectorSource;
+        this.random = random;
+    }
+
+    @Override
+    public VectorIndexEngine getEngine() {
+        return VectorIndexEngine.PQ;
+    }
+
+    @Override
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return isTrained() ? this.quantizer.getDimension() : this.pending.getDimension();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return isTrained() ? this.size : this.pending.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.estimatedBytes();
+            }
+            // Codebooks hold 256 centroids per sub-space, i.e. 256 full-dimension vectors in total.
+            return (long) this.size * (this.m + SECTION_OVERHEAD_BYTES) + 256L * this.quantizer.getDimension() * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once codebooks are trained and sections are stored encoded
+     */
+    public boolean isTrained() {
+        return this.pending == null;
+    }
+
+    /**
+     * @return true when sections added since training are reconstructed noticeably worse than the training sample
+     */
+    @Override
+    public boolean needsRebuild() {
+        lock.readLock().lock();
+        try {
+            return isTrained()
+                    && this.addedCount >= Math.max(MIN_DRIFT_SAMPLES, this.size / 10)
+                    && this.addedErrorSum / this.addedCount > this.trainingError * this.driftTolerance;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String id, float[] vector, double weight) {
+        lock.writeLock().lock();
+        try {
+            if (!isTrained()) {
+                this.pending.add(id, vector, weight);
+                if (this.pending.size() >= this.trainingSize) {
+                    train();
+                }
+                return;
+            }
+            if (vector.length != this.quantizer.getDimension()) {
+                throw new IllegalArgumentException("Section " + id + " has dimension " + vector.length + ", expected " + this.quantizer.getDimension());
+            }
+            float[] normalized = vector.clone();
+            KERNELS.normalize(normalized, 0, normalized.length);
+            this.addedErrorSum += this.quantizer.reconstructionError(normalized);
+            this.addedCount++;
+            store(id, normalized, weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.remove(id);
+            }
+            Integer row = this.rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --this.size;
+            if (row != last) {
+                System.arraycopy(this.codes, last * this.m, this.codes, row * this.m, this.m);
+                this.ids[row] = this.ids[last];
+                this.weights[row] = this.weights[last];
+                this.rowsById.put(this.ids[row], row);
+            }
+            this.ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit) {
+        return searchRows(query, limit, null);
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds) {
+        return searchRows(query, limit, sectionIds);
+    }
+
+    /**
+     * @param sectionIds the sections to consider, or null for all of them
+     */
+    private List<IndexHit> searchRows(float[] query, int limit, Collection<String> sectionIds) {
+        String[] candidateIds;
+        double[] candidateWeights;
+        double[] candidateDistances;
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return sectionIds == null ? this.pending.search(query, limit) : this.pending.search(query, limit, sectionIds);
+            }
+            int[] filter = sectionIds == null ? null : FlatVectorIndex.rowsOf(this.rowsById, sectionIds);
+            if (this.size == 0 || limit <= 0 || (filter != null && filter.length == 0)) {
+                return List.of();
+            }
+            float[] table = this.quantizer.lookupTable(normalizedQuery(query));
+            // Without a source of full vectors there is nothing to re-score a shortlist with.
+            int shortlist = this.vectorSource == null ? limit : limit * this.rerankFactor;
+            ProductQuantizer quantizer = this.quantizer;
+            byte[] codes = this.codes;
+            double[] weights = this.weights;
+            int m = this.m;
+            TopK candidates = this.scanner.scan(filter == null ? this.size : filter.length, m, shortlist, i -> {
+                int row = filter == null ? i : filter[i];
+                return 1.0 - quantizer.dot(table, codes, row * m) - weights[row];
+            });
+            if (this.vectorSource == null) {
+                return filter == null ? candidates.drainHits(this.ids, this.weights) : candidates.drainHits(this.ids, this.weights, filter);
+            }
+            int[] rows = new int[candidates.size()];
+            candidateDistances = new double[candidates.size()];
+            int count = candidates.drainSorted(rows, candidateDistances);
+            if (filter != null) {
+                for (int i = 0; i < count; i++) {
+                    rows[i] = filter[rows[i]];
+                }
+            }
+            candidateIds = new String[count];
+            candidateWeights = new double[count];
+            for (int i = 0; i < count; i++) {
+                candidateIds[i] = this.ids[rows[i]];
+                candidateWeights[i] = this.weights[rows[i]];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Full vectors live in the database, load them outside the lock so writers are not blocked on I/O.
+        return this.vectorSource.rank(query, candidateIds, candidateWeights, limit);
+    }
+
+    /**
+     * Scans every section with full-precision vectors loaded from the {@link VectorSource}, so it is
+     * the ground truth the product-quantized search is measured against. Only without a source are
+     * the lookup-table distances of the codes used.
+     */
+    @Override
+    public List<IndexHit> exactSearch(float[] query, int limit) {
+        String[] rowIds;
+        double[] rowWeights;
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.exactSearch(query, limit);
+            }
+            if (this.size == 0 || limit <= 0) {
+                return List.of();
+            }
+            if (this.vectorSource == null) {
+                float[] table = this.quantizer.lookupTable(normalizedQuery(query));
+                TopK topK = new TopK(Math.min(this.size, limit));
+                for (int row = 0; row < this.size; row++) {
+                    topK.offer(row, 1.0 - this.quantizer.dot(table, this.codes, row * this.m) - this.weights[row]);
+                }
+                return topK.drainHits(this.ids, this.weights);
+            }
+            rowIds = Arrays.copyOf(this.ids, this.size);
+            rowWeights = Arrays.copyOf(this.weights, this.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // As in the search, full vectors are loaded outside the lock.
+        return this.vectorSource.rank(query, rowIds, rowWeights, limit);
+    }
+
+    @Override
+    public List<float[]> sample(int count, Random random) {
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.sample(count, random);
+            }
+            List<float[]> samples = new ArrayList<>(Math.min(count, this.size));
+            for (int i = 0; i < count && this.size > 0; i++) {
+                float[] vector = new float[this.quantizer.getDimension()];
+                this.quantizer.decode(this.codes, random.nextInt(this.size) * this.m, vector);
+                samples.add(vector);
+            }
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void train() {
+        FlatVectorIndex training = this.pending;
+        List<float[]> samples = new ArrayList<>(training.size());
+        training.forEachRow((id, vector, weight) -> samples.add(vector));
+        // The drift baseline is measured on held-out sections: codebooks fit their own training vectors
+        // better than any unseen ones, which would make every later section look like drift.
+        Collections.shuffle(samples, this.random);
+        int holdout = samples.size() >= 20 ? samples.size() / 10 : 0;
+        List<float[]> fitted = samples.subList(holdout, samples.size());
+        List<float[]> heldOut = holdout > 0 ? samples.subList(0, holdout) : fitted;
+        this.quantizer = ProductQuantizer.train(fitted, this.requestedM, this.iterations, this.random);
+        this.m = this.quantizer.getM();
+
+        double errorSum = 0.0;
+        for (float[] sample : heldOut) {
+            errorSum += this.quantizer.reconstructionError(sample);
+        }
+        this.trainingError = errorSum / heldOut.size();
+        this.addedErrorSum = 0.0;
+        this.addedCount = 0;
+
+        int capacity = Math.max(16, samples.size());
+        this.codes = new byte[capacity * this.m];
+        this.ids = new String[capacity];
+        this.weights = new double[capacity];
+        training.forEachRow(this::store);
+        this.pending = null;
+    }
+
+    private void store(String id, float[] normalized, double weight) {
+        Integer existingRow = this.rowsById.get(id);
+        int row = existingRow != null ? existingRow : appendRow(id);
+        this.quantizer.encode(normalized, this.codes, row * this.m);
+        this.weights[row] = weight;
+    }
+
+    private int appendRow(String id) {
+        if (this.size == this.ids.length) {
+            int capacity = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+            this.codes = Arrays.copyOf(this.codes, capacity * this.m);
+        }
+        int row = this.size++;
+        this.ids[row] = id;
+        this.rowsById.put(id, row);
+        return row;
+    }
+
+    private float[] normalizedQuery(float[] query) {
+        if (query.length != this.quantizer.getDimension()) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.quantizer.getDimension());
+        }
+        float[] normalized = query.clone();
+        KERNELS.normalize(normalized, 0, normalized.length);
+        return normalized;
+    }
+}
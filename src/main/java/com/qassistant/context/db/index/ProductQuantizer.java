@@ -0,0 +1,200 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Product quantization codebooks.
+ * <p>
+ * A vector is split into {@code m} contiguous sub-vectors and each sub-vector is replaced by the
+ * id of its nearest centroid among up to 256 trained with k-means, so a vector is encoded into
+ * {@code m} bytes. Similarity to a query is computed asymmetrically: the query stays in float and
+ * its dot product with every centroid is precomputed into a lookup table, after which scoring a
+ * code is {@code m} table lookups.
+ * Instances are immutable once trained.
+ */
+public final class ProductQuantizer {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    private static final int MAX_CENTROIDS = 256;
+    private final int dimension;
+    private final int m;
+    private final int subDimension;
+    private final int centroidCount;
+    // centroids of sub-space s are stored at [s * centroidCount * subDimension, (s + 1) * centroidCount * subDimension)
+    private final float[] centroids;
+
+    private ProductQuantizer(int dimension, int m, int centroidCount, float[] centroids) {
+        this.dimension = dimension;
+        this.m = m;
+        this.subDimension = dimension / m;
+        this.centroidCount = centroidCount;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Trains codebooks with k-means in every sub-space.
+     *
+     * @param samples training vectors, all of the same dimension
+     * @param requestedM the requested number of sub-spaces; lowered to the nearest divisor of the dimension
+     * @param iterations the number of k-means iterations
+     * @param random the source of randomness for centroid initialization
+     * @return the trained quantizer
+     */
+    public static ProductQuantizer train(List<float[]> samples, int requestedM, int iterations, Random random) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("Product quantizer needs at least one training vector");
+        }
+        int dimension = samples.get(0).length;
+        int m = Math.max(1, Math.min(requestedM, dimension));
+        while (dimension % m != 0) {
+            m--;
+        }
+        int subDimension = dimension / m;
+        int centroidCount = Math.min(MAX_CENTROIDS, samples.size());
+        float[] centroids = new float[m * centroidCount * subDimension];
+
+        int[] assignment = new int[samples.size()];
+        float[] sums = new float[centroidCount * subDimension];
+        int[] counts = new int[centroidCount];
+        for (int s = 0; s < m; s++) {
+            int subOffset = s * subDimension;
+            int bookOffset = s * centroidCount * subDimension;
+            initializeCentroids(samples, subOffset, subDimension, centroids, bookOffset, centroidCount, random);
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                for (int i = 0; i < samples.size(); i++) {
+                    assignment[i] = nearest(samples.get(i), subOffset, subDimension, centroids, bookOffset, centroidCount);
+                }
+                Arrays.fill(sums, 0.0f);
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < samples.size(); i++) {
+                    float[] sample = samples.get(i);
+                    int target = assignment[i] * subDimension;
+                    for (int d = 0; d < subDimension; d++) {
+                        sums[target + d] += sample[subOffset + d];
+                    }
+                    counts[assignment[i]]++;
+                }
+                for (int c = 0; c < centroidCount; c++) {
+                    int target = bookOffset + c * subDimension;
+                    if (counts[c] == 0) {
+                        // Re-seed an empty cluster with a random sample so no code goes unused.
+                        System.arraycopy(samples.get(random.nextInt(samples.size())), subOffset, centroids, target, subDimension);
+                        continue;
+                    }
+                    for (int d = 0; d < subDimension; d++) {
+                        centroids[target + d] = sums[c * subDimension + d] / counts[c];
+                    }
+                }
+            }
+        }
+        return new ProductQuantizer(dimension, m, centroidCount, centroids);
+    }
+
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * @return the number of sub-spaces, which is also the number of bytes per encoded vector
+     */
+    public int getM() {
+        return this.m;
+    }
+
+    /**
+     * Encodes a vector into {@link #getM()} bytes.
+     */
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int s = 0; s < this.m; s++) {
+            int centroid = nearest(vector, s * this.subDimension, this.subDimension, this.centroids,
+                    s * this.centroidCount * this.subDimension, this.centroidCount);
+            codes[offset + s] = (byte) centroid;
+        }
+    }
+
+    /**
+     * Writes the vector reconstructed from its codes into {@code vector}.
+     */
+    public void decode(byte[] codes, int offset, float[] vector) {
+        for (int s = 0; s < this.m; s++) {
+            int centroid = centroidOffset(s, codes[offset + s]);
+            System.arraycopy(this.centroids, centroid, vector, s * this.subDimension, this.subDimension);
+        }
+    }
+
+    /**
+     * @return the squared L2 distance between a vector and its reconstruction
+     */
+    public float reconstructionError(float[] vector) {
+        float error = 0.0f;
+        for (int s = 0; s < this.m; s++) {
+            int bookOffset = s * this.centroidCount * this.subDimension;
+            int centroid = nearest(vector, s * this.subDimension, this.subDimension, this.centroids, bookOffset, this.centroidCount);
+            error += KERNELS.squaredL2(vector, s * this.subDimension, this.centroids, bookOffset + centroid * this.subDimension, this.subDimension);
+        }
+        return error;
+    }
+
+    /**
+     * Precomputes the dot product of every query sub-vector with every centroid of its sub-space.
+     *
+     * @return a table to pass to {@link #dot(float[], byte[], int)}
+     */
+    public float[] lookupTable(float[] query) {
+        float[] table = new float[this.m * MAX_CENTROIDS];
+        for (int s = 0; s < this.m; s++) {
+            for (int c = 0; c < this.centroidCount; c++) {
+                table[s * MAX_CENTROIDS + c] = KERNELS.dot(query, s * this.subDimension, this.centroids,
+                        (s * this.centroidCount + c) * this.subDimension, this.subDimension);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return the dot product of the query a table was built for with the vector encoded at {@code offset}
+     */
+    public float dot(float[] table, byte[] codes, int offset) {
+        float dot = 0.0f;
+        for (int s = 0; s < this.m; s++) {
+            dot += table[s * MAX_CENTROIDS + (codes[offset + s] & 0xFF)];
+        }
+        return dot;
+    }
+
+    private int centroidOffset(int subSpace, byte code) {
+        return (subSpace * this.centroidCount + (code & 0xFF)) * this.subDimension;
+    }
+
+    private static void initializeCentroids(List<float[]> samples, int subOffset, int subDimension,
+                                            float[] centroids, int bookOffset, int centroidCount, Random random) {
+        // Partial Fisher-Yates shuffle, so every centroid starts from a distinct sample.
+        int[] order = new int[samples.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int c = 0; c < centroidCount; c++) {
+            int pick = c + random.nextInt(order.length - c);
+            int swap = order[c];
+            order[c] = order[pick];
+            order[pick] = swap;
+            System.arraycopy(samples.get(order[c]), subOffset, centroids, bookOffset + c * subDimension, subDimension);
+        }
+    }
+
+    private static int nearest(float[] vector, int subOffset, int subDimension, float[] centroids, int bookOffset, int centroidCount) {
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < centroidCount; c++) {
+            float distance = KERNELS.squaredL2(vector, subOffset, centroids, bookOffset + c * subDimension, subDimension);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
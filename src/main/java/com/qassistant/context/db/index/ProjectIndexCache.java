@@ -0,0 +1,226 @@
+package com.qassistant.context.db.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the indexes of recently searched projects in memory within a byte budget.
+ * <p>
+ * Projects are evicted least recently used first once the {@link ResidentIndex#estimatedBytes()} of
+ * all resident indexes exceed the budget; the most recently loaded index is kept even when it alone
+ * exceeds it. Only one load per project runs at a time, concurrent callers wait for its result.
+ * Changes to a project are applied to its resident index as deltas through {@link #update}; a load
+ * that is still running when its project changes is marked stale: it is handed to the callers
+ * already waiting for it but not cached, since it may have read the database before the change,
+ * and the next miss starts a fresh load instead of joining it.
+ */
+public class ProjectIndexCache<T extends ResidentIndex> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectIndexCache.class);
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Load<T>> loads = new HashMap<>();
+    private final long maxBytes;
+    private final String name;
+    private final Counter evictions;
+    private long usedBytes;
+
+    /**
+     * @param name identifies the cache in logs and metrics
+     * @param maxBytes the memory budget of resident indexes
+     */
+    public ProjectIndexCache(String name, long maxBytes) {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.evictions = Metrics.counter("qassistant.index.cache.evictions", "index", name);
+        Metrics.gauge("qassistant.index.cache.bytes", Tags.of("index", name), this, ProjectIndexCache::usedBytes);
+        Metrics.gauge("qassistant.index.cache.entries", Tags.of("index", name), this, ProjectIndexCache::size);
+    }
+
+    /**
+     * Returns the resident index of a project, loading it on a miss.
+     *
+     * @param projectId the project id
+     * @param loader builds the index of the project; empty indexes are returned but not cached
+     * @return the index
+     */
+    public T get(String projectId, Function<String, T> loader) {
+        Load<T> load = new Load<>();
+        boolean owner = true;
+        synchronized (this) {
+            Entry<T> entry = this.entries.get(projectId);
+            if (entry != null) {
+                return entry.index;
+            }
+            Load<T> running = this.loads.get(projectId);
+            if (running != null && !running.stale) {
+                load = running;
+                owner = false;
+            } else {
+                this.loads.put(projectId, load);
+            }
+        }
+        if (!owner) {
+            return join(load.result);
+        }
+
+        T index;
+        try {
+            index = loader.apply(projectId);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                this.loads.remove(projectId, load);
+            }
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // A stale load may have read the database before the project changed or was invalidated.
+            if (this.loads.remove(projectId, load) && !load.stale && !index.isEmpty()) {
+                put(projectId, index);
+            }
+        }
+        load.result.complete(index);
+        return index;
+    }
+
+    /**
+     * @return the resident index of a project, without loading it
+     */
+    public synchronized Optional<T> getIfPresent(String projectId) {
+        return Optional.ofNullable(this.entries.get(projectId)).map(entry -> entry.index);
+    }
+
+    /**
+     * Applies a change to the resident index of a project, if any. The index is dropped instead when
+     * it reports that it needs a rebuild afterwards, so the next search rebuilds it single-flight.
+     * The change runs outside the cache monitor, guarded by the index itself, so a large change of
+     * one project does not hold up lookups of the others.
+     *
+     * @param projectId the project id
+     * @param delta adds or removes sections
+     */
+    public void update(String projectId, Consumer<T> delta) {
+        Entry<T> entry;
+        synchronized (this) {
+            markStale(projectId);
+            entry = this.entries.get(projectId);
+            if (entry == null) {
+                return;
+            }
+        }
+        delta.accept(entry.index);
+        synchronized (this) {
+            if (this.entries.get(projectId) != entry) {
+                // Evicted or invalidated meanwhile; a later load reads the change from the database.
+                return;
+            }
+            if (entry.index.needsRebuild()) {
+                LOGGER.info("{} index of project {} needs a rebuild, dropping it", this.name, projectId);
+                remove(projectId);
+                return;
+            }
+            long bytes = entry.index.estimatedBytes();
+            this.usedBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+            evict(projectId);
+        }
+    }
+
+    /**
+     * Drops the index of a project, including any load that is still running.
+     */
+    public synchronized void invalidate(String projectId) {
+        markStale(projectId);
+        remove(projectId);
+    }
+
+    public synchronized void clear() {
+        this.loads.values().forEach(load -> load.stale = true);
+        this.entries.clear();
+        this.usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the estimated heap held by resident indexes
+     */
+    public synchronized long usedBytes() {
+        return this.usedBytes;
+    }
+
+    private void markStale(String projectId) {
+        Load<T> running = this.loads.get(projectId);
+        if (running != null) {
+            running.stale = true;
+        }
+    }
+
+    private void put(String projectId, T index) {
+        remove(projectId);
+        Entry<T> entry = new Entry<>(index, index.estimatedBytes());
+        this.entries.put(projectId, entry);
+        this.usedBytes += entry.bytes;
+        evict(projectId);
+    }
+
+    private void remove(String projectId) {
+        Entry<T> removed = this.entries.remove(projectId);
+        if (removed != null) {
+            this.usedBytes -= removed.bytes;
+        }
+    }
+
+    private void evict(String keptProjectId) {
+        Iterator<Map.Entry<String, Entry<T>>> iterator = this.entries.entrySet().iterator();
+        while (this.usedBytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry<T>> eldest = iterator.next();
+            if (eldest.getKey().equals(keptProjectId)) {
+                continue;
+            }
+            iterator.remove();
+            this.usedBytes -= eldest.getValue().bytes;
+            this.evictions.increment();
+            LOGGER.info("Evicted {} index of project {} to stay within {} bytes", this.name, eldest.getKey(), this.maxBytes);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * A running load; its fields are guarded by the cache.
+     */
+    private static final class Load<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private boolean stale;
+    }
+
+    private static final class Entry<T> {
+        private final T index;
+        private long bytes;
+
+        private Entry(T index, long bytes) {
+            this.index = index;
+            this.bytes = bytes;
+        }
+    }
+}
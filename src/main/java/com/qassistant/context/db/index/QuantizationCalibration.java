@@ -0,0 +1,12 @@
+package com.qassistant.context.db.index;
+
+public enum QuantizationCalibration {
+    /**
+     * One min/max range shared by all dimensions.
+     */
+    GLOBAL,
+    /**
+     * A min/max range per dimension, more accurate when dimensions have different spreads.
+     */
+    PER_DIMENSION
+}
@@ -0,0 +1,410 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vector index of one project holding int8 scalar-quantized embeddings, a quarter of the memory of float32.
+ * <p>
+ * Each component is mapped linearly from its calibrated {@code [min, max]} range onto the 256 values
+ * of a byte, with one range per dimension or one shared by all of them. The range is calibrated on
+ * the first {@code trainingSize} sections, which are kept in an exact {@link FlatVectorIndex} until
+ * then; later components outside the range are clamped.
+ * <p>
+ * A search scans the quantized rows with an int8 dot product to pick {@code limit * rerankFactor}
+ * candidates, then re-scores those with full-precision vectors, so returned distances are exact.
+ * Full vectors are either kept alongside the codes or loaded from a {@link VectorSource}; with
+ * neither, the quantized distances are returned.
+ */
+public class QuantizedVectorIndex implements VectorIndex {
+    private static final VectorKernels KERNELS = VectorKernelsFactory.getInstance();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final QuantizationCalibration calibration;
+    private final int trainingSize;
+    private final int rerankFactor;
+    private final boolean keepFullVectors;
+    private final VectorSource vectorSource;
+    private final ParallelScanner scanner;
+    private FlatVectorIndex pending;
+    private int dimension;
+    private int size;
+    // x[d] is reconstructed as base[d] + scale[d] * code[d]
+    private float[] base;
+    private float[] scale;
+    private byte[] codes;
+    private float[] fullVectors;
+    private String[] ids;
+    private double[] weights;
+
+    /**
+     * @param calibration how component ranges are calibrated
+     * @param trainingSize the number of sections the ranges are calibrated on
+     * @param rerankFactor how many candidates per requested hit are re-scored with full precision
+     * @param keepFullVectors whether to keep float32 vectors next to the codes for re-scoring
+     * @param vectorSource where to load full vectors from when they are not kept, may be null
+     */
+    public QuantizedVectorIndex(QuantizationCalibration calibration, int trainingSize, int rerankFactor,
+                                boolean keepFullVectors, VectorSource vectorSource) {
+        this(calibration, trainingSize, rerankFactor, keepFullVectors, vectorSource, ParallelScanner.defaults());
+    }
+
+    /**
+     * @param scanner scans the quantized rows of large indexes in parallel
+     */
+    public QuantizedVectorIndex(QuantizationCalibration calibration, int trainingSize, int rerankFactor,
+                                boolean keepFullVectors, VectorSource vectorSource, ParallelScanner scanner) {
+        this.scanner = scanner;
+        this.pending = new FlatVectorIndex(scanner);
+        this.calibration = calibration;
+        this.trainingSize = Math.max(1, trainingSize);
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.keepFullVectors = keepFullVectors;
+        this.vectorSource = vectorSource;
+    }
+
+    @Override
+    public VectorIndexEngine getEngine() {
+        return VectorIndexEngine.INT8;
+    }
+
+    @Override
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return isTrained() ? this.dimension : this.pending.getDimension();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return isTrained() ? this.size : this.pending.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.estimatedBytes();
+            }
+            int bytesPerSection = this.dimension * (this.keepFullVectors ? 1 + Float.BYTES : 1);
+            return (long) this.size * (bytesPerSection + SECTION_OVERHEAD_BYTES) + 2L * this.dimension * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once the component ranges are calibrated and sections are stored quantized
+     */
+    public boolean isTrained() {
+        return this.pending == null;
+    }
+
+    @Override
+    public void add(String id, float[] vector, double weight) {
+        lock.writeLock().lock();
+        try {
+            if (!isTrained()) {
+                this.pending.add(id, vector, weight);
+                if (this.pending.size() >= this.trainingSize) {
+                    train();
+                }
+                return;
+            }
+            if (vector.length != this.dimension) {
+                throw new IllegalArgumentException("Section " + id + " has dimension " + vector.length + ", expected " + this.dimension);
+            }
+            float[] normalized = vector.clone();
+            KERNELS.normalize(normalized, 0, this.dimension);
+            store(id, normalized, weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.remove(id);
+            }
+            Integer row = this.rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --this.size;
+            if (row != last) {
+                System.arraycopy(this.codes, last * this.dimension, this.codes, row * this.dimension, this.dimension);
+                if (this.keepFullVectors) {
+                    System.arraycopy(this.fullVectors, last * this.dimension, this.fullVectors, row * this.dimension, this.dimension);
+                }
+                this.ids[row] = this.ids[last];
+                this.weights[row] = this.weights[last];
+                this.rowsById.put(this.ids[row], row);
+            }
+            this.ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit) {
+        return searchRows(query, limit, null);
+    }
+
+    @Override
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds) {
+        return searchRows(query, limit, sectionIds);
+    }
+
+    /**
+     * @param sectionIds the sections to consider, or null for all of them
+     */
+    private List<IndexHit> searchRows(float[] query, int limit, Collection<String> sectionIds) {
+        String[] candidateIds;
+        double[] candidateWeights;
+        double[] candidateDistances;
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return sectionIds == null ? this.pending.search(query, limit) : this.pending.search(query, limit, sectionIds);
+            }
+            int[] filter = sectionIds == null ? null : FlatVectorIndex.rowsOf(this.rowsById, sectionIds);
+            if (this.size == 0 || limit <= 0 || (filter != null && filter.length == 0)) {
+                return List.of();
+            }
+            float[] normalizedQuery = normalizedQuery(query);
+            // Quantize the query too, so that rows are scored with an exact int8 dot product:
+            // q . x = sum(q * base) + sum(q * scale * code), and q * scale ~ queryScale * queryCode.
+            float offset = KERNELS.dot(normalizedQuery, this.base);
+            byte[] queryCodes = new byte[this.dimension];
+            float queryScale = quantizeQuery(normalizedQuery, queryCodes);
+
+            byte[] codes = this.codes;
+            double[] weights = this.weights;
+            int dimension = this.dimension;
+            TopK candidates = this.scanner.scan(filter == null ? this.size : filter.length, dimension, limit * this.rerankFactor, i -> {
+                int row = filter == null ? i : filter[i];
+                return 1.0 - (offset + queryScale * KERNELS.dot(queryCodes, 0, codes, row * dimension, dimension)) - weights[row];
+            });
+
+            int[] rows = new int[candidates.size()];
+            candidateDistances = new double[candidates.size()];
+            int count = candidates.drainSorted(rows, candidateDistances);
+            if (filter != null) {
+                for (int i = 0; i < count; i++) {
+                    rows[i] = filter[rows[i]];
+                }
+            }
+            candidateIds = new String[count];
+            candidateWeights = new double[count];
+            for (int i = 0; i < count; i++) {
+                candidateIds[i] = this.ids[rows[i]];
+                candidateWeights[i] = this.weights[rows[i]];
+                if (this.keepFullVectors) {
+                    float dot = KERNELS.dot(normalizedQuery, 0, this.fullVectors, rows[i] * this.dimension, this.dimension);
+                    candidateDistances[i] = 1.0 - dot - candidateWeights[i];
+                }
+            }
+            if (this.keepFullVectors || this.vectorSource == null) {
+                return TopK.select(candidateIds, candidateWeights, candidateDistances, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Full vectors live in the database, load them outside the lock so writers are not blocked on I/O.
+        return this.vectorSource.rank(query, candidateIds, candidateWeights, limit);
+    }
+
+    /**
+     * Scans every section with full-precision vectors, kept alongside the codes or loaded from the
+     * {@link VectorSource}, so it is the ground truth the quantized search is measured against.
+     * Only with neither are the dequantized vectors used.
+     */
+    @Override
+    public List<IndexHit> exactSearch(float[] query, int limit) {
+        String[] rowIds;
+        double[] rowWeights;
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.exactSearch(query, limit);
+            }
+            if (this.size == 0 || limit <= 0) {
+                return List.of();
+            }
+            float[] normalizedQuery = normalizedQuery(query);
+            if (this.keepFullVectors || this.vectorSource == null) {
+                float offset = KERNELS.dot(normalizedQuery, this.base);
+                float[] scaledQuery = new float[this.dimension];
+                for (int i = 0; i < this.dimension; i++) {
+                    scaledQuery[i] = normalizedQuery[i] * this.scale[i];
+                }
+                TopK topK = new TopK(Math.min(this.size, limit));
+                for (int row = 0; row < this.size; row++) {
+                    int rowOffset = row * this.dimension;
+                    float dot;
+                    if (this.keepFullVectors) {
+                        dot = KERNELS.dot(normalizedQuery, 0, this.fullVectors, rowOffset, this.dimension);
+                    } else {
+                        dot = offset;
+                        for (int i = 0; i < this.dimension; i++) {
+                            dot += scaledQuery[i] * this.codes[rowOffset + i];
+                        }
+                    }
+                    topK.offer(row, 1.0 - dot - this.weights[row]);
+                }
+                return topK.drainHits(this.ids, this.weights);
+            }
+            rowIds = Arrays.copyOf(this.ids, this.size);
+            rowWeights = Arrays.copyOf(this.weights, this.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // As in the search, full vectors are loaded outside the lock.
+        return this.vectorSource.rank(query, rowIds, rowWeights, limit);
+    }
+
+    @Override
+    public List<float[]> sample(int count, Random random) {
+        lock.readLock().lock();
+        try {
+            if (!isTrained()) {
+                return this.pending.sample(count, random);
+            }
+            List<float[]> samples = new ArrayList<>(Math.min(count, this.size));
+            for (int i = 0; i < count && this.size > 0; i++) {
+                int offset = random.nextInt(this.size) * this.dimension;
+                float[] vector = new float[this.dimension];
+                for (int d = 0; d < this.dimension; d++) {
+                    vector[d] = this.base[d] + this.scale[d] * this.codes[offset + d];
+                }
+                samples.add(vector);
+            }
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void train() {
+        FlatVectorIndex training = this.pending;
+        this.dimension = training.getDimension();
+        float[] min = new float[this.dimension];
+        float[] max = new float[this.dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        training.forEachRow((id, vector, weight) -> {
+            for (int d = 0; d < vector.length; d++) {
+                min[d] = Math.min(min[d], vector[d]);
+                max[d] = Math.max(max[d], vector[d]);
+            }
+        });
+        if (this.calibration == QuantizationCalibration.GLOBAL) {
+            float globalMin = Float.POSITIVE_INFINITY;
+            float globalMax = Float.NEGATIVE_INFINITY;
+            for (int d = 0; d < this.dimension; d++) {
+                globalMin = Math.min(globalMin, min[d]);
+                globalMax = Math.max(globalMax, max[d]);
+            }
+            Arrays.fill(min, globalMin);
+            Arrays.fill(max, globalMax);
+        }
+
+        this.base = new float[this.dimension];
+        this.scale = new float[this.dimension];
+        for (int d = 0; d < this.dimension; d++) {
+            this.scale[d] = (max[d] - min[d]) / 255.0f;
+            this.base[d] = min[d] + 128.0f * this.scale[d];
+        }
+        int capacity = Math.max(16, training.size());
+        this.codes = new byte[capacity * this.dimension];
+        this.fullVectors = this.keepFullVectors ? new float[capacity * this.dimension] : null;
+        this.ids = new String[capacity];
+        this.weights = new double[capacity];
+        training.forEachRow(this::store);
+        this.pending = null;
+    }
+
+    private void store(String id, float[] normalized, double weight) {
+        Integer existingRow = this.rowsById.get(id);
+        int row = existingRow != null ? existingRow : appendRow(id);
+        int offset = row * this.dimension;
+        for (int d = 0; d < this.dimension; d++) {
+            int code = this.scale[d] > 0.0f ? Math.round((normalized[d] - this.base[d]) / this.scale[d]) : 0;
+            this.codes[offset + d] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, code));
+        }
+        if (this.keepFullVectors) {
+            System.arraycopy(normalized, 0, this.fullVectors, offset, this.dimension);
+        }
+        this.weights[row] = weight;
+    }
+
+    private int appendRow(String id) {
+        if (this.size == this.ids.length) {
+            int capacity = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+            this.codes = Arrays.copyOf(this.codes, capacity * this.dimension);
+            if (this.keepFullVectors) {
+                this.fullVectors = Arrays.copyOf(this.fullVectors, capacity * this.dimension);
+            }
+        }
+        int row = this.size++;
+        this.ids[row] = id;
+        this.rowsById.put(id, row);
+        return row;
+    }
+
+    private float[] normalizedQuery(float[] query) {
+        if (query.length != this.dimension) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " does not match index dimension " + this.dimension);
+        }
+        float[] normalized = query.clone();
+        KERNELS.normalize(normalized, 0, this.dimension);
+        return normalized;
+    }
+
+    /**
+     * Quantizes {@code query * scale} symmetrically into {@code codes}.
+     *
+     * @return the factor turning an int8 dot product with the codes back into {@code sum(query * scale * code)}
+     */
+    private float quantizeQuery(float[] query, byte[] codes) {
+        float maxAbs = 0.0f;
+        for (int d = 0; d < this.dimension; d++) {
+            maxAbs = Math.max(maxAbs, Math.abs(query[d] * this.scale[d]));
+        }
+        if (maxAbs == 0.0f) {
+            return 0.0f;
+        }
+        float queryScale = maxAbs / Byte.MAX_VALUE;
+        for (int d = 0; d < this.dimension; d++) {
+            codes[d] = (byte) Math.round(query[d] * this.scale[d] / queryScale);
+        }
+        return queryScale;
+    }
+}
@@ -0,0 +1,50 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.entities.RecallReport;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the configured search of an index against its exact scan.
+ */
+public class RecallEvaluator {
+
+    /**
+     * Uses randomly sampled stored vectors as queries and reports the average recall@k
+     * and the average latency of both searches.
+     *
+     * @param projectId the project the index belongs to
+     * @param index the index to evaluate
+     * @param k the number of hits compared per query
+     * @param samples the number of queries
+     * @param seed the seed of the query sample, so runs with different settings are comparable
+     * @return the recall report
+     */
+    public static RecallReport evaluate(String projectId, VectorIndex index, int k, int samples, long seed) {
+        List<float[]> queries = index.sample(samples, new Random(seed));
+        double recallSum = 0.0;
+        long exactNanos = 0L;
+        long engineNanos = 0L;
+        for (float[] query : queries) {
+            long start = System.nanoTime();
+            List<IndexHit> exact = index.exactSearch(query, k);
+            long middle = System.nanoTime();
+            List<IndexHit> approximate = index.search(query, k);
+            long end = System.nanoTime();
+            exactNanos += middle - start;
+            engineNanos += end - middle;
+
+            Set<String> expected = new HashSet<>();
+            exact.forEach(hit -> expected.add(hit.getId()));
+            long found = approximate.stream().filter(hit -> expected.contains(hit.getId())).count();
+            recallSum += expected.isEmpty() ? 1.0 : (double) found / expected.size();
+        }
+        int count = queries.size();
+        return new RecallReport(projectId, index.getEngine().name(), k, count,
+                count == 0 ? 1.0 : recallSum / count,
+                count == 0 ? 0.0 : exactNanos / 1_000_000.0 / count,
+                count == 0 ? 0.0 : engineNanos / 1_000_000.0 / count);
+    }
+}
@@ -0,0 +1,43 @@
+package com.qassistant.context.db.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges rankings from different retrievers by reciprocal rank fusion.
+ * <p>
+ * A section scores {@code sum(1 / (k + rank))} over the rankings it appears in, with ranks starting
+ * at 1. Only ranks are used, so vector distances and BM25 scores never have to be calibrated
+ * against each other; {@code k} damps the advantage of the very first ranks.
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param k the rank damping constant, 60 is the usual choice
+     * @param limit the maximum number of ids to return
+     * @param rankings hits of every retriever, each ordered best first
+     * @return section ids ordered by descending fused score
+     */
+    @SafeVarargs
+    public static List<String> fuse(int k, int limit, List<IndexHit>... rankings) {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<IndexHit> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank).getId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        String[] ids = scores.keySet().toArray(String[]::new);
+        double[] distances = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            distances[i] = -scores.get(ids[i]);
+        }
+        List<String> fused = new ArrayList<>(Math.min(limit, ids.length));
+        TopK.select(ids, new double[ids.length], distances, limit).forEach(hit -> fused.add(hit.getId()));
+        return fused;
+    }
+}
@@ -0,0 +1,28 @@
+package com.qassistant.context.db.index;
+
+/**
+ * Per-project search structure that is kept in memory by a {@link ProjectIndexCache}.
+ */
+public interface ResidentIndex {
+
+    /**
+     * @return the number of live sections
+     */
+    public int size();
+
+    public default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return an estimate of the heap held by the index, used to keep cached indexes within a memory budget
+     */
+    public long estimatedBytes();
+
+    /**
+     * @return true when the index has degraded and should be rebuilt from the stored sections
+     */
+    public default boolean needsRebuild() {
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package com.qassistant.context.db.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded selection of the {@code k} smallest distances out of a stream of candidates.
+ * <p>
+ * Keeps a binary heap over primitive arrays whose root is the worst retained candidate, so
+ * offering a candidate that does not beat it costs a single comparison and nothing is boxed
+ * or allocated per candidate. Candidates are identified by an {@code int} chosen by the
+ * caller, typically a row in a vector block or a position in a result list.
+ * Instances are not thread-safe.
+ */
+public final class TopK {
+    private final double[] distances;
+    private final int[] indexes;
+    private int size;
+
+    public TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        this.distances = new double[k];
+        this.indexes = new int[k];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true once {@code k} candidates are retained
+     */
+    public boolean isFull() {
+        return this.size == this.distances.length;
+    }
+
+    /**
+     * @return the largest retained distance, or positive infinity while the selection is not full
+     */
+    public double threshold() {
+        return isFull() && this.size > 0 ? this.distances[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Offers a candidate to the selection.
+     *
+     * @param index the caller's identifier of the candidate
+     * @param distance the candidate distance, lower is better
+     * @return true if the candidate is retained
+     */
+    public boolean offer(int index, double distance) {
+        if (this.size < this.distances.length) {
+            siftUp(this.size++, index, distance);
+            return true;
+        }
+        if (this.size == 0 || distance >= this.distances[0]) {
+            return false;
+        }
+        siftDown(0, index, distance);
+        return true;
+    }
+
+    /**
+     * Empties the selection into arrays ordered by ascending distance.
+     *
+     * @param outIndexes receives the candidate identifiers, must hold at least {@link #size()} entries
+     * @param outDistances receives the candidate distances, must hold at least {@link #size()} entries
+     * @return the number of candidates written
+     */
+    public int drainSorted(int[] outIndexes, double[] outDistances) {
+        int count = this.size;
+        for (int i = count - 1; i >= 0; i--) {
+            outIndexes[i] = this.indexes[0];
+            outDistances[i] = this.distances[0];
+            int lastIndex = this.indexes[--this.size];
+            double lastDistance = this.distances[this.size];
+            if (this.size > 0) {
+                siftDown(0, lastIndex, lastDistance);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Empties the selection into hits ordered by ascending distance, treating candidate
+     * identifiers as rows of the given parallel arrays.
+     */
+    List<IndexHit> drainHits(String[] ids, double[] weights) {
+        int[] rows = new int[this.size];
+        double[] sorted = new double[this.size];
+        int count = drainSorted(rows, sorted);
+        List<IndexHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new IndexHit(ids[rows[i]], sorted[i], weights[rows[i]]));
+        }
+        return hits;
+    }
+
+    /**
+     * Like {@link #drainHits(String[], double[])} for a scan over a subset of rows, where candidate
+     * identifiers are positions in {@code rows}.
+     */
+    List<IndexHit> drainHits(String[] ids, double[] weights, int[] rows) {
+        int[] positions = new int[this.size];
+        double[] sorted = new double[this.size];
+        int count = drainSorted(positions, sorted);
+        List<IndexHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int row = rows[positions[i]];
+            hits.add(new IndexHit(ids[row], sorted[i], weights[row]));
+        }
+        return hits;
+    }
+
+    /**
+     * Offers every candidate retained by another selection, leaving the other selection unchanged.
+     * Used to combine selections built over disjoint parts of a scan.
+     */
+    void merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.indexes[i], other.distances[i]);
+        }
+    }
+
+    /**
+     * Picks the best hits out of candidates held in parallel arrays. Candidates with a NaN distance are skipped.
+     */
+    static List<IndexHit> select(String[] ids, double[] weights, double[] distances, int limit) {
+        TopK topK = new TopK(Math.min(limit, ids.length));
+        for (int i = 0; i < ids.length; i++) {
+            if (!Double.isNaN(distances[i])) {
+                topK.offer(i, distances[i]);
+            }
+        }
+        return topK.drainHits(ids, weights);
+    }
+
+    private void siftUp(int position, int index, double distance) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (this.distances[parent] >= distance) {
+                break;
+            }
+            this.distances[position] = this.distances[parent];
+            this.indexes[position] = this.indexes[parent];
+            position = parent;
+        }
+        this.distances[position] = distance;
+        this.indexes[position] = index;
+    }
+
+    private void siftDown(int position, int index, double distance) {
+        int half = this.size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < this.size && this.distances[right] > this.distances[child]) {
+                child = right;
+            }
+            if (distance >= this.distances[child]) {
+                break;
+            }
+            this.distances[position] = this.distances[child];
+            this.indexes[position] = this.indexes[child];
+            position = child;
+        }
+        this.distances[position] = distance;
+        this.indexes[position] = index;
+    }
+}
@@ -0,0 +1,105 @@
+package com.qassistant.context.db.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory similarity index over the file sections of one project.
+ * <p>
+ * Implementations keep L2-normalized vectors so similarity is a dot product, and rank sections by
+ * {@code 1 - cosine similarity - weight}. All implementations are safe for concurrent searches
+ * while sections are added or removed.
+ */
+public interface VectorIndex extends ResidentIndex {
+    // Rough heap held per section besides its vector: id string, id map entry and weight.
+    public static final int SECTION_OVERHEAD_BYTES = 160;
+
+    /**
+     * @return the engine this index is built with
+     */
+    public VectorIndexEngine getEngine();
+
+    /**
+     * @return the vector dimension, or 0 while the index is empty
+     */
+    public int getDimension();
+
+    @Override
+    public default long estimatedBytes() {
+        return (long) size() * ((long) getDimension() * Float.BYTES + SECTION_OVERHEAD_BYTES);
+    }
+
+    /**
+     * Adds a section, replacing any section with the same id.
+     *
+     * @param id the section id
+     * @param vector the section embedding, copied and normalized by the index
+     * @param weight the section weight, subtracted from the distance
+     */
+    public void add(String id, float[] vector, double weight);
+
+    /**
+     * Removes a section.
+     *
+     * @param id the section id
+     * @return true if the section was present
+     */
+    public boolean remove(String id);
+
+    /**
+     * Finds the sections closest to the query using the engine's search strategy.
+     *
+     * @param query the query embedding, does not need to be normalized
+     * @param limit the maximum number of hits to return
+     * @return hits ordered by ascending distance
+     */
+    public List<IndexHit> search(float[] query, int limit);
+
+    /**
+     * Finds the sections closest to the query among the given sections only. Rows are picked from
+     * the ids before scoring, so a narrow filter makes the search cheaper rather than adding a pass.
+     *
+     * @param query the query embedding, does not need to be normalized
+     * @param limit the maximum number of hits to return
+     * @param sectionIds the sections to consider, ids not in the index are ignored
+     * @return hits ordered by ascending distance
+     */
+    public List<IndexHit> search(float[] query, int limit, Collection<String> sectionIds);
+
+    /**
+     * Finds the sections closest to each of several queries. Engines that scan their vectors
+     * score all queries in one pass over them; the default searches query by query.
+     *
+     * @param queries the query embeddings, do not need to be normalized
+     * @param limit the maximum number of hits to return per query
+     * @return hits ordered by ascending distance, one list per query in query order
+     */
+    public default List<List<IndexHit>> searchBatch(float[][] queries, int limit) {
+        List<List<IndexHit>> hits = new ArrayList<>(queries.length);
+        for (float[] query : queries) {
+            hits.add(search(query, limit));
+        }
+        return hits;
+    }
+
+    /**
+     * Finds the sections closest to the query by scanning every section. Used as ground truth
+     * when measuring the recall of approximate engines.
+     *
+     * @param query the query embedding, does not need to be normalized
+     * @param limit the maximum number of hits to return
+     * @return hits ordered by ascending distance
+     */
+    public List<IndexHit> exactSearch(float[] query, int limit);
+
+    /**
+     * Picks stored vectors at random, for use as evaluation queries.
+     *
+     * @param count the number of vectors to pick
+     * @param random the source of randomness
+     * @return copies of up to {@code count} normalized vectors
+     */
+    public List<float[]> sample(int count, Random random);
+}
@@ -0,0 +1,20 @@
+package com.qassistant.context.db.index;
+
+public enum VectorIndexEngine {
+    /**
+     * Exact scan over a contiguous vector block.
+     */
+    FLAT,
+    /**
+     * Approximate search over a hierarchical navigable small world graph.
+     */
+    HNSW,
+    /**
+     * Scan over int8 scalar-quantized vectors, re-scoring the best candidates with full precision.
+     */
+    INT8,
+    /**
+     * Scan over product-quantized codes with a query lookup table, re-scoring the shortlist with full precision.
+     */
+    PQ
+}
@@ -0,0 +1,48 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.configs.SearchConfig;
+
+/**
+ * Creates empty project indexes with the engine and tuning configured for each project.
+ */
+public class VectorIndexFactory {
+    private final SearchConfig searchConfig;
+    private final ParallelScanner scanner;
+
+    public VectorIndexFactory(SearchConfig searchConfig) {
+        this.searchConfig = searchConfig;
+        this.scanner = new ParallelScanner(searchConfig.getParallelScanThreshold(), searchConfig.getScanPartitionBytes());
+    }
+
+    /**
+     * @return the scanner shared by the indexes of this factory
+     */
+    public ParallelScanner getScanner() {
+        return this.scanner;
+    }
+
+    /**
+     * @param projectId the project id
+     * @param projectName the project name
+     * @param vectorSource loads full-precision embeddings for engines that do not keep them in memory
+     * @return an empty index built with the engine configured for the project
+     */
+    public VectorIndex create(String projectId, String projectName, VectorSource vectorSource) {
+        return create(engineFor(projectId, projectName), vectorSource);
+    }
+
+    public VectorIndexEngine engineFor(String projectId, String projectName) {
+        return searchConfig.getEngineForProject(projectId, projectName);
+    }
+
+    public VectorIndex create(VectorIndexEngine engine, VectorSource vectorSource) {
+        return switch (engine) {
+            case FLAT -> new FlatVectorIndex(this.scanner);
+            case HNSW -> new HnswVectorIndex(searchConfig.getHnswM(), searchConfig.getHnswEfConstruction(), searchConfig.getHnswEfSearch());
+            case INT8 -> new QuantizedVectorIndex(searchConfig.getInt8Calibration(), searchConfig.getInt8TrainingSize(),
+                    searchConfig.getInt8RerankFactor(), searchConfig.isInt8KeepFullVectors(), vectorSource, this.scanner);
+            case PQ -> new ProductQuantizedVectorIndex(searchConfig.getPqM(), searchConfig.getPqTrainingSize(), searchConfig.getPqIterations(),
+                    searchConfig.getPqRerankFactor(), searchConfig.getPqDriftTolerance(), vectorSource, this.scanner);
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.utils.kernels.VectorKernels;
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads full-precision section embeddings on demand, for indexes that keep only a compressed copy in memory.
+ */
+@FunctionalInterface
+public interface VectorSource {
+
+    /**
+     * @param ids the section ids
+     * @return embeddings of the sections that still exist, keyed by section id
+     */
+    public Map<String, float[]> load(Collection<String> ids);
+
+    /**
+     * Ranks sections by their exact cosine distance to the query, minus their weight. Sections that
+     * no longer exist or have another dimension are left out.
+     *
+     * @param query the query embedding, not necessarily normalized
+     * @param ids the section ids
+     * @param weights the weights of the sections, in the order of {@code ids}
+     * @param limit the maximum number of hits
+     * @return the closest sections, closest first
+     */
+    default List<IndexHit> rank(float[] query, String[] ids, double[] weights, int limit) {
+        VectorKernels kernels = VectorKernelsFactory.getInstance();
+        float[] normalizedQuery = query.clone();
+        kernels.normalize(normalizedQuery, 0, normalizedQuery.length);
+        double[] distances = new double[ids.length];
+        Map<String, float[]> vectors = load(Arrays.asList(ids));
+        for (int i = 0; i < ids.length; i++) {
+            float[] vector = vectors.get(ids[i]);
+            if (vector == null || vector.length != normalizedQuery.length) {
+                distances[i] = Double.NaN;
+                continue;
+            }
+            float[] normalized = vector.clone();
+            kernels.normalize(normalized, 0, normalized.length);
+            distances[i] = 1.0 - kernels.dot(normalizedQuery, normalized) - weights[i];
+        }
+        return TopK.select(ids, weights, distances, limit);
+    }
+}
@@ -1,9 +1,12 @@
 package com.qassistant.context.db.repositories;
 
 import com.qassistant.context.db.dbEntity.File;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -15,10 +18,13 @@ extends CrudRepository<File, String> {
 
     public Optional<File> findByProjectIdAndPath(String var1, String var2);
 
-    public Optional<File> findByProjectIdAndName(String var1, String var2);
+    public List<File> findAllByProjectIdAndName(String var1, String var2);
 
     public Set<File> findFilesByProjectId(String var1);
 
+    @Query(value="SELECT f.id FROM File f WHERE f.project.id = :projectId ORDER BY f.id")
+    public List<String> findIdsByProjectId(@Param(value="projectId") String var1);
+
     public int deleteFilesByProjectId(String var1);
 
     public int deleteAllByProjectIdAndName(String var1, String var2);
@@ -1,7 +1,8 @@
 package com.qassistant.context.db.repositories;
 
 import com.qassistant.context.db.dbEntity.FileSection;
-import org.springframework.data.domain.Page;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
@@ -11,6 +12,57 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface FileSectionRepository
 extends CrudRepository<FileSection, String> {
-    @Query(value="SELECT fs FROM FileSection fs WHERE fs.file.project.id = :projectId or fs.file.project.name = :projectId")
-    public Page<FileSection> findAllByProjectId(@Param(value="projectId") String var1, Pageable var2);
+    /**
+     * Reads the next page of a project's section vectors in id order, without content or file.
+     * Seeking past the last id of the previous page keeps every page as cheap as the first one.
+     */
+    @Query(value="SELECT fs.id AS id, fs.embedding AS embedding, fs.weight AS weight FROM FileSection fs "
+            + "WHERE fs.file.project.id = :projectId AND fs.id > :afterId ORDER BY fs.id")
+    public List<SectionVector> findVectorsByProjectIdAfter(@Param(value="projectId") String var1, @Param(value="afterId") String var2, Pageable var3);
+
+    @Query(value="SELECT fs.id AS id, fs.embedding AS embedding, fs.weight AS weight FROM FileSection fs WHERE fs.id IN :ids")
+    public List<SectionVector> findVectorsByIdIn(@Param(value="ids") Collection<String> var1);
+
+    @Query(value="SELECT fs.id AS id, fs.content AS content FROM FileSection fs "
+            + "WHERE fs.file.project.id = :projectId AND fs.id > :afterId ORDER BY fs.id")
+    public List<SectionContent> findContentsByProjectIdAfter(@Param(value="projectId") String var1, @Param(value="afterId") String var2, Pageable var3);
+
+    @Query(value="SELECT fs.id AS id, fs.content AS content FROM FileSection fs WHERE fs.id IN :ids")
+    public List<SectionContent> findContentsByIdIn(@Param(value="ids") Collection<String> var1);
+
+    @Query(value="SELECT fs.id AS id, fs.file.path AS path FROM FileSection fs "
+            + "WHERE fs.file.project.id = :projectId AND fs.id > :afterId ORDER BY fs.id")
+    public List<SectionPath> findPathsByProjectIdAfter(@Param(value="projectId") String var1, @Param(value="afterId") String var2, Pageable var3);
+
+    @Query(value="SELECT fs FROM FileSection fs WHERE fs.id IN :ids AND fs.file.project.id = :projectId")
+    public List<FileSection> findAllByIdInAndProjectId(@Param(value="ids") Collection<String> var1, @Param(value="projectId") String var2);
+
+    @Query(value="SELECT COUNT(fs) FROM FileSection fs WHERE fs.file.project.id = :projectId")
+    public long countByProjectId(@Param(value="projectId") String var1);
+
+    @Query(value="SELECT fs FROM FileSection fs WHERE fs.legacyEmbeddings IS NOT NULL")
+    public List<FileSection> findAllWithLegacyEmbeddings(Pageable var1);
+
+    /**
+     * Search-relevant columns of a section. The embedding is null for rows that still only carry the legacy JSON one.
+     */
+    public interface SectionVector {
+        public String getId();
+
+        public float[] getEmbedding();
+
+        public double getWeight();
+    }
+
+    public interface SectionPath {
+        public String getId();
+
+        public String getPath();
+    }
+
+    public interface SectionContent {
+        public String getId();
+
+        public String getContent();
+    }
 }
@@ -3,6 +3,9 @@ package com.qassistant.context.db.service;
 import com.qassistant.context.db.dbEntity.Project;
 import com.qassistant.context.entities.ChunkResult;
 import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.DeletionJob;
+import com.qassistant.context.entities.RecallReport;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,7 +16,7 @@ public interface DbService {
     public Project saveProject(Project var1);
 
     @Transactional
-    public void deleteProject(String var1);
+    public DeletionJob deleteProject(String var1);
 
     public Optional<Project> findProjectById(String var1);
 
@@ -21,9 +24,16 @@ public interface DbService {
 
     public Iterable<Project> findAllProjects();
 
-    public void deleteAllFilesByProject(String var1);
+    public DeletionJob deleteAllFilesByProject(String var1);
 
-    public void deleteFileByProjectAndName(String var1, String var2);
+    public DeletionJob deleteFileByProjectAndName(String var1, String var2);
+
+    /**
+     * @return the deletion job with this id, if it was started by this service and is still tracked
+     */
+    public default Optional<DeletionJob> findDeletionJob(String var1) {
+        return Optional.empty();
+    }
 
     public int countFilesByProject(String var1);
 
@@ -35,5 +45,28 @@ public interface DbService {
 
     public List<String> indexChunkResult(ChunkResult var1);
 
-    public List<Context> findContext(String var1, String var2, int var3);
+    public default List<Context> findContext(String var1, String var2, int var3) {
+        return findContext(var1, var2, var3, ContextFilter.NONE);
+    }
+
+    /**
+     * Finds the context entries closest to a prompt among the files matching a filter.
+     */
+    public List<Context> findContext(String var1, String var2, int var3, ContextFilter var4);
+
+    public default List<List<Context>> findContextBatch(String var1, List<String> var2, int var3) {
+        return findContextBatch(var1, var2, var3, ContextFilter.NONE);
+    }
+
+    /**
+     * Finds the context entries closest to each of many prompts of one project among the files
+     * matching a filter. The default looks every prompt up on its own.
+     *
+     * @return the context entries of every prompt, in prompt order
+     */
+    public default List<List<Context>> findContextBatch(String var1, List<String> var2, int var3, ContextFilter var4) {
+        return var2.stream().map(prompt -> findContext(var1, prompt, var3, var4)).toList();
+    }
+
+    public RecallReport evaluateRecall(String var1, int var2, int var3);
 }
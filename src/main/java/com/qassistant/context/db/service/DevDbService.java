@@ -3,6 +3,9 @@ package com.qassistant.context.db.service;
 import com.qassistant.context.db.dbEntity.Project;
 import com.qassistant.context.entities.ChunkResult;
 import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.DeletionJob;
+import com.qassistant.context.entities.RecallReport;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -20,7 +23,8 @@ implements DbService {
     }
 
     @Override
-    public void deleteProject(String project) {
+    public DeletionJob deleteProject(String project) {
+        return DeletionJob.completed("project " + project, 0);
     }
 
     @Override
@@ -39,11 +43,13 @@ implements DbService {
     }
 
     @Override
-    public void deleteAllFilesByProject(String project) {
+    public DeletionJob deleteAllFilesByProject(String project) {
+        return DeletionJob.completed("files of project " + project, 0);
     }
 
     @Override
-    public void deleteFileByProjectAndName(String project, String fileName) {
+    public DeletionJob deleteFileByProjectAndName(String project, String fileName) {
+        return DeletionJob.completed("file " + fileName + " of project " + project, 0);
     }
 
     @Override
@@ -72,7 +78,12 @@ implements DbService {
     }
 
     @Override
-    public List<Context> findContext(String project, String prompt, int contextEntries) {
+    public List<Context> findContext(String project, String prompt, int contextEntries, ContextFilter filter) {
         return List.of();
     }
+
+    @Override
+    public RecallReport evaluateRecall(String project, int k, int samples) {
+        return new RecallReport(project, "NONE", k, 0, 1.0, 0.0, 0.0);
+    }
 }
@@ -0,0 +1,127 @@
+package com.qassistant.context.db.service;
+
+import com.qassistant.context.configs.GraphConfig;
+import com.qassistant.context.configs.VectorStoreConfig;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the constraints and lookup indexes {@link VectorDbService} relies on, before it serves requests.
+ * <p>
+ * Every statement is named and uses {@code IF NOT EXISTS}, so running it against an initialized
+ * database changes nothing. Constraints make {@code Project.id}, {@code Project.name},
+ * {@code File.id} and the document id unique and indexed; range indexes cover the file lookups
+ * by project and path and by checksum. Startup blocks until all of them are ONLINE, since
+ * queries planned while an index is still populating fall back to label scans; other indexes of
+ * the database are not waited for.
+ */
+@Component
+@Profile(value={"prod"})
+@ConditionalOnProperty(prefix="spring.neo4j", name={"uri"})
+@ConditionalOnBean(Driver.class)
+public class GraphSchemaInitializer implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(GraphSchemaInitializer.class);
+    private static final long AWAIT_POLL_MILLIS = 500;
+    private final Driver neo4jDriver;
+    private final GraphConfig graphConfig;
+    private final String documentLabel;
+
+    public GraphSchemaInitializer(Driver neo4jDriver, GraphConfig graphConfig, VectorStoreConfig vectorStoreConfig) {
+        this.neo4jDriver = neo4jDriver;
+        this.graphConfig = graphConfig;
+        this.documentLabel = Optional.ofNullable(vectorStoreConfig.getLabel()).orElse("Document");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Map<String, String> statements = schemaStatements();
+        try (Session session = neo4jDriver.session()) {
+            Set<String> existing = new HashSet<>();
+            session.run("SHOW CONSTRAINTS YIELD name").list().forEach(record -> existing.add(record.get("name").asString()));
+            session.run("SHOW INDEXES YIELD name").list().forEach(record -> existing.add(record.get("name").asString()));
+
+            List<String> created = new ArrayList<>();
+            statements.forEach((name, statement) -> {
+                if (existing.contains(name)) {
+                    return;
+                }
+                try {
+                    session.run(statement).consume();
+                    created.add(name);
+                } catch (Exception e) {
+                    // Typically duplicates already stored; lookups still work, only without the guarantee.
+                    logger.error("Failed to create {}, fix the conflicting data and restart to retry", name, e);
+                }
+            });
+            if (created.isEmpty()) {
+                logger.info("Neo4j schema is up to date");
+            } else {
+                logger.info("Created Neo4j constraints and indexes: {}", created);
+            }
+
+            awaitOnline(session, List.copyOf(statements.keySet()));
+        }
+    }
+
+    /**
+     * Polls the state of the named indexes until all are ONLINE. Only the schema created here is
+     * awaited; other indexes, such as a vector index still populating or a failed index of
+     * another application, must not block startup.
+     */
+    private void awaitOnline(Session session, List<String> names) {
+        long timeoutNanos = graphConfig.getSchemaAwaitTimeout().toNanos();
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            Map<String, String> notOnline = new LinkedHashMap<>();
+            session.run("SHOW INDEXES YIELD name, state WHERE name IN $names AND state <> 'ONLINE' RETURN name, state",
+                    Map.of("names", names)).list().forEach(record -> notOnline.put(record.get("name").asString(), record.get("state").asString()));
+            if (notOnline.isEmpty()) {
+                return;
+            }
+            if (notOnline.containsValue("FAILED")) {
+                throw new RuntimeException("Neo4j indexes failed to populate: " + notOnline);
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new RuntimeException("Neo4j indexes are not online after " + TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + "s: " + notOnline);
+            }
+            try {
+                Thread.sleep(AWAIT_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for Neo4j indexes", e);
+            }
+        }
+    }
+
+    private Map<String, String> schemaStatements() {
+        Map<String, String> statements = new LinkedHashMap<>();
+        statements.put("project_id_unique",
+                "CREATE CONSTRAINT project_id_unique IF NOT EXISTS FOR (p:Project) REQUIRE p.id IS UNIQUE");
+        statements.put("project_name_unique",
+                "CREATE CONSTRAINT project_name_unique IF NOT EXISTS FOR (p:Project) REQUIRE p.name IS UNIQUE");
+        statements.put("file_id_unique",
+                "CREATE CONSTRAINT file_id_unique IF NOT EXISTS FOR (f:File) REQUIRE f.id IS UNIQUE");
+        statements.put("document_id_unique",
+                "CREATE CONSTRAINT document_id_unique IF NOT EXISTS FOR (d:`" + documentLabel + "`) REQUIRE d.id IS UNIQUE");
+        statements.put("file_project_path",
+                "CREATE INDEX file_project_path IF NOT EXISTS FOR (f:File) ON (f.projectId, f.path)");
+        statements.put("file_checksum",
+                "CREATE INDEX file_checksum IF NOT EXISTS FOR (f:File) ON (f.checksum)");
+        return statements;
+    }
+}
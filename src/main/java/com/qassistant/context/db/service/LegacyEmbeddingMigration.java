@@ -0,0 +1,80 @@
+package com.qassistant.context.db.service;
+
+import com.qassistant.context.db.dbEntity.FileSection;
+import com.qassistant.context.db.repositories.FileSectionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Rewrites file sections that still store their embedding as JSON into the binary float32 column
+ * at startup, for the relational backend.
+ * <p>
+ * Safe to run repeatedly and while the service is serving queries: legacy rows are decoded
+ * transparently on load, this only makes the conversion permanent. Every page is migrated in its
+ * own transaction and the persistence context is cleared after it, so memory stays bounded
+ * however many rows are left. Without a JPA setup, as with the Neo4j backend, it does nothing.
+ */
+@Component
+public class LegacyEmbeddingMigration implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LegacyEmbeddingMigration.class);
+    private static final int PAGE_SIZE = 150;
+    private final ObjectProvider<FileSectionRepository> fileSectionRepository;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    public LegacyEmbeddingMigration(ObjectProvider<FileSectionRepository> fileSectionRepository,
+                                    ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.fileSectionRepository = fileSectionRepository;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        FileSectionRepository repository = fileSectionRepository.getIfAvailable();
+        EntityManagerFactory factory = entityManagerFactory.getIfAvailable();
+        if (repository != null && factory != null) {
+            migrate(repository, factory);
+        }
+    }
+
+    /**
+     * @return the number of migrated sections
+     */
+    int migrate(FileSectionRepository repository, EntityManagerFactory factory) {
+        TransactionTemplate transactions = new TransactionTemplate(new JpaTransactionManager(factory));
+        transactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        int migrated = 0;
+        int pageMigrated;
+        do {
+            pageMigrated = transactions.execute(status -> {
+                // Migrated rows drop out of the query, so the first page always holds the next batch.
+                List<FileSection> page = repository.findAllWithLegacyEmbeddings(PageRequest.of(0, PAGE_SIZE));
+                page.forEach(FileSection::migrateLegacyEmbeddings);
+                repository.saveAll(page);
+                EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(factory);
+                if (entityManager != null) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+                return page.size();
+            });
+            migrated += pageMigrated;
+        } while (pageMigrated == PAGE_SIZE);
+
+        if (migrated > 0) {
+            LOGGER.info("Migrated {} file sections to binary embeddings", migrated);
+        }
+        return migrated;
+    }
+}
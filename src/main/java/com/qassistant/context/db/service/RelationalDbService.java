@@ -3,44 +3,78 @@ package com.qassistant.context.db.service;
 import com.qassistant.context.db.dbEntity.File;
 import com.qassistant.context.db.dbEntity.FileSection;
 import com.qassistant.context.db.dbEntity.Project;
+import com.qassistant.context.configs.SearchConfig;
+import com.qassistant.context.db.index.FileSectionMap;
+import com.qassistant.context.db.index.FlatVectorIndex;
+import com.qassistant.context.db.index.IndexFileStore;
+import com.qassistant.context.db.index.IndexHit;
+import com.qassistant.context.db.index.LexicalIndex;
+import com.qassistant.context.db.index.MappedVectorIndex;
+import com.qassistant.context.db.index.ProjectIndexCache;
+import com.qassistant.context.db.index.RecallEvaluator;
+import com.qassistant.context.db.index.ReciprocalRankFusion;
+import com.qassistant.context.db.index.VectorIndex;
+import com.qassistant.context.db.index.VectorIndexEngine;
+import com.qassistant.context.db.index.VectorIndexFactory;
 import com.qassistant.context.db.repositories.FileRepository;
 import com.qassistant.context.db.repositories.FileSectionRepository;
+import com.qassistant.context.db.repositories.FileSectionRepository.SectionContent;
+import com.qassistant.context.db.repositories.FileSectionRepository.SectionPath;
+import com.qassistant.context.db.repositories.FileSectionRepository.SectionVector;
 import com.qassistant.context.db.repositories.ProjectRepository;
 import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.DeletionJob;
 import com.qassistant.context.entities.ChunkResult;
 import com.qassistant.context.entities.FileChunk;
+import com.qassistant.context.entities.RecallReport;
 import com.qassistant.context.services.EmbeddingGptService;
 import com.qassistant.context.utils.MathUtils;
 import com.qassistant.context.utils.TextUtils;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingResponse;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 public class RelationalDbService implements DbService{
     private static final Logger LOGGER = LoggerFactory.getLogger(RelationalDbService.class);
-    private static final Map<String, Set<FileSection>> projectFileSectionsCache = new ConcurrentHashMap<>();
     private final FileSectionRepository fileSectionRepository;
     private final FileRepository fileRepository;
     private final ProjectRepository projectRepository;
     private final EmbeddingGptService embeddingService;
+    private final VectorIndexFactory indexFactory;
+    private final IndexFileStore indexFileStore;
+    private final ProjectIndexCache<VectorIndex> projectIndexCache;
+    private final ProjectIndexCache<LexicalIndex> lexicalIndexCache;
+    private final ProjectIndexCache<FileSectionMap> fileMapCache;
+    // Lexical lookups block on the database while the index loads, so they stay off the common pool.
+    private final ExecutorService lexicalExecutor;
+    private final int rrfK;
 
     /**
-     * Constructs a new RelationalDbService with the necessary repositories and services.
+     * Constructs a new RelationalDbService with the necessary repositories and services,
+     * using the default search settings.
      *
      * @param fileSectionRepository repository for accessing and persisting file sections
      * @param fileRepository repository for accessing and persisting files
@@ -48,10 +82,41 @@ public class RelationalDbService implements DbService{
      * @param embeddingService service for handling embedding operations
      */
     public RelationalDbService(FileSectionRepository fileSectionRepository, FileRepository fileRepository, ProjectRepository projectRepository, EmbeddingGptService embeddingService) {
+        this(fileSectionRepository, fileRepository, projectRepository, embeddingService, new SearchConfig());
+    }
+
+    /**
+     * Constructs a new RelationalDbService with the necessary repositories and services.
+     *
+     * @param fileSectionRepository repository for accessing and persisting file sections
+     * @param fileRepository repository for accessing and persisting files
+     * @param projectRepository repository for accessing and persisting project details
+     * @param embeddingService service for handling embedding operations
+     * @param searchConfig retrieval engine selection and tuning
+     */
+    public RelationalDbService(FileSectionRepository fileSectionRepository, FileRepository fileRepository, ProjectRepository projectRepository, EmbeddingGptService embeddingService, SearchConfig searchConfig) {
         this.fileSectionRepository = fileSectionRepository;
         this.fileRepository = fileRepository;
         this.projectRepository = projectRepository;
         this.embeddingService = embeddingService;
+        this.indexFactory = new VectorIndexFactory(searchConfig);
+        this.indexFileStore = Optional.ofNullable(searchConfig.getIndexDirectory())
+                .map(directory -> new IndexFileStore(Path.of(directory), this.indexFactory.getScanner()))
+                .orElse(null);
+        this.projectIndexCache = new ProjectIndexCache<>("vector", searchConfig.getIndexCacheMaxBytes());
+        this.lexicalIndexCache = searchConfig.isHybridSearch()
+                ? new ProjectIndexCache<>("lexical", searchConfig.getLexicalCacheMaxBytes())
+                : null;
+        this.fileMapCache = new ProjectIndexCache<>("files", searchConfig.getFileMapCacheMaxBytes());
+        AtomicInteger lexicalThreads = new AtomicInteger();
+        this.lexicalExecutor = searchConfig.isHybridSearch()
+                ? Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                    Thread thread = new Thread(runnable, "lexical-search-" + lexicalThreads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        this.rrfK = searchConfig.getRrfK();
     }
 
 
@@ -66,10 +131,12 @@ public class RelationalDbService implements DbService{
 
     @Override
     @Transactional
-    public void deleteProject(String projectId) {
+    public DeletionJob deleteProject(String projectId) {
         Project existingProject = findProjectById(projectId).orElseThrow(() ->
                 new RuntimeException("Project not found with ID: " + projectId));
         projectRepository.deleteById(existingProject.getId());
+        invalidateProjectIndex(existingProject.getId());
+        return DeletionJob.completed("project " + existingProject.getId(), 1);
     }
 
     @Override
@@ -89,24 +156,34 @@ public class RelationalDbService implements DbService{
 
     @Override
     @Transactional
-    public void deleteAllFilesByProject(String projectId) {
+    public DeletionJob deleteAllFilesByProject(String projectId) {
         Project project = findProjectById(projectId).orElseThrow(() ->
                 new RuntimeException("No project found with ID: " + projectId));
         int deletedCount = fileRepository.deleteFilesByProjectId(project.getId());
         if (deletedCount == 0) {
             throw new RuntimeException("No files to delete for project ID: " + projectId);
         }
+        invalidateProjectIndex(project.getId());
+        return DeletionJob.completed("files of project " + project.getId(), deletedCount);
     }
 
     @Override
     @Transactional
-    public void deleteFileByProjectAndName(String projectId, String fileName) {
+    public DeletionJob deleteFileByProjectAndName(String projectId, String fileName) {
         Project project = findProjectById(projectId).orElseThrow(() ->
                 new RuntimeException("No project found with ID: " + projectId));
+        // Files in different directories may share a name; the bulk delete removes all of them,
+        // so the section ids of every match are collected while the sections can still be read.
+        List<String> sectionIds = fileRepository.findAllByProjectIdAndName(project.getId(), fileName).stream()
+                .flatMap(file -> file.getSections().stream())
+                .map(FileSection::getId)
+                .toList();
         int deletedCount = fileRepository.deleteAllByProjectIdAndName(project.getId(), fileName);
         if (deletedCount == 0) {
             throw new RuntimeException("No file named '" + fileName + "' found in project ID: " + projectId);
         }
+        removeSections(project.getId(), sectionIds);
+        return DeletionJob.completed("file " + fileName + " of project " + project.getId(), deletedCount);
     }
 
     @Override
@@ -123,12 +200,11 @@ public class RelationalDbService implements DbService{
                 findProjectByName(projectId).orElseThrow(() ->
                         new RuntimeException("No project found with ID: " + projectId)));
 
-        // Update the weight for all sections of the file found by projectId and fileName
-        fileRepository.findByProjectIdAndName(project.getId(), fileName).ifPresent(file -> {
+        // Update the weight for all sections of the files found by projectId and fileName
+        fileRepository.findAllByProjectIdAndName(project.getId(), fileName).forEach(file -> {
             file.getSections().forEach(section -> section.setWeight(weight));
             fileSectionRepository.saveAll(file.getSections());
-            // Optionally clear cache after updating
-            Optional.ofNullable(projectFileSectionsCache.get(project.getId())).ifPresent(Set::clear);
+            updateWeights(project.getId(), file.getSections());
         });
 
         return weight;
@@ -141,13 +217,16 @@ public class RelationalDbService implements DbService{
                 findProjectByName(projectId).orElseThrow(() ->
                         new RuntimeException("Project not found with ID: " + projectId)));
 
-        // Fetch and update the weight of the file sections by their IDs
-        Iterable<FileSection> fileSections = fileSectionRepository.findAllById(ids);
+        // Fetch and update the weight of the file sections by their IDs, ignoring sections of other projects
+        List<FileSection> fileSections = fileSectionRepository.findAllByIdInAndProjectId(ids, project.getId());
+        int requested = new HashSet<>(ids).size();
+        if (fileSections.size() < requested) {
+            LOGGER.warn("{} of {} section IDs are not sections of project ID {}, their weight is not changed",
+                    requested - fileSections.size(), requested, project.getId());
+        }
         fileSections.forEach(section -> section.setWeight(weight));
         fileSectionRepository.saveAll(fileSections);
-
-        // Clear related cache if it exists
-        Optional.ofNullable(projectFileSectionsCache.get(project.getId())).ifPresent(Set::clear);
+        updateWeights(project.getId(), fileSections);
 
         return weight;
     }
@@ -183,64 +262,367 @@ public class RelationalDbService implements DbService{
             throw new IllegalArgumentException("fileChunks size should be more than 0");
         }
         String string = chunkResult.projectId();
-        this.findProjectById(string).orElseGet(() -> this.findProjectByName(string).orElseThrow(() -> new RuntimeException("There is no such project")));
+        Project project = this.findProjectById(string).orElseGet(() -> this.findProjectByName(string).orElseThrow(() -> new RuntimeException("There is no such project")));
         Map<FileChunk, Set<FileSection>> map = embeddingService.mapChunksToSections(chunkResult.fileChunks());
         for (Map.Entry entry : map.entrySet()) {
             this.associateFileChunkWithSections((FileChunk)entry.getKey(), (Set)entry.getValue());
         }
+        if (lexicalIndexCache != null) {
+            // Build the lexical index of the project now, so the first hybrid query does not pay for it.
+            afterCommit(() -> lexicalExecutor.execute(() -> {
+                try {
+                    fetchLexicalIndex(project);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to build the lexical index of project {}", project.getId(), e);
+                }
+            }));
+        }
         return chunkResult.fileChunks().stream().map(FileChunk::filePath).toList();
     }
 
     @Override
-    public List<Context> findContext(String projectId, String prompt, int contextEntries) {
+    public List<Context> findContext(String projectId, String prompt, int contextEntries, ContextFilter filter) {
         Project project = findProjectById(projectId).orElseThrow(() ->
                 new RuntimeException("Project not found with ID: " + projectId));
 
-        return findContexts(project.getId(), prompt, contextEntries);
+        return findContexts(project, prompt, contextEntries, filter);
     }
 
-    private List<Context> findContexts(String projectId, String query, int limit) {
-        Set<FileSection> fileSections = fetchFileSections(projectId);
-        if (fileSections.isEmpty()) {
+    /**
+     * Finds context entries for many prompts with one project lookup, batched embedding requests
+     * and a single pass of the vector index over all queries. A filter is resolved once for the
+     * whole batch; filtered queries then score only the sections of matching files, one by one.
+     */
+    @Override
+    public List<List<Context>> findContextBatch(String projectId, List<String> prompts, int contextEntries, ContextFilter filter) {
+        Project project = findProjectById(projectId).orElseThrow(() ->
+                new RuntimeException("Project not found with ID: " + projectId));
+        if (prompts.isEmpty()) {
+            return List.of();
+        }
+        VectorIndex index = fetchProjectIndex(project);
+        if (index.isEmpty()) {
             throw new RuntimeException("No such project in database");
         }
+        Set<String> sectionIds = filter.isEmpty() ? null : findSectionIds(project.getId(), filter);
+        if (sectionIds != null && sectionIds.isEmpty()) {
+            return prompts.stream().map(prompt -> List.<Context>of()).toList();
+        }
 
-        List<Double> queryEmbedding = embeddingService.getEmbeddingResponse(Collections.singletonList(query))
-                .getResult().getOutput();
+        CompletableFuture<List<List<IndexHit>>> lexicalHits = lexicalIndexCache == null
+                ? CompletableFuture.completedFuture(List.of())
+                : CompletableFuture.supplyAsync(() -> {
+                    LexicalIndex lexicalIndex = fetchLexicalIndex(project);
+                    return prompts.stream().map(prompt -> lexicalIndex.search(prompt, contextEntries, sectionIds)).toList();
+                }, lexicalExecutor).exceptionally(e -> {
+                    LOGGER.warn("Lexical search failed for project {}, using vector hits only", project.getId(), e);
+                    return List.of();
+                });
+        float[][] queryEmbeddings = embeddingService.getQueryEmbeddings(prompts).toArray(float[][]::new);
+        List<List<IndexHit>> vectorHits = sectionIds == null
+                ? index.searchBatch(queryEmbeddings, contextEntries)
+                : Arrays.stream(queryEmbeddings).map(query -> index.search(query, contextEntries, sectionIds)).toList();
+        return toContexts(fuseHits(queryEmbeddings, vectorHits, lexicalHits.join(), contextEntries));
+    }
 
-        List<Context> contexts = fileSections.stream()
-                .map(fileSection -> new Context(
-                        1.0 - MathUtils.cosineSimilarity(queryEmbedding, fileSection.getEmbeddings()) - fileSection.getWeight(),
-                        fileSection.getContent(), fileSection.getId(), fileSection.getWeight()))
-                .sorted(Comparator.comparing(Context::getDistance))
-                .collect(Collectors.toList());
+    @Override
+    public RecallReport evaluateRecall(String projectId, int k, int samples) {
+        Project project = findProjectById(projectId).orElseGet(() ->
+                findProjectByName(projectId).orElseThrow(() ->
+                        new RuntimeException("Project not found with ID: " + projectId)));
+
+        VectorIndex index = fetchProjectIndex(project);
+        return RecallEvaluator.evaluate(project.getId(), index, k, samples, 42L);
+    }
+
+    private List<Context> findContexts(Project project, String query, int limit, ContextFilter filter) {
+        VectorIndex index = fetchProjectIndex(project);
+        if (index.isEmpty()) {
+            throw new RuntimeException("No such project in database");
+        }
+        // A filter is resolved to the sections of matching files up front, so only those rows are scored.
+        Set<String> sectionIds = filter.isEmpty() ? null : findSectionIds(project.getId(), filter);
+        if (sectionIds != null && sectionIds.isEmpty()) {
+            return List.of();
+        }
 
-        return contexts.subList(0, Math.min(contexts.size(), limit));
+        // The lexical ranking runs while the query is embedded, so it adds no latency of its own.
+        CompletableFuture<List<IndexHit>> lexicalHits = lexicalIndexCache == null
+                ? CompletableFuture.completedFuture(List.of())
+                : CompletableFuture.supplyAsync(() -> fetchLexicalIndex(project).search(query, limit, sectionIds), lexicalExecutor)
+                        .exceptionally(e -> {
+                            LOGGER.warn("Lexical search failed for project {}, using vector hits only", project.getId(), e);
+                            return List.of();
+                        });
+        float[] queryEmbedding = embeddingService.getQueryEmbedding(query);
+        List<IndexHit> vectorHits = sectionIds == null
+                ? index.search(queryEmbedding, limit)
+                : index.search(queryEmbedding, limit, sectionIds);
+        List<IndexHit> lexical = lexicalHits.join();
+        List<List<IndexHit>> hits = fuseHits(new float[][]{queryEmbedding}, List.of(vectorHits),
+                lexical.isEmpty() ? List.of() : List.of(lexical), limit);
+        return toContexts(hits).get(0);
     }
 
-    private Set<FileSection> fetchFileSections(String projectId) {
-        // First, check the cache for existing file sections.
-        Set<FileSection> cachedSections = projectFileSectionsCache.get(projectId);
-        if (cachedSections != null && !cachedSections.isEmpty()) {
-            return cachedSections;
+    /**
+     * Loads the content of the winning sections, so content is read for at most {@code limit}
+     * sections per query.
+     */
+    private List<List<Context>> toContexts(List<List<IndexHit>> hits) {
+        List<String> ids = hits.stream().flatMap(List::stream).map(IndexHit::getId).distinct().toList();
+        Map<String, String> contents = new HashMap<>();
+        final int batchSize = 1000;
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            fileSectionRepository.findContentsByIdIn(ids.subList(from, Math.min(from + batchSize, ids.size())))
+                    .forEach(section -> contents.put(section.getId(), section.getContent()));
         }
+        return hits.stream()
+                .map(queryHits -> queryHits.stream()
+                        .filter(hit -> contents.containsKey(hit.getId()))
+                        .map(hit -> new Context(hit.getDistance(), contents.get(hit.getId()), hit.getId(), hit.getWeight()))
+                        .collect(Collectors.toList()))
+                .toList();
+    }
+
+    /**
+     * Resolves a filter against the resident map of the project's file paths, which is loaded once
+     * and then kept in sync like the other resident indexes.
+     */
+    private Set<String> findSectionIds(String projectId, ContextFilter filter) {
+        return fetchFileMap(projectId).sectionIds(filter::matches);
+    }
+
+    private FileSectionMap fetchFileMap(String projectId) {
+        return fileMapCache.get(projectId, id -> {
+            FileSectionMap map = new FileSectionMap();
+            final int pageSize = 1000;
+            PageRequest pageRequest = PageRequest.of(0, pageSize);
+            String lastId = "";
+            List<SectionPath> page;
+            do {
+                page = fileSectionRepository.findPathsByProjectIdAfter(id, lastId, pageRequest);
+                page.forEach(section -> map.add(section.getId(), section.getPath()));
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == pageSize);
+            return map;
+        });
+    }
 
-        // If not in cache, fetch from database.
-        Set<FileSection> fileSections = new HashSet<>();
-        int pageNumber = 0;
-        final int pageSize = 150;
+    /**
+     * Merges vector and lexical hits of every query by reciprocal rank fusion. Sections found only
+     * lexically have no vector distance yet, theirs is computed from the stored embedding, which is
+     * loaded once for all queries; legacy rows are decoded and sections without any embedding are left out.
+     *
+     * @param lexicalHits lexical hits per query, or an empty list when there are none at all
+     */
+    private List<List<IndexHit>> fuseHits(float[][] queryEmbeddings, List<List<IndexHit>> vectorHits, List<List<IndexHit>> lexicalHits, int limit) {
+        if (lexicalHits.isEmpty()) {
+            return vectorHits;
+        }
+        List<Map<String, IndexHit>> vectorHitsById = new ArrayList<>(vectorHits.size());
+        List<List<String>> fusedIds = new ArrayList<>(vectorHits.size());
+        Set<String> lexicalOnlyIds = new HashSet<>();
+        for (int query = 0; query < vectorHits.size(); query++) {
+            Map<String, IndexHit> byId = new HashMap<>();
+            vectorHits.get(query).forEach(hit -> byId.put(hit.getId(), hit));
+            List<String> ids = ReciprocalRankFusion.fuse(rrfK, limit, vectorHits.get(query), lexicalHits.get(query));
+            ids.stream().filter(id -> !byId.containsKey(id)).forEach(lexicalOnlyIds::add);
+            vectorHitsById.add(byId);
+            fusedIds.add(ids);
+        }
 
-        Page<FileSection> page;
+        Map<String, SectionVector> lexicalOnly = new HashMap<>();
+        Map<String, float[]> lexicalOnlyEmbeddings = new HashMap<>();
+        List<String> idsToLoad = new ArrayList<>(lexicalOnlyIds);
+        final int batchSize = 1000;
+        for (int from = 0; from < idsToLoad.size(); from += batchSize) {
+            List<SectionVector> sections = fileSectionRepository.findVectorsByIdIn(idsToLoad.subList(from, Math.min(from + batchSize, idsToLoad.size())));
+            sections.forEach(section -> lexicalOnly.put(section.getId(), section));
+            lexicalOnlyEmbeddings.putAll(embeddingsOf(sections));
+        }
+        List<List<IndexHit>> fused = new ArrayList<>(fusedIds.size());
+        for (int query = 0; query < fusedIds.size(); query++) {
+            float[] queryEmbedding = queryEmbeddings[query];
+            Map<String, IndexHit> byId = vectorHitsById.get(query);
+            fused.add(fusedIds.get(query).stream()
+                    .map(id -> byId.containsKey(id) ? byId.get(id) : lexicalHit(queryEmbedding, lexicalOnly.get(id), lexicalOnlyEmbeddings.get(id)))
+                    .filter(Objects::nonNull)
+                    .toList());
+        }
+        return fused;
+    }
+
+    /**
+     * @return the hit of a section found only lexically, or null if the section or its embedding is gone
+     */
+    private static IndexHit lexicalHit(float[] queryEmbedding, SectionVector section, float[] embedding) {
+        if (section == null || embedding == null) {
+            return null;
+        }
+        double distance = 1.0 - MathUtils.cosineSimilarity(queryEmbedding, embedding) - section.getWeight();
+        return new IndexHit(section.getId(), distance, section.getWeight());
+    }
+
+    private Map<String, float[]> loadEmbeddings(Collection<String> sectionIds) {
+        return embeddingsOf(fileSectionRepository.findVectorsByIdIn(sectionIds));
+    }
+
+    /**
+     * @return the embeddings of the sections, decoded from the legacy JSON column for rows not migrated yet
+     */
+    private Map<String, float[]> embeddingsOf(List<SectionVector> sections) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        List<String> legacyIds = new ArrayList<>();
+        for (SectionVector section : sections) {
+            if (section.getEmbedding() != null) {
+                embeddings.put(section.getId(), section.getEmbedding());
+            } else {
+                legacyIds.add(section.getId());
+            }
+        }
+        if (!legacyIds.isEmpty()) {
+            fileSectionRepository.findAllById(legacyIds)
+                    .forEach(section -> embeddings.put(section.getId(), section.getEmbedding()));
+        }
+        return embeddings;
+    }
+
+    private LexicalIndex fetchLexicalIndex(Project project) {
+        return lexicalIndexCache.get(project.getId(), projectId -> {
+            LexicalIndex index = new LexicalIndex();
+            final int pageSize = 1000;
+            PageRequest pageRequest = PageRequest.of(0, pageSize);
+            String lastId = "";
+            List<SectionContent> page;
+            do {
+                page = fileSectionRepository.findContentsByProjectIdAfter(projectId, lastId, pageRequest);
+                page.forEach(section -> index.add(section.getId(), section.getContent()));
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == pageSize);
+            LOGGER.info("Built lexical index with {} sections for project {}", index.size(), projectId);
+            return index;
+        });
+    }
+
+    private VectorIndex fetchProjectIndex(Project project) {
+        return projectIndexCache.get(project.getId(), projectId -> loadProjectIndex(project));
+    }
+
+    private VectorIndex loadProjectIndex(Project project) {
+        String projectId = project.getId();
+        // Flat indexes are persisted; a file written from the current database state is mapped instead of rebuilt.
+        boolean persistent = indexFileStore != null
+                && indexFactory.engineFor(projectId, project.getName()) == VectorIndexEngine.FLAT;
+        String fingerprint = persistent ? projectFingerprint(projectId) : null;
+        if (persistent) {
+            Optional<MappedVectorIndex> mappedIndex = indexFileStore.open(projectId, fingerprint);
+            if (mappedIndex.isPresent()) {
+                LOGGER.info("Mapped index file with {} sections for project {}", mappedIndex.get().size(), projectId);
+                return mappedIndex.get();
+            }
+        }
+
+        // Otherwise, load the sections from the database into a new index.
+        VectorIndex index = indexFactory.create(projectId, project.getName(), this::loadEmbeddings);
+        final int pageSize = 1000;
+        PageRequest pageRequest = PageRequest.of(0, pageSize);
+        List<String> legacyIds = new ArrayList<>();
+        String lastId = "";
+
+        // Only id, vector and weight are read, paging by id so that no page re-reads the rows before it.
+        List<SectionVector> page;
         do {
-            PageRequest pageRequest = PageRequest.of(pageNumber++, pageSize);
-            page = fileSectionRepository.findAllByProjectId(projectId, pageRequest);
-            fileSections.addAll(page.getContent());
-        } while (page.hasNext());
+            page = fileSectionRepository.findVectorsByProjectIdAfter(projectId, lastId, pageRequest);
+            for (SectionVector section : page) {
+                if (section.getEmbedding() != null) {
+                    index.add(section.getId(), section.getEmbedding(), section.getWeight());
+                } else {
+                    legacyIds.add(section.getId());
+                }
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageSize);
+        // Rows not migrated yet only have the JSON embedding, which the entity decodes on load.
+        for (int from = 0; from < legacyIds.size(); from += pageSize) {
+            fileSectionRepository.findAllById(legacyIds.subList(from, Math.min(from + pageSize, legacyIds.size())))
+                    .forEach(section -> index.add(section.getId(), section.getEmbedding(), section.getWeight()));
+        }
+
+        LOGGER.info("Built {} index with {} sections for project {}", index.getEngine(), index.size(), projectId);
+        if (persistent && !index.isEmpty() && index instanceof FlatVectorIndex flatIndex) {
+            indexFileStore.write(projectId, fingerprint, flatIndex);
+        }
+        return index;
+    }
+
+    /**
+     * Identifies the indexed state of a project. Re-indexing a file replaces its row, so the set of
+     * file ids together with the section count changes whenever the sections do.
+     */
+    private String projectFingerprint(String projectId) {
+        return TextUtils.generateSha256(fileSectionRepository.countByProjectId(projectId) + ":"
+                + String.join(",", fileRepository.findIdsByProjectId(projectId)));
+    }
+
+    /**
+     * Runs a change of the resident indexes once the surrounding transaction has committed, or right
+     * away outside of one. Applied earlier, a search could see sections that a rollback never
+     * writes, and a load running meanwhile could still read the rows before the change.
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private void invalidateProjectIndex(String projectId) {
+        afterCommit(() -> {
+            projectIndexCache.invalidate(projectId);
+            fileMapCache.invalidate(projectId);
+            if (lexicalIndexCache != null) {
+                lexicalIndexCache.invalidate(projectId);
+            }
+            if (indexFileStore != null) {
+                indexFileStore.delete(projectId);
+            }
+        });
+    }
 
-        // Update the cache with the newly fetched file sections.
-        projectFileSectionsCache.put(projectId, fileSections);
+    private void removeSections(String projectId, Collection<String> sectionIds) {
+        afterCommit(() -> {
+            projectIndexCache.update(projectId, index -> sectionIds.forEach(index::remove));
+            fileMapCache.update(projectId, map -> sectionIds.forEach(map::remove));
+            if (lexicalIndexCache != null) {
+                lexicalIndexCache.update(projectId, index -> sectionIds.forEach(index::remove));
+            }
+        });
+    }
 
-        return fileSections;
+    /**
+     * Re-adds sections with new weights to a resident index. Weights do not change the fingerprint,
+     * so the index file is dropped and rewritten on the next load.
+     */
+    private void updateWeights(String projectId, Iterable<FileSection> sections) {
+        afterCommit(() -> {
+            projectIndexCache.update(projectId, index ->
+                    sections.forEach(section -> index.add(section.getId(), section.getEmbedding(), section.getWeight())));
+            if (indexFileStore != null) {
+                indexFileStore.delete(projectId);
+            }
+        });
     }
 
     private void associateFileChunkWithSections(FileChunk fileChunk, Set<FileSection> sections) {
@@ -258,15 +640,26 @@ public class RelationalDbService implements DbService{
                     sections.forEach(section -> section.setFile(file));
                     file.setSections(sections);
                     fileRepository.save(file);
+                    // Keep an already loaded index in sync instead of rebuilding it on the next query
+                    afterCommit(() -> {
+                        projectIndexCache.update(project.getId(), index ->
+                                sections.forEach(section -> index.add(section.getId(), section.getEmbedding(), section.getWeight())));
+                        fileMapCache.update(project.getId(), map ->
+                                sections.forEach(section -> map.add(section.getId(), file.getPath())));
+                        if (lexicalIndexCache != null) {
+                            lexicalIndexCache.update(project.getId(), index ->
+                                    sections.forEach(section -> index.add(section.getId(), section.getContent())));
+                        }
+                    });
                     return file;
                 });
     }
 
     private void clearRelatedFileSections(FileChunk fileChunk) {
-        Optional.ofNullable(projectFileSectionsCache.get(fileChunk.projectId()))
-                .ifPresent(Set::clear);
-
         fileRepository.findByProjectIdAndPath(fileChunk.projectId(), fileChunk.filePath())
-                .ifPresent(file -> fileRepository.deleteById(file.getId()));
+                .ifPresent(file -> {
+                    removeSections(fileChunk.projectId(), file.getSections().stream().map(FileSection::getId).toList());
+                    fileRepository.deleteById(file.getId());
+                });
     }
 }
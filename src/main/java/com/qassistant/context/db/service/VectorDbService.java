@@ -1,20 +1,30 @@
 package com.qassistant.context.db.service;
 
+import com.qassistant.context.configs.GraphConfig;
+import com.qassistant.context.configs.VectorStoreConfig;
 import com.qassistant.context.db.dbEntity.File;
+import com.qassistant.context.db.dbEntity.FileSection;
 import com.qassistant.context.db.dbEntity.Project;
 import com.qassistant.context.entities.ChunkResult;
 import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.DeletionJob;
 import com.qassistant.context.entities.FileChunk;
+import com.qassistant.context.entities.RecallReport;
 import com.qassistant.context.services.EmbeddingGptService;
+import com.qassistant.context.utils.MathUtils;
 import com.qassistant.context.utils.TextUtils;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
@@ -24,11 +34,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingResponse;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
@@ -37,18 +46,43 @@ import java.util.stream.Collectors;
 
 @Service
 @Profile(value={"prod"})
+@DependsOn("graphSchemaInitializer")
 @ConditionalOnProperty(prefix="spring.neo4j", name={"uri"})
 @ConditionalOnBean(Driver.class)
 public class VectorDbService implements DbService {
     private static final Logger logger = LoggerFactory.getLogger(VectorDbService.class);
-    private final VectorStore vectorStore;
     private final Driver neo4jDriver;
     private final EmbeddingGptService embeddingGptService;
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(24);
+    private final int ingestBatchSize;
+    private final int deleteBatchSize;
+    private final Map<String, DeletionJob> deletionJobs = new ConcurrentHashMap<>();
+    private final ExecutorService deletionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "graph-delete");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String documentLabel;
+    private final String embeddingProperty;
+    private final String vectorIndexName;
+    private final int overFetchFactor;
+    // Orders the node, score rows of a lookup by weighted distance.
+    private static final String RANKED_CONTEXT = "WITH node, score, coalesce(toFloat(node.`metadata.weight`), 0.0) AS weight " +
+            "WITH node, weight, 1.0 - score - weight AS distance " +
+            "ORDER BY distance ASC LIMIT $limit ";
 
-    public VectorDbService(VectorStore vectorStore, Driver neo4jDriver, EmbeddingGptService embeddingGptService) {
-        this.vectorStore = vectorStore;
+    /**
+     * @param vectorStore not used directly, injected so that the store has created the vector index before the first query
+     */
+    public VectorDbService(VectorStore vectorStore, Driver neo4jDriver, EmbeddingGptService embeddingGptService, GraphConfig graphConfig, VectorStoreConfig vectorStoreConfig) {
         this.neo4jDriver = neo4jDriver;
         this.embeddingGptService = embeddingGptService;
+        this.ingestBatchSize = Math.max(1, graphConfig.getIngestBatchSize());
+        this.deleteBatchSize = Math.max(1, graphConfig.getDeleteBatchSize());
+        this.documentLabel = Optional.ofNullable(vectorStoreConfig.getLabel()).orElse("Document");
+        this.embeddingProperty = Optional.ofNullable(vectorStoreConfig.getEmbeddingProperty()).orElse("embedding");
+        this.vectorIndexName = Optional.ofNullable(vectorStoreConfig.getIndexName()).orElse("spring-ai-document-index");
+        this.overFetchFactor = Math.max(1, graphConfig.getOverFetchFactor());
     }
 
     @Override
@@ -72,23 +106,18 @@ public class VectorDbService implements DbService {
     }
 
     @Override
-    public void deleteProject(String projectId) {
-        try (Session session = neo4jDriver.session()) {
-            // Retrieve the project or throw if it doesn't exist
-            Project project = findProjectById(projectId).orElseGet(() -> findProjectByName(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found: " + projectId)));
-
-            // Delete the project and all related entities from Neo4j
-            String cypherQuery = "MATCH (p:Project {id: $projectId}) " +
-                    "OPTIONAL MATCH (p)-[r*0..]-(d) " +
-                    "DETACH DELETE p, d";
-            session.run(cypherQuery, Map.of("projectId", project.getId()));
-
-            logger.info("Successfully deleted project with ID: {}", projectId);
-        } catch (Exception e) {
-            logger.error("Failed to delete project with ID: {}", projectId, e);
-            throw new RuntimeException("Failed to delete project: " + projectId, e);
-        }
+    public DeletionJob deleteProject(String projectId) {
+        // Retrieve the project or throw if it doesn't exist
+        Project project = findProjectById(projectId).orElseGet(() -> findProjectByName(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectId)));
+        return submitDeletion("project " + project.getId(), job -> {
+            deleteFilesInTransactions(job, "MATCH (f:File {projectId: $projectId})", Map.of("projectId", project.getId()));
+            deleteLegacyDocuments(job, project.getId());
+            try (Session session = neo4jDriver.session()) {
+                job.addDeleted(session.run("MATCH (p:Project {id: $projectId}) DETACH DELETE p",
+                        Map.of("projectId", project.getId())).consume().counters().nodesDeleted());
+            }
+        });
     }
 
     @Override
@@ -150,47 +179,85 @@ public class VectorDbService implements DbService {
     }
 
     @Override
-    public void deleteAllFilesByProject(String projectId) {
-        try (Session session = neo4jDriver.session()) {
-            Project project = findProjectById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            String cypherQuery = "MATCH (f:File {projectId: $projectId}) " +
-                    "OPTIONAL MATCH (f)-[r*0..]->(d) " +
-                    "DETACH DELETE f, d";
-            ResultSummary resultSummary = session.run(cypherQuery, Map.of("projectId", project.getId())).consume();
+    public DeletionJob deleteAllFilesByProject(String projectId) {
+        Project project = findProjectById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+        return submitDeletion("files of project " + project.getId(), job -> {
+            deleteFilesInTransactions(job, "MATCH (f:File {projectId: $projectId})", Map.of("projectId", project.getId()));
+            deleteLegacyDocuments(job, project.getId());
+        });
+    }
 
-            if (resultSummary.counters().nodesDeleted() == 0) {
-                logger.warn("No files were deleted for project ID: {}", projectId);
-            } else {
-                logger.info("All files deleted for project ID: {}", projectId);
+    @Override
+    public DeletionJob deleteFileByProjectAndName(String projectId, String fileName) {
+        Project project = findProjectById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+        Map<String, Object> parameters = Map.of("projectId", project.getId(), "fileName", fileName);
+        try (Session session = neo4jDriver.session()) {
+            int files = session.run("MATCH (f:File {projectId: $projectId, fileName: $fileName}) RETURN count(f) AS files", parameters)
+                    .single().get("files").asInt();
+            if (files == 0) {
+                throw new RuntimeException("File not found with name: " + fileName + " for project ID: " + projectId);
             }
-        } catch (Exception e) {
-            logger.error("Failed to delete all files for project ID: {}", projectId, e);
-            throw new RuntimeException("Error deleting all files for project ID: " + projectId, e);
         }
+        return submitDeletion("file " + fileName + " of project " + project.getId(), job ->
+                deleteFilesInTransactions(job, "MATCH (f:File {projectId: $projectId, fileName: $fileName})", parameters));
     }
 
     @Override
-    public void deleteFileByProjectAndName(String projectId, String fileName) {
-        try (Session session = neo4jDriver.session()) {
-            Project project = findProjectById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            String cypherQuery = "MATCH (f:File {projectId: $projectId, fileName: $fileName}) " +
-                    "OPTIONAL MATCH (f)-[r*0..]->(d) " +
-                    "DETACH DELETE f, d";
-            ResultSummary resultSummary = session.run(cypherQuery, Map.of("projectId", project.getId(), "fileName", fileName)).consume();
+    public Optional<DeletionJob> findDeletionJob(String jobId) {
+        return Optional.ofNullable(deletionJobs.get(jobId));
+    }
 
-            if (resultSummary.counters().nodesDeleted() == 0) {
-                logger.warn("No such file found with name: {} for project ID: {}", fileName, projectId);
-                throw new RuntimeException("File not found or no files deleted with name: " + fileName + " for project ID: " + projectId);
-            } else {
-                logger.info("File named '{}' deleted for project ID: {}", fileName, projectId);
+    /**
+     * Starts a deletion on the background executor and returns its job right away. Deletions run
+     * one at a time, so a large one never competes with another for the database.
+     */
+    private DeletionJob submitDeletion(String target, Consumer<DeletionJob> deletion) {
+        Instant expired = Instant.now().minus(FINISHED_JOB_RETENTION);
+        deletionJobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(expired));
+        DeletionJob job = new DeletionJob(target);
+        deletionJobs.put(job.getId(), job);
+        deletionExecutor.execute(() -> {
+            try {
+                deletion.accept(job);
+                job.complete();
+                logger.info("Deleted {}: {} nodes", target, job.getDeletedNodes());
+            } catch (Exception e) {
+                job.fail(e);
+                logger.error("Failed to delete {} after {} nodes", target, job.getDeletedNodes(), e);
             }
-        } catch (Exception e) {
-            logger.error("Failed to delete file '{}' for project ID: {}", fileName, projectId, e);
-            throw new RuntimeException("Error deleting file with name: " + fileName + " for project ID: " + projectId, e);
+        });
+        return job;
+    }
+
+    /**
+     * Deletes the files matched by {@code fileMatch}, which binds {@code f}, with their documents.
+     * Only File-HAS-Document is followed, and every statement commits every {@code deleteBatchSize}
+     * rows, so neither the transaction size nor the reach of a deletion depends on the project.
+     */
+    private void deleteFilesInTransactions(DeletionJob job, String fileMatch, Map<String, Object> parameters) {
+        try (Session session = neo4jDriver.session()) {
+            // CALL ... IN TRANSACTIONS only runs in auto-commit transactions; rows stream back as batches commit.
+            session.run(fileMatch + "-[:HAS]->(d:`" + documentLabel + "`) " +
+                    "CALL { WITH d DETACH DELETE d } IN TRANSACTIONS OF " + deleteBatchSize + " ROWS " +
+                    "RETURN 1", parameters).forEachRemaining(record -> job.addDeleted(1));
+            session.run(fileMatch + " " +
+                    "CALL { WITH f DETACH DELETE f } IN TRANSACTIONS OF " + deleteBatchSize + " ROWS " +
+                    "RETURN 1", parameters).forEachRemaining(record -> job.addDeleted(1));
+        }
+    }
+
+    /**
+     * Deletes documents of a project that were never linked to their file. Ingests before the
+     * UNWIND writer left them unlinked; they are only found through their metadata.
+     */
+    private void deleteLegacyDocuments(DeletionJob job, String projectId) {
+        try (Session session = neo4jDriver.session()) {
+            session.run("MATCH (d:`" + documentLabel + "`) " +
+                    "WHERE d.`metadata.projectId` = $projectId AND NOT ()-[:HAS]->(d) " +
+                    "CALL { WITH d DETACH DELETE d } IN TRANSACTIONS OF " + deleteBatchSize + " ROWS " +
+                    "RETURN 1", Map.of("projectId", projectId)).forEachRemaining(record -> job.addDeleted(1));
         }
     }
 
@@ -223,19 +290,20 @@ public class VectorDbService implements DbService {
                             new RuntimeException("Project not found with ID: " + projectId)));
 
             // Update the weight metadata for the specified file
-            String cypherQuery = "MATCH (f:File {projectId: $projectId, fileName: $fileName}) " +
-                    "OPTIONAL MATCH (f)-[r*1..]->(d) " +
-                    "WHERE d IS NOT NULL " +
+            String cypherQuery = "MATCH (f:File {projectId: $projectId, fileName: $fileName})-[:HAS]->(d) " +
                     "SET d.`metadata.weight` = $weightValue " +
-                    "RETURN d.metadata.weight AS newWeight";
+                    "RETURN count(d) AS updated";
             Record record = session.run(cypherQuery, Map.of(
                     "projectId", project.getId(),
                     "fileName", fileName,
                     "weightValue", weight
             )).single();
 
-            // Return the updated weight to confirm the operation was successful
-            return record.get("newWeight").asDouble();
+            // Return the weight to confirm the operation was successful
+            if (record.get("updated").asInt() == 0) {
+                logger.warn("No documents found for file '{}' in project ID: {}", fileName, projectId);
+            }
+            return weight;
         } catch (Exception e) {
             logger.error("Failed to set weight for file '{}' in project '{}': {}", fileName, projectId, e);
             throw new RuntimeException("Error setting weight for file '" + fileName + "' in project ID: " + projectId, e);
@@ -251,8 +319,8 @@ public class VectorDbService implements DbService {
                             new RuntimeException("Project not found with ID: " + projectId)));
 
             // Construct and execute a Cypher query to update the weight metadata for documents
-            String cypherQuery = "MATCH (d:Document) WHERE d.id IN $ids AND d.projectId = $projectId " +
-                    "SET d.metadata.weight = $weightValue RETURN d.metadata.weight AS newWeight";
+            String cypherQuery = "MATCH (d:`" + documentLabel + "`) WHERE d.id IN $ids AND d.`metadata.projectId` = $projectId " +
+                    "SET d.`metadata.weight` = $weightValue RETURN d.`metadata.weight` AS newWeight";
             List<Record> records = session.run(cypherQuery, Map.of(
                     "projectId", project.getId(),
                     "ids", ids,
@@ -281,6 +349,8 @@ public class VectorDbService implements DbService {
         Map<File, List<Document>> fileDocumentMap = indexPromptBasedDocuments(project, promptsAndAnswers, filePath);
         fileDocumentMap = filterAndUpdateDocumentMap(project.getId(), fileDocumentMap);
 
+        fileDocumentMap = attachEmbeddings(project.getId(), fileDocumentMap);
+
         if (fileDocumentMap.isEmpty()) {
             logger.info("No documents were indexed for project ID: {}", projectId);
             return Collections.emptyMap();
@@ -299,7 +369,8 @@ public class VectorDbService implements DbService {
 
         String projectId = chunkResult.projectId();
         Map<File, List<Document>> initialFileDocumentMap = this.indexDocumentsFromChunks(projectId, chunkResult.fileChunks());
-        Map<File, List<Document>> filteredFileDocumentMap = this.filterAndUpdateDocumentMap(projectId, initialFileDocumentMap);
+        Map<File, List<Document>> filteredFileDocumentMap = this.attachEmbeddings(projectId,
+                this.filterAndUpdateDocumentMap(projectId, initialFileDocumentMap));
 
         // If there are still entries after filtering, process them further.
         if (!filteredFileDocumentMap.isEmpty()) {
@@ -312,43 +383,191 @@ public class VectorDbService implements DbService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Ranks documents inside Neo4j in one round trip. Without a filter the vector index is asked
+     * for {@code overFetchFactor} times more neighbours than needed, since the project filter and
+     * the weights only apply after the index lookup. With a filter the documents of the matching
+     * files are scored exactly instead, as a narrow filter would leave few or none of the global
+     * neighbours; the fewer files match, the cheaper this is. Either way the weight-adjusted
+     * distance {@code 1 - score - weight} is ordered and limited by the query itself.
+     */
     @Override
-    public List<Context> findContext(String projectId, String prompt, int contextEntries) {
+    public List<Context> findContext(String projectId, String prompt, int contextEntries, ContextFilter filter) {
         Project project = this.findProjectById(projectId).orElseGet(()
                 -> this.findProjectByName(projectId).orElseThrow(()
                 -> new RuntimeException("There is no such project")));
-        FilterExpressionBuilder filterExpressionBuilder = new FilterExpressionBuilder();
-        List<Document> list = vectorStore.similaritySearch(SearchRequest.defaults()
-                .withQuery(prompt)
-                .withTopK(contextEntries)
-                .withFilterExpression(filterExpressionBuilder
-                        .or(filterExpressionBuilder.eq("projectName", project.getName()),
-                                filterExpressionBuilder.eq("projectId", project.getId())).build()));
-
-        List<Context> contexts;
-
-        contexts = list.stream()
-                .map(document -> {
-                    String answer = Optional.ofNullable(document.getMetadata().get("answer"))
-                            .map(Object::toString)
-                            .orElseGet(document::getContent);
-                    double distance = Optional.ofNullable(document.getMetadata().get("distance"))
-                            .map(Object::toString)
-                            .map(Double::parseDouble)
-                            .orElse(0.0);
-                    double weight = Optional.ofNullable(document.getMetadata().get("weight"))
-                            .map(Object::toString)
-                            .map(Double::parseDouble)
-                            .orElse(0.0);
-
-                    double adjustedDistance = distance - weight;
-
-                    return new Context(adjustedDistance, answer, document.getId(), weight);
-                })
-                .sorted(Comparator.comparing(Context::getDistance))
-                .collect(Collectors.toList());
+        Map<String, Object> parameters = contextParameters(project, contextEntries);
+        if (!filter.isEmpty() && !putMatchingPaths(project.getId(), filter, parameters)) {
+            return List.of();
+        }
+        parameters.put("embedding", embeddingGptService.getQueryEmbedding(prompt));
+        String cypherQuery = scoredNodes("$embedding", !filter.isEmpty()) +
+                RANKED_CONTEXT +
+                "RETURN node.id AS id, coalesce(node.`metadata.answer`, node.text) AS content, distance, weight";
+        try (Session session = neo4jDriver.session()) {
+            return session.executeRead(tx -> tx.run(cypherQuery, parameters).list(record -> new Context(
+                    record.get("distance").asDouble(),
+                    record.get("content").asString(null),
+                    record.get("id").asString(),
+                    record.get("weight").asDouble())));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to find context for project ID: " + project.getId(), e);
+        }
+    }
+
+    /**
+     * Ranks the documents of many prompts in one round trip: one project lookup, one batch of
+     * query embeddings and one statement that runs the ranked lookup of {@link #findContext}
+     * for every embedding.
+     */
+    @Override
+    public List<List<Context>> findContextBatch(String projectId, List<String> prompts, int contextEntries, ContextFilter filter) {
+        Project project = this.findProjectById(projectId).orElseGet(()
+                -> this.findProjectByName(projectId).orElseThrow(()
+                -> new RuntimeException("There is no such project")));
+        if (prompts.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Object> parameters = contextParameters(project, contextEntries);
+        List<List<Context>> contexts = new ArrayList<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            contexts.add(new ArrayList<>());
+        }
+        if (!filter.isEmpty() && !putMatchingPaths(project.getId(), filter, parameters)) {
+            return contexts;
+        }
+        parameters.put("embeddings", embeddingGptService.getQueryEmbeddings(prompts));
+        String cypherQuery = "UNWIND range(0, size($embeddings) - 1) AS query " +
+                "CALL { " +
+                "WITH query " +
+                scoredNodes("$embeddings[query]", !filter.isEmpty()) +
+                RANKED_CONTEXT +
+                "RETURN node.id AS id, coalesce(node.`metadata.answer`, node.text) AS content, distance, weight " +
+                "} " +
+                "RETURN query, id, content, distance, weight";
+        try (Session session = neo4jDriver.session()) {
+            session.executeRead(tx -> tx.run(cypherQuery, parameters).list()).forEach(record ->
+                    contexts.get(record.get("query").asInt()).add(new Context(
+                            record.get("distance").asDouble(),
+                            record.get("content").asString(null),
+                            record.get("id").asString(),
+                            record.get("weight").asDouble())));
+            return contexts;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to find context for project ID: " + project.getId(), e);
+        }
+    }
+
+    private Map<String, Object> contextParameters(Project project, int contextEntries) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("indexName", vectorIndexName);
+        parameters.put("candidates", Math.max(contextEntries, contextEntries * overFetchFactor));
+        parameters.put("projectId", project.getId());
+        parameters.put("projectName", project.getName());
+        parameters.put("limit", contextEntries);
+        return parameters;
+    }
+
+    /**
+     * Globs cannot be expressed in Cypher, so a filter is resolved to the matching paths first.
+     *
+     * @return false if no file matches, otherwise the paths are put into {@code parameters}
+     */
+    private boolean putMatchingPaths(String projectId, ContextFilter filter, Map<String, Object> parameters) {
+        List<String> paths = findFilePaths(projectId).stream().filter(filter::matches).toList();
+        if (paths.isEmpty()) {
+            return false;
+        }
+        parameters.put("paths", paths);
+        return true;
+    }
+
+    /**
+     * @param embedding the Cypher expression of the query embedding
+     * @param filtered whether to score the documents of the files in {@code $paths} exactly instead of asking the index
+     * @return the clauses producing the {@code node, score} rows of the project
+     */
+    private String scoredNodes(String embedding, boolean filtered) {
+        if (filtered) {
+            return "MATCH (f:File {projectId: $projectId})-[:HAS]->(node:`" + documentLabel + "`) " +
+                    "WHERE f.path IN $paths AND node.`" + embeddingProperty + "` IS NOT NULL " +
+                    "WITH node, vector.similarity.cosine(node.`" + embeddingProperty + "`, " + embedding + ") AS score ";
+        }
+        return "CALL db.index.vector.queryNodes($indexName, $candidates, " + embedding + ") YIELD node, score " +
+                "WHERE (node.`metadata.projectId` = $projectId OR node.`metadata.projectName` = $projectName) ";
+    }
 
-        return contexts;
+    private List<String> findFilePaths(String projectId) {
+        try (Session session = neo4jDriver.session()) {
+            return session.run("MATCH (f:File {projectId: $projectId}) RETURN f.path AS path", Map.of("projectId", projectId))
+                    .list(record -> record.get("path").asString(null));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to list files of project ID: " + projectId, e);
+        }
+    }
+
+    /**
+     * Compares the vector index lookup {@link #findContext} relies on with an exact cosine scan
+     * over the documents of the project. Queries are the embeddings of stored documents, sampled
+     * with a fixed seed so runs with different index settings are comparable; both searches rank
+     * by similarity alone, as weights do not depend on the index.
+     */
+    @Override
+    public RecallReport evaluateRecall(String projectId, int k, int samples) {
+        Project project = findProjectById(projectId).orElseGet(() ->
+                findProjectByName(projectId).orElseThrow(() ->
+                        new RuntimeException("Project not found with ID: " + projectId)));
+        String projectCondition = "(d.`metadata.projectId` = $projectId OR d.`metadata.projectName` = $projectName)";
+        String exactQuery = "MATCH (d:`" + documentLabel + "`) " +
+                "WHERE " + projectCondition + " AND d.`" + embeddingProperty + "` IS NOT NULL " +
+                "WITH d, vector.similarity.cosine(d.`" + embeddingProperty + "`, $embedding) AS score " +
+                "ORDER BY score DESC LIMIT $k " +
+                "RETURN d.id AS id";
+        String indexQuery = "CALL db.index.vector.queryNodes($indexName, $candidates, $embedding) YIELD node AS d, score " +
+                "WHERE " + projectCondition + " " +
+                "WITH d, score ORDER BY score DESC LIMIT $k " +
+                "RETURN d.id AS id";
+        try (Session session = neo4jDriver.session()) {
+            Map<String, Object> projectParameters = Map.of("projectId", project.getId(), "projectName", project.getName());
+            List<String> ids = session.executeRead(tx -> tx.run("MATCH (d:`" + documentLabel + "`) " +
+                    "WHERE " + projectCondition + " AND d.`" + embeddingProperty + "` IS NOT NULL " +
+                    "RETURN d.id AS id ORDER BY id", projectParameters).list(record -> record.get("id").asString()));
+            List<String> sampledIds = new ArrayList<>(ids);
+            Collections.shuffle(sampledIds, new Random(42L));
+            sampledIds = sampledIds.subList(0, Math.min(samples, sampledIds.size()));
+            Map<String, Object> sampleParameters = Map.of("ids", sampledIds);
+            List<List<Double>> queries = session.executeRead(tx -> tx.run("MATCH (d:`" + documentLabel + "`) WHERE d.id IN $ids " +
+                    "RETURN d.`" + embeddingProperty + "` AS embedding", sampleParameters)
+                    .list(record -> record.get("embedding").asList(value -> value.asDouble())));
+
+            double recallSum = 0.0;
+            long exactNanos = 0L;
+            long engineNanos = 0L;
+            for (List<Double> query : queries) {
+                Map<String, Object> parameters = new HashMap<>(projectParameters);
+                parameters.put("embedding", query);
+                parameters.put("k", k);
+                parameters.put("indexName", vectorIndexName);
+                parameters.put("candidates", Math.max(k, k * overFetchFactor));
+                long start = System.nanoTime();
+                Set<String> expected = new HashSet<>(session.executeRead(tx -> tx.run(exactQuery, parameters)
+                        .list(record -> record.get("id").asString())));
+                long middle = System.nanoTime();
+                List<String> found = session.executeRead(tx -> tx.run(indexQuery, parameters)
+                        .list(record -> record.get("id").asString()));
+                long end = System.nanoTime();
+                exactNanos += middle - start;
+                engineNanos += end - middle;
+                recallSum += expected.isEmpty() ? 1.0 : (double) found.stream().filter(expected::contains).count() / expected.size();
+            }
+            int count = queries.size();
+            return new RecallReport(project.getId(), "NEO4J", k, count,
+                    count == 0 ? 1.0 : recallSum / count,
+                    count == 0 ? 0.0 : exactNanos / 1_000_000.0 / count,
+                    count == 0 ? 0.0 : engineNanos / 1_000_000.0 / count);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate recall for project ID: " + project.getId(), e);
+        }
     }
 
     private Map<File, List<Document>> indexDocumentsFromChunks(String projectId, List<FileChunk> fileChunks) {
@@ -372,68 +591,125 @@ public class VectorDbService implements DbService {
     }
 
     /**
-     * Processes the given file list map to asynchronously add documents and links them in the database.
+     * Embeds the documents of new and changed files through {@link EmbeddingGptService#mapChunksToSections},
+     * the pipeline the relational backend uses, and attaches the vectors to the documents.
+     * Files of which any document has no embedding are left out, so they are picked up again by
+     * the next re-index instead of being stored without documents or failing the ingest.
+     *
+     * @return the files whose documents all carry an embedding
+     */
+    private Map<File, List<Document>> attachEmbeddings(String projectId, Map<File, List<Document>> fileDocumentMap) {
+        Map<FileChunk, File> filesByChunk = new HashMap<>();
+        fileDocumentMap.forEach((file, documents) -> filesByChunk.put(new FileChunk(projectId, file.getChecksum(), file.getPath(),
+                documents.stream().map(Document::getContent).toList()), file));
+        Map<FileChunk, Set<FileSection>> sectionsByChunk = embeddingGptService.mapChunksToSections(new ArrayList<>(filesByChunk.keySet()));
+
+        Map<File, List<Document>> embedded = new HashMap<>();
+        filesByChunk.forEach((chunk, file) -> {
+            Set<FileSection> sections = sectionsByChunk.get(chunk);
+            if (sections == null) {
+                logger.warn("Skipping file {} of project ID {}, its sections could not be embedded", file.getPath(), projectId);
+                return;
+            }
+            Map<String, float[]> embeddingsByContent = new HashMap<>();
+            sections.stream().filter(section -> section.getEmbedding() != null)
+                    .forEach(section -> embeddingsByContent.put(section.getContent(), section.getEmbedding()));
+            List<Document> documents = fileDocumentMap.get(file);
+            long missing = documents.stream().filter(document -> !embeddingsByContent.containsKey(document.getContent())).count();
+            if (missing > 0) {
+                // A file is stored with all of its documents or not at all, like incomplete chunks of the relational backend.
+                logger.warn("Skipping file {} of project ID {}, {} of its {} documents have no embedding",
+                        file.getPath(), projectId, missing, documents.size());
+                return;
+            }
+            documents.forEach(document -> document.setEmbedding(MathUtils.toDoubleList(embeddingsByContent.get(document.getContent()))));
+            embedded.put(file, documents);
+        });
+        return embedded;
+    }
+
+    /**
+     * Writes files, their documents with embeddings and the Project-HAS-File-HAS-Document links.
+     * <p>
+     * File ids are generated here so documents can reference their file without a round trip.
+     * Files are grouped into batches of about {@code ingestBatchSize} documents, never splitting a
+     * file, and each batch writes its files and their documents with {@code UNWIND} statements in
+     * one managed write transaction, which the driver retries on transient errors such as
+     * deadlocks or leader switches. A file is therefore never stored without its documents: if a
+     * batch fails, none of its files is stored and the next re-index picks them up again.
+     * Documents are stored the way {@code Neo4jVectorStore} stores them, so similarity search and
+     * filter expressions find them, with the embedding already attached to each document instead
+     * of being computed by the store.
      *
      * @param projectId the ID of the project under which the files are categorized.
      * @param fileListMap a map where each file is associated with a list of documents to process.
      */
     private void processFilesAndDocuments(String projectId, Map<File, List<Document>> fileListMap) {
-        for (Map.Entry<File, List<Document>> entry : fileListMap.entrySet()) {
-            File file = createFileNode(entry.getKey());
-            List<Document> documents = entry.getValue();
-            int batchSize = Math.max(1, documents.size() / Runtime.getRuntime().availableProcessors());
-            List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-            // Process documents in batches asynchronously
-            for (int i = 0; i < documents.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, documents.size());
-                List<Document> batchDocuments = documents.subList(i, end);
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> this.vectorStore.add(batchDocuments));
-                futures.add(future);
+        String fileQuery = "MATCH (p:Project {id: $projectId}) " +
+                "UNWIND $files AS row " +
+                "CREATE (f:File {id: row.id, projectId: $projectId, fileName: row.fileName, checksum: row.checksum, path: row.path}) " +
+                "CREATE (p)-[:HAS]->(f)";
+        String documentQuery = "UNWIND $documents AS row " +
+                "MATCH (f:File {id: row.fileId}) " +
+                "MERGE (d:`" + documentLabel + "` {id: row.id}) " +
+                "SET d += row.properties " +
+                "MERGE (f)-[:HAS]->(d) " +
+                "WITH d, row " +
+                "CALL db.create.setNodeVectorProperty(d, $embeddingProperty, row.embedding)";
+
+        List<Map<String, Object>> fileRows = new ArrayList<>();
+        List<Map<String, Object>> documentRows = new ArrayList<>();
+        int files = 0;
+        int documents = 0;
+        try (Session session = neo4jDriver.session()) {
+            for (Map.Entry<File, List<Document>> entry : fileListMap.entrySet()) {
+                File file = entry.getKey();
+                file.setId(UUID.randomUUID().toString());
+                fileRows.add(Map.of(
+                        "id", file.getId(),
+                        "fileName", file.getName(),
+                        "checksum", file.getChecksum(),
+                        "path", file.getPath()));
+                entry.getValue().forEach(document -> documentRows.add(documentRow(document, file.getId())));
+                if (documentRows.size() >= ingestBatchSize) {
+                    writeFiles(session, projectId, fileQuery, documentQuery, fileRows, documentRows);
+                    files += fileRows.size();
+                    documents += documentRows.size();
+                    fileRows.clear();
+                    documentRows.clear();
+                }
             }
-
-            CompletableFuture<Void> allTasks = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-            waitForCompletion(allTasks);
-
-            if (!documents.isEmpty()) {
-                linkDocumentsToProject(projectId, file, documents);
+            if (!fileRows.isEmpty()) {
+                writeFiles(session, projectId, fileQuery, documentQuery, fileRows, documentRows);
+                files += fileRows.size();
+                documents += documentRows.size();
             }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to ingest files for project ID: " + projectId + " after " + files + " files", e);
         }
+        logger.info("Ingested {} files with {} documents for project ID: {}", files, documents, projectId);
     }
 
-    /**
-     * A helper method to wait for all futures to complete.
-     * @param allTasks CompletableFuture representing all tasks.
-     */
-    private void waitForCompletion(CompletableFuture<Void> allTasks) {
-        try {
-            allTasks.get();
-        } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Failed to complete async document processing tasks", e);
-        }
+    private void writeFiles(Session session, String projectId, String fileQuery, String documentQuery,
+                            List<Map<String, Object>> fileRows, List<Map<String, Object>> documentRows) {
+        Map<String, Object> fileParameters = Map.of("projectId", projectId, "files", List.copyOf(fileRows));
+        Map<String, Object> documentParameters = Map.of("embeddingProperty", embeddingProperty, "documents", List.copyOf(documentRows));
+        session.executeWrite(tx -> {
+            tx.run(fileQuery, fileParameters).consume();
+            tx.run(documentQuery, documentParameters).consume();
+            return null;
+        });
     }
 
-    /**
-     * Links documents to a project and file in the database.
-     * @param projectId the project ID.
-     * @param file the file under which documents are categorized.
-     * @param documents list of documents to link.
-     */
-    private void linkDocumentsToProject(String projectId, File file, List<Document> documents) {
-        List<String> documentIds = documents.stream().map(Document::getId).toList();
-        if (!documentIds.isEmpty()) {
-            try (Session session = this.neo4jDriver.session()) {
-                String cypher = "MATCH (p:Project {id: $projectId}), (f:File {id: $fileId}) " +
-                        "CREATE (p)-[:HAS]->(f) " +
-                        "WITH p, f " +
-                        "MATCH (n:Document {id: $ids}) " +
-                        "CREATE (f)-[:HAS]->(n)";
-                session.run(cypher, Map.of("projectId", projectId, "fileId", file.getId(), "ids", documentIds));
-            } catch (Exception e) {
-                throw new RuntimeException("Error linking documents to file and project in the database", e);
-            }
-        }
+    private static Map<String, Object> documentRow(Document document, String fileId) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("text", document.getContent());
+        document.getMetadata().forEach((key, value) -> properties.put("metadata." + key, value));
+        return Map.of(
+                "id", document.getId(),
+                "fileId", fileId,
+                "properties", properties,
+                "embedding", MathUtils.toFloatArray(document.getEmbedding()));
     }
 
     private Map<File, List<Document>> indexPromptBasedDocuments(Project project, Map<String, String> prompts, String filePath) {
@@ -459,78 +735,73 @@ public class VectorDbService implements DbService {
         return Map.of(file, documents);
     }
 
+    /**
+     * Drops files whose content is already indexed and removes the stale version of changed files.
+     * <p>
+     * All (path, checksum) pairs are compared with the stored files in one query, and the files
+     * to replace are then deleted in batches, so re-indexing an unchanged repository costs two
+     * round trips whatever its size.
+     *
+     * @return the files that are new or changed, with their documents
+     */
     private Map<File, List<Document>> filterAndUpdateDocumentMap(String projectId, Map<File, List<Document>> fileDocumentMap) {
-        fileDocumentMap.entrySet().removeIf(entry -> {
-            File file = entry.getKey();
-            Optional<File> existingFile = findFile(projectId, file.getPath());
-            if (existingFile.isPresent()) {
-                if (!file.getChecksum().equals(existingFile.get().getChecksum())) {
-                    deleteFileByChecksum(existingFile.get().getChecksum());
-                    return false;
-                }
-                return true;
-            }
-            return false;
-        });
-        return new HashMap<>(fileDocumentMap);
-    }
-
-    private Optional<File> findFile(String projectId, String filePath) {
-        // Ensure the project exists before proceeding
-        Project project = findProjectById(projectId).orElseGet(() ->
-                findProjectByName(projectId).orElseThrow(() ->
-                        new RuntimeException("Project not found with ID: " + projectId)));
-
+        if (fileDocumentMap.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Map<String, Object>> rows = fileDocumentMap.keySet().stream()
+                .map(file -> Map.<String, Object>of("path", file.getPath(), "checksum", file.getChecksum()))
+                .toList();
+        Map<String, String> statusByPath = new HashMap<>();
         try (Session session = neo4jDriver.session()) {
-            // Query to find the file with the specified projectId and filePath
-            String query = "MATCH (f:File) WHERE f.projectId = $projectId AND f.path = $filePath RETURN f.path AS path, f.checksum AS checksum";
-            Record record = session.run(query, Map.of("projectId", projectId, "filePath", filePath)).single();
-
-            // Construct and return the File object from the results
-            return Optional.of(new File(project, record.get("path").asString(), record.get("checksum").asString()));
-        } catch (NoSuchRecordException e) {
-            // Return empty if no such file is found
-            return Optional.empty();
+            String cypherQuery = "UNWIND $rows AS row " +
+                    "OPTIONAL MATCH (f:File {projectId: $projectId, path: row.path}) " +
+                    "WITH row, collect(f.checksum) AS checksums " +
+                    "RETURN row.path AS path, CASE " +
+                    "WHEN size(checksums) = 0 THEN 'NEW' " +
+                    "WHEN all(checksum IN checksums WHERE checksum = row.checksum) THEN 'UNCHANGED' " +
+                    "ELSE 'CHANGED' END AS status";
+            session.executeRead(tx -> tx.run(cypherQuery, Map.of("projectId", projectId, "rows", rows)).list())
+                    .forEach(record -> statusByPath.put(record.get("path").asString(), record.get("status").asString()));
         } catch (Exception e) {
-            // Log error and rethrow if a different exception occurs
-            throw new RuntimeException("Failed to retrieve file from database for project ID: " + projectId + " and file path: " + filePath, e);
+            throw new RuntimeException("Failed to compare file checksums for project ID: " + projectId, e);
         }
-    }
 
-    private File createFileNode(File file) {
-        try (Session session = neo4jDriver.session()) {
-            String cypherQuery = "CREATE (f:File {id: randomUUID(), projectId: $projectId, fileName: $fileName, checksum: $checksum, path: $path}) RETURN f.id AS generatedId";
-            Record record = session.run(cypherQuery, Map.of(
-                    "projectId", file.getProject().getId(),
-                    "fileName", file.getName(),
-                    "checksum", file.getChecksum(),
-                    "path", file.getPath()
-            )).single();
-            file.setId(record.get("generatedId").asString());
-            return file;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create file node in Neo4j", e);
+        Map<File, List<Document>> changedFiles = new HashMap<>();
+        List<String> stalePaths = new ArrayList<>();
+        fileDocumentMap.forEach((file, documents) -> {
+            String status = statusByPath.getOrDefault(file.getPath(), "NEW");
+            if ("CHANGED".equals(status)) {
+                stalePaths.add(file.getPath());
+            }
+            if (!"UNCHANGED".equals(status)) {
+                changedFiles.put(file, documents);
+            }
+        });
+        if (!stalePaths.isEmpty()) {
+            deleteFilesByPaths(projectId, stalePaths);
         }
+        logger.info("Checksum diff for project ID {}: {} unchanged, {} changed, {} new files", projectId,
+                fileDocumentMap.size() - changedFiles.size(), stalePaths.size(), changedFiles.size() - stalePaths.size());
+        return changedFiles;
     }
 
-    private int deleteFileByChecksum(String checksum) {
+    /**
+     * Deletes files of a project with their documents, {@code ingestBatchSize} paths per transaction.
+     */
+    private void deleteFilesByPaths(String projectId, List<String> paths) {
+        String cypherQuery = "UNWIND $paths AS path " +
+                "MATCH (f:File {projectId: $projectId, path: path}) " +
+                "OPTIONAL MATCH (f)-[:HAS]->(d) " +
+                "DETACH DELETE d " +
+                "WITH DISTINCT f " +
+                "DETACH DELETE f";
         try (Session session = neo4jDriver.session()) {
-            // Run the delete query
-            String query = "MATCH (f:File {checksum: $checksum}) " +
-                    "OPTIONAL MATCH (f)-[r*0..]->(d) " +
-                    "DETACH DELETE f, d RETURN count(f) AS filesDeleted, count(d) AS relatedDeleted";
-            Record result = session.run(query, Map.of("checksum", checksum)).single();
-
-            // Calculate the total number of entities deleted
-            int filesDeleted = result.get("filesDeleted").asInt();
-            int relatedDeleted = result.get("relatedDeleted").asInt();
-            return filesDeleted + relatedDeleted;
-        } catch (NoSuchRecordException e) {
-            // No files or related entities found to delete
-            return 0;
+            for (int from = 0; from < paths.size(); from += ingestBatchSize) {
+                List<String> batch = paths.subList(from, Math.min(from + ingestBatchSize, paths.size()));
+                session.executeWrite(tx -> tx.run(cypherQuery, Map.of("projectId", projectId, "paths", batch)).consume());
+            }
         } catch (Exception e) {
-            // Log and rethrow the error with a more informative message
-            throw new RuntimeException("Failed to delete file with checksum: " + checksum, e);
+            throw new RuntimeException("Failed to delete " + paths.size() + " stale files for project ID: " + projectId, e);
         }
     }
 }
@@ -0,0 +1,125 @@
+package com.qassistant.context.entities;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Restricts context retrieval to files whose path matches one of a set of glob patterns.
+ * <p>
+ * The expression is a comma-separated list of patterns, for example {@code src/main/**,*.yaml}.
+ * {@code **} matches any number of directories, {@code *} and {@code ?} stay within one path
+ * segment. A pattern without a slash is matched against the file name only, so {@code *.yaml}
+ * finds YAML files anywhere, and a pattern ending with a slash matches everything below it.
+ * Patterns not starting with a slash may match below any directory, so {@code src/main/**} also
+ * matches {@code repo/src/main/App.java}.
+ * A blank expression matches every file.
+ */
+public final class ContextFilter {
+    public static final ContextFilter NONE = new ContextFilter(List.of());
+    private final List<String> patterns;
+    private final List<Pattern> compiled;
+
+    private ContextFilter(List<String> patterns) {
+        this.patterns = patterns;
+        this.compiled = patterns.stream().map(ContextFilter::compile).toList();
+    }
+
+    /**
+     * @param expression comma-separated glob patterns, may be null or blank
+     * @return the filter, {@link #NONE} for a blank expression
+     */
+    public static ContextFilter parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            return NONE;
+        }
+        List<String> patterns = Arrays.stream(expression.split(","))
+                .map(String::trim)
+                .filter(pattern -> !pattern.isEmpty())
+                .toList();
+        return patterns.isEmpty() ? NONE : new ContextFilter(patterns);
+    }
+
+    /**
+     * @return true if the filter lets every file through
+     */
+    public boolean isEmpty() {
+        return this.patterns.isEmpty();
+    }
+
+    public List<String> getPatterns() {
+        return this.patterns;
+    }
+
+    /**
+     * @param path the file path, with forward or backward slashes
+     * @return true if the path matches any pattern, or the filter is empty
+     */
+    public boolean matches(String path) {
+        if (isEmpty()) {
+            return true;
+        }
+        if (path == null) {
+            return false;
+        }
+        String normalized = path.replace('\\', '/');
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+        for (int i = 0; i < this.patterns.size(); i++) {
+            String subject = this.patterns.get(i).contains("/") ? normalized : name;
+            if (this.compiled.get(i).matcher(subject).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern compile(String glob) {
+        String pattern = glob.replace('\\', '/');
+        if (pattern.startsWith("./")) {
+            pattern = pattern.substring(2);
+        }
+        if (pattern.endsWith("/")) {
+            pattern = pattern + "**";
+        }
+        // Relative patterns may match below any directory, since stored paths can include the checkout root.
+        StringBuilder regex = new StringBuilder(pattern.startsWith("/") ? "" : "(?:.*/)?");
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                boolean directories = i + 2 < pattern.length() && pattern.charAt(i + 2) == '/';
+                regex.append(directories ? "(?:.*/)?" : ".*");
+                i += directories ? 2 : 1;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        ContextFilter that = (ContextFilter) obj;
+        return Objects.equals(this.patterns, that.patterns);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.patterns);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", this.patterns);
+    }
+}
@@ -0,0 +1,94 @@
+package com.qassistant.context.entities;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a deletion. Services that delete in the background return the job while it is
+ * still running and update it as batches commit; synchronous deletions return it finished.
+ */
+public final class DeletionJob {
+    private final String id;
+    private final String target;
+    private final Instant startedAt;
+    private final AtomicLong deletedNodes = new AtomicLong();
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public DeletionJob(String target) {
+        this.id = UUID.randomUUID().toString();
+        this.target = target;
+        this.startedAt = Instant.now();
+    }
+
+    public static DeletionJob completed(String target, long deletedNodes) {
+        DeletionJob job = new DeletionJob(target);
+        job.addDeleted(deletedNodes);
+        job.complete();
+        return job;
+    }
+
+    public void addDeleted(long count) {
+        this.deletedNodes.addAndGet(count);
+    }
+
+    public void complete() {
+        this.finishedAt = Instant.now();
+        this.status = Status.DONE;
+    }
+
+    public void fail(Throwable cause) {
+        this.error = String.valueOf(cause.getMessage());
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return what is deleted, for example {@code project 42}
+     */
+    public String getTarget() {
+        return this.target;
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public long getDeletedNodes() {
+        return this.deletedNodes.get();
+    }
+
+    public Instant getStartedAt() {
+        return this.startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return this.finishedAt;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    public boolean isFinished() {
+        return this.status != Status.RUNNING;
+    }
+
+    @Override
+    public String toString() {
+        return "DeletionJob[id=" + this.id + ", target=" + this.target + ", status=" + this.status
+                + ", deletedNodes=" + this.deletedNodes.get() + "]";
+    }
+
+    public enum Status {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+}
@@ -0,0 +1,55 @@
+package com.qassistant.context.entities;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Context entries found for one prompt of a batch request, with the position of the prompt in the batch.
+ */
+public final class PromptContext {
+    private final int index;
+    private final String prompt;
+    private final List<Context> contexts;
+
+    public PromptContext(int index, String prompt, List<Context> contexts) {
+        this.index = index;
+        this.prompt = prompt;
+        this.contexts = contexts;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public String getPrompt() {
+        return this.prompt;
+    }
+
+    public List<Context> getContexts() {
+        return this.contexts;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        PromptContext that = (PromptContext) obj;
+        return this.index == that.index
+                && Objects.equals(this.prompt, that.prompt)
+                && Objects.equals(this.contexts, that.contexts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.index, this.prompt, this.contexts);
+    }
+
+    @Override
+    public String toString() {
+        return "PromptContext[index=" + this.index + ", prompt=" + this.prompt + ", contexts=" + this.contexts + "]";
+    }
+}
@@ -0,0 +1,77 @@
+package com.qassistant.context.entities;
+
+import java.util.Objects;
+
+/**
+ * Measures how many of the exact top-k sections the configured engine of a project returns,
+ * together with the average latency of both searches.
+ */
+public final class RecallReport {
+    private final String projectId;
+    private final String engine;
+    private final int k;
+    private final int queries;
+    private final double recall;
+    private final double exactMillis;
+    private final double engineMillis;
+
+    public RecallReport(String projectId, String engine, int k, int queries, double recall, double exactMillis, double engineMillis) {
+        this.projectId = projectId;
+        this.engine = engine;
+        this.k = k;
+        this.queries = queries;
+        this.recall = recall;
+        this.exactMillis = exactMillis;
+        this.engineMillis = engineMillis;
+    }
+
+    public String getProjectId() {
+        return this.projectId;
+    }
+
+    public String getEngine() {
+        return this.engine;
+    }
+
+    public int getK() {
+        return this.k;
+    }
+
+    public int getQueries() {
+        return this.queries;
+    }
+
+    /**
+     * @return the average fraction of exact top-k ids found by the engine, between 0 and 1
+     */
+    public double getRecall() {
+        return this.recall;
+    }
+
+    public double getExactMillis() {
+        return this.exactMillis;
+    }
+
+    public double getEngineMillis() {
+        return this.engineMillis;
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        RecallReport that = (RecallReport)obj;
+        return Objects.equals(this.projectId, that.projectId) && Objects.equals(this.engine, that.engine) && this.k == that.k && this.queries == that.queries && Double.compare(this.recall, that.recall) == 0 && Double.compare(this.exactMillis, that.exactMillis) == 0 && Double.compare(this.engineMillis, that.engineMillis) == 0;
+    }
+
+    public int hashCode() {
+        return Objects.hash(this.projectId, this.engine, this.k, this.queries, this.recall, this.exactMillis, this.engineMillis);
+    }
+
+    public String toString() {
+        return "RecallReport[projectId=" + this.projectId + ", engine=" + this.engine + ", k=" + this.k + ", queries=" + this.queries + ", recall=" + this.recall + ", exactMillis=" + this.exactMillis + ", engineMillis=" + this.engineMillis + "]";
+    }
+}
@@ -0,0 +1,324 @@
+package com.qassistant.context.services;
+
+import com.qassistant.context.configs.GovernorConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Client-side governor of OpenAI calls, shared by embedding and chat traffic.
+ * <p>
+ * A call is admitted once a concurrency slot is free and the request and token buckets, refilled
+ * continuously at the per-minute limits, hold enough for it. The concurrency limit adapts AIMD
+ * style: it grows by one per limit's worth of fast successful calls and is halved on a 429, or cut
+ * by a fifth when a call takes longer than the latency target, at most once per second. Failed
+ * calls are retried with full-jitter exponential backoff; a Retry-After hint, from the header or
+ * from the "try again in" text of the error, pauses all admissions until it has passed. Client
+ * errors other than 429 are not retried.
+ * <p>
+ * Interactive calls are admitted before waiting bulk calls and may use one slot above the limit,
+ * so a large ingest cannot starve questions asked from Slack.
+ */
+@Service
+public class ApiGovernor {
+    private static final Logger logger = LoggerFactory.getLogger(ApiGovernor.class);
+    private static final Pattern TRY_AGAIN = Pattern.compile("try again in (\\d+(?:\\.\\d+)?)(ms|s)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STATUS = Pattern.compile("^(\\d{3})\\b");
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Upper bound of a wait for a free slot, which is signalled anyway; guards against lost wake-ups.
+    private static final long SLOT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    public enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+    private final int maxConcurrency;
+    private final long latencyTargetNanos;
+    private final int maxRetries;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private int waitingInteractive;
+    private long pausedUntil;
+    private long lastDecrease;
+    private final Counter throttled = Metrics.counter("qassistant.gpt.governor.throttled");
+    private final Counter retries = Metrics.counter("qassistant.gpt.governor.retries");
+
+    @Autowired
+    public ApiGovernor(GovernorConfig config) {
+        this(config.getRequestsPerMinute(), config.getTokensPerMinute(), config.getInitialConcurrency(), config.getMaxConcurrency(),
+                config.getLatencyTarget(), config.getMaxRetries(), config.getBaseBackoff(), config.getMaxBackoff());
+    }
+
+    ApiGovernor(int requestsPerMinute, int tokensPerMinute, int initialConcurrency, int maxConcurrency,
+                Duration latencyTarget, int maxRetries, Duration baseBackoff, Duration maxBackoff) {
+        this.requests = new TokenBucket(requestsPerMinute);
+        this.tokens = new TokenBucket(tokensPerMinute);
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyLimit = Math.min(initialConcurrency, maxConcurrency);
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.maxRetries = maxRetries;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.lastDecrease = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+        Metrics.gauge("qassistant.gpt.governor.concurrency.limit", this, ApiGovernor::getConcurrencyLimit);
+        Metrics.gauge("qassistant.gpt.governor.in.flight", this, ApiGovernor::getInFlight);
+    }
+
+    /**
+     * Runs an API call once it is admitted, retrying it on rate limits and transient errors.
+     *
+     * @param priority whether a user waits for the call
+     * @param estimatedTokens the tokens the call consumes, prompt and completion
+     * @param call the API call
+     * @return the result of the call
+     * @throws RuntimeException the last error if the call does not succeed within the retries
+     */
+    public <T> T execute(Priority priority, int estimatedTokens, Supplier<T> call) {
+        for (int attempt = 0; ; attempt++) {
+            acquire(priority, estimatedTokens);
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                release(Outcome.SUCCESS, System.nanoTime() - start);
+                return result;
+            } catch (RuntimeException e) {
+                int status = statusOf(e);
+                boolean rateLimited = status == 429;
+                release(rateLimited ? Outcome.THROTTLED : Outcome.FAILURE, System.nanoTime() - start);
+                if (attempt >= this.maxRetries || (status >= 400 && status < 500 && !rateLimited)) {
+                    throw e;
+                }
+                long retryAfter = retryAfterNanos(e);
+                if (rateLimited) {
+                    this.throttled.increment();
+                    if (retryAfter > 0) {
+                        pause(retryAfter);
+                    }
+                }
+                long backoff = Math.max(retryAfter, backoffNanos(attempt));
+                logger.warn("API call failed, retry {} of {} in {} ms: {}", attempt + 1, this.maxRetries,
+                        TimeUnit.NANOSECONDS.toMillis(backoff), e.getMessage());
+                this.retries.increment();
+                sleep(backoff);
+            }
+        }
+    }
+
+    public double getConcurrencyLimit() {
+        lock.lock();
+        try {
+            return this.concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return this.inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    private void acquire(Priority priority, int estimatedTokens) {
+        boolean interactive = priority == Priority.INTERACTIVE;
+        lock.lock();
+        try {
+            if (interactive) {
+                this.waitingInteractive++;
+            }
+            try {
+                while (true) {
+                    long wait = admissionWait(interactive, estimatedTokens, System.nanoTime());
+                    if (wait == 0) {
+                        this.inFlight++;
+                        return;
+                    }
+                    changed.awaitNanos(wait);
+                }
+            } finally {
+                if (interactive) {
+                    this.waitingInteractive--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an API call slot", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 0 after taking from both buckets if the call can start now, otherwise how long to wait
+     */
+    private long admissionWait(boolean interactive, int estimatedTokens, long now) {
+        if (now < this.pausedUntil) {
+            return this.pausedUntil - now;
+        }
+        if (!interactive && this.waitingInteractive > 0) {
+            return SLOT_WAIT_NANOS;
+        }
+        int slots = (int) this.concurrencyLimit + (interactive ? 1 : 0);
+        if (this.inFlight >= slots) {
+            return SLOT_WAIT_NANOS;
+        }
+        long wait = Math.max(this.requests.waitNanos(1, now), this.tokens.waitNanos(estimatedTokens, now));
+        if (wait > 0) {
+            return wait;
+        }
+        this.requests.take(1);
+        this.tokens.take(estimatedTokens);
+        return 0;
+    }
+
+    private void release(Outcome outcome, long latencyNanos) {
+        lock.lock();
+        try {
+            this.inFlight--;
+            long now = System.nanoTime();
+            if (outcome == Outcome.THROTTLED) {
+                decrease(0.5, now);
+            } else if (latencyNanos > this.latencyTargetNanos) {
+                decrease(0.8, now);
+            } else if (outcome == Outcome.SUCCESS) {
+                this.concurrencyLimit = Math.min(this.maxConcurrency, this.concurrencyLimit + 1.0 / this.concurrencyLimit);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(double factor, long now) {
+        // Calls in flight when the API pushed back report it too; count that as one signal.
+        if (now - this.lastDecrease >= DECREASE_INTERVAL_NANOS) {
+            this.concurrencyLimit = Math.max(1.0, this.concurrencyLimit * factor);
+            this.lastDecrease = now;
+        }
+    }
+
+    private void pause(long nanos) {
+        lock.lock();
+        try {
+            this.pausedUntil = Math.max(this.pausedUntil, System.nanoTime() + nanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long backoffNanos(int attempt) {
+        long ceiling = Math.min(this.maxBackoffNanos, this.baseBackoffNanos << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted during retry", e);
+        }
+    }
+
+    /**
+     * @return the HTTP status of the error, from the response or from the leading code in the
+     *         messages Spring AI builds from error responses, or 0 if unknown
+     */
+    static int statusOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException response) {
+                return response.getStatusCode().value();
+            }
+            Matcher matcher = STATUS.matcher(String.valueOf(cause.getMessage()));
+            if (matcher.find()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+            if (String.valueOf(cause.getMessage()).toLowerCase().contains("rate limit")) {
+                return 429;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the wait the API asked for in a Retry-After header or in the error text, or 0
+     */
+    static long retryAfterNanos(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+                String retryAfter = response.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                if (retryAfter != null && retryAfter.matches("\\d+")) {
+                    return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter));
+                }
+            }
+            Matcher matcher = TRY_AGAIN.matcher(String.valueOf(cause.getMessage()));
+            if (matcher.find()) {
+                double value = Double.parseDouble(matcher.group(1));
+                return (long) (value * ("ms".equalsIgnoreCase(matcher.group(2)) ? 1_000_000 : 1_000_000_000));
+            }
+        }
+        return 0;
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        THROTTLED,
+        FAILURE
+    }
+
+    /**
+     * Bucket holding up to one minute of its rate, refilled continuously. A take larger than the
+     * capacity is admitted once the bucket is full and leaves it in debt, so it cannot block forever.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double available;
+        private long refilledAt;
+
+        TokenBucket(int perMinute) {
+            this.capacity = perMinute;
+            this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+            this.refilledAt = System.nanoTime();
+        }
+
+        long waitNanos(int amount, long now) {
+            this.available = Math.min(this.capacity, this.available + (now - this.refilledAt) * this.perNano);
+            this.refilledAt = now;
+            double missing = Math.min(amount, this.capacity) - this.available;
+            return missing <= 0 ? 0 : Math.max(1, (long) Math.ceil(missing / this.perNano));
+        }
+
+        void take(int amount) {
+            this.available -= amount;
+        }
+    }
+}
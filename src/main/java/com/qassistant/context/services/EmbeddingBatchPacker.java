@@ -0,0 +1,55 @@
+package com.qassistant.context.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Packs texts into embeddings requests bounded by both input count and estimated token count.
+ * <p>
+ * Identical texts are sent once. Texts keep their order, so sections of one file tend to share a
+ * request. Tokens are estimated from the length at three characters per token, which overestimates
+ * English and most code; a request the API still rejects as too large is split by the caller.
+ * A text above the token budget on its own gets a request to itself.
+ */
+public final class EmbeddingBatchPacker {
+    private static final int CHARS_PER_TOKEN = 3;
+
+    private EmbeddingBatchPacker() {
+    }
+
+    /**
+     * @param text the text to embed
+     * @return a conservative estimate of its token count
+     */
+    public static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + 1;
+    }
+
+    /**
+     * @param texts the texts to embed, possibly with duplicates
+     * @param maxItems the maximum number of inputs per request
+     * @param maxTokens the maximum estimated number of tokens per request
+     * @return the distinct texts grouped into requests
+     */
+    public static List<List<String>> pack(Collection<String> texts, int maxItems, int maxTokens) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        long batchTokens = 0;
+        for (String text : new LinkedHashSet<>(texts)) {
+            int tokens = estimateTokens(text);
+            if (!batch.isEmpty() && (batch.size() >= maxItems || batchTokens + tokens > maxTokens)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(text);
+            batchTokens += tokens;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -1,14 +1,20 @@
 package com.qassistant.context.services;
 
+import com.qassistant.context.configs.AiGptConfig;
 import com.qassistant.context.db.dbEntity.FileSection;
 import com.qassistant.context.entities.FileChunk;
+import com.qassistant.context.utils.MathUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -23,62 +29,156 @@ import org.springframework.stereotype.Service;
 public class EmbeddingGptService {
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingGptService.class);
     private final OpenAiEmbeddingClient embeddingClient;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final SectionEmbeddingCache sectionEmbeddingCache;
+    private final ApiGovernor apiGovernor;
+    private final String embeddingsModel;
+    private final int embeddingDimensions;
+    private final int batchSize;
+    private final int batchTokens;
 
-    public EmbeddingGptService(OpenAiEmbeddingClient embeddingClient) {
+    public EmbeddingGptService(OpenAiEmbeddingClient embeddingClient, QueryEmbeddingCache queryEmbeddingCache,
+                               SectionEmbeddingCache sectionEmbeddingCache, ApiGovernor apiGovernor, AiGptConfig aiGptConfig) {
         this.embeddingClient = embeddingClient;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.sectionEmbeddingCache = sectionEmbeddingCache;
+        this.apiGovernor = apiGovernor;
+        this.embeddingsModel = aiGptConfig.getEmbeddingsModel();
+        this.embeddingDimensions = aiGptConfig.getEmbeddingDimensions();
+        this.batchSize = aiGptConfig.getEmbeddingBatchSize();
+        this.batchTokens = aiGptConfig.getEmbeddingBatchTokens();
     }
 
     /**
-     * Attempts to get an embedding response for a given list of strings.
+     * Gets the embedding of a search query, answering repeated queries from the {@link QueryEmbeddingCache}.
+     *
+     * @param query the query text
+     * @return the query embedding, shared with the cache and therefore not to be modified
+     */
+    public float[] getQueryEmbedding(String query) {
+        return queryEmbeddingCache.get(embeddingsModel, query, () ->
+                MathUtils.toFloatArray(getEmbeddingResponse(Collections.singletonList(query), ApiGovernor.Priority.INTERACTIVE)
+                        .getResult().getOutput()));
+    }
+
+    /**
+     * Gets the embeddings of many search queries. Cached queries are answered from the
+     * {@link QueryEmbeddingCache}, the others are embedded together in as few requests as possible.
+     *
+     * @param queries the query texts
+     * @return the query embeddings in query order, shared with the cache and therefore not to be modified
+     */
+    public List<float[]> getQueryEmbeddings(List<String> queries) {
+        float[][] embeddings = new float[queries.size()][];
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            embeddings[i] = queryEmbeddingCache.getIfPresent(embeddingsModel, queries.get(i));
+            if (embeddings[i] == null) {
+                missing.computeIfAbsent(queries.get(i), query -> new ArrayList<>()).add(i);
+            }
+        }
+        List<String> texts = new ArrayList<>(missing.keySet());
+        List<float[]> computed = getEmbeddings(texts);
+        for (int i = 0; i < texts.size(); i++) {
+            float[] embedding = computed.get(i);
+            queryEmbeddingCache.put(embeddingsModel, texts.get(i), embedding);
+            missing.get(texts.get(i)).forEach(position -> embeddings[position] = embedding);
+        }
+        return Arrays.asList(embeddings);
+    }
+
+    /**
+     * Embeds many texts in as few requests as possible, without caching.
+     *
+     * @param texts the texts to embed
+     * @return the embeddings in text order
+     */
+    public List<float[]> getEmbeddings(List<String> texts) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        EmbeddingBatchPacker.pack(texts, batchSize, batchTokens).forEach(batch -> embedBatch(batch, embeddings));
+        return texts.stream().map(embeddings::get).toList();
+    }
+
+    /**
+     * Attempts to get an embedding response for a given list of strings as bulk traffic.
      *
      * @param texts List of texts to get embeddings for.
      * @return EmbeddingResponse obtained from the embedding client.
-     * @throws RuntimeException if unable to get embeddings after 5 retries.
+     * @throws RuntimeException if unable to get embeddings within the retries of the {@link ApiGovernor}.
      */
     public EmbeddingResponse getEmbeddingResponse(List<String> texts) {
-        int retries = 5;
-        while (retries > 0) {
-            try {
-                return embeddingClient.embedForResponse(texts);
-            } catch (Exception e) {
-                logger.error("Failed to create embeddings, retries left: {}", retries - 1, e);
-                retries--;
-                try {
-                    Thread.sleep(3000L); // 3 seconds pause before retrying
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Thread was interrupted during retry", ex);
-                }
-            }
-        }
-        throw new RuntimeException("Could not create embeddings after multiple retries.");
+        return getEmbeddingResponse(texts, ApiGovernor.Priority.BULK);
+    }
+
+    /**
+     * Attempts to get an embedding response for a given list of strings, scheduled and retried
+     * by the {@link ApiGovernor}.
+     *
+     * @param texts List of texts to get embeddings for.
+     * @param priority whether a user waits for the embeddings.
+     * @return EmbeddingResponse obtained from the embedding client.
+     * @throws RuntimeException if unable to get embeddings within the retries of the {@link ApiGovernor}.
+     */
+    public EmbeddingResponse getEmbeddingResponse(List<String> texts, ApiGovernor.Priority priority) {
+        int tokens = texts.stream().mapToInt(EmbeddingBatchPacker::estimateTokens).sum();
+        return apiGovernor.execute(priority, tokens, () -> embeddingClient.embedForResponse(texts));
     }
 
     /**
      * Maps each FileChunk to a set of FileSections with embeddings.
+     * <p>
+     * Sections already in the {@link SectionEmbeddingCache} are not sent to the embeddings API.
+     * The distinct missing sections of all chunks are packed into requests bounded by input count
+     * and estimated tokens, so small files share a request and large ones are spread over several,
+     * and the results are fanned back to their chunks. A chunk is left out of the result if any of
+     * its sections could not be embedded.
      *
      * @param fileChunks List of FileChunks to process.
      * @return Map of FileChunk to a Set of FileSections.
      */
     public Map<FileChunk, Set<FileSection>> mapChunksToSections(List<FileChunk> fileChunks) {
-        Map<FileChunk, Set<FileSection>> chunkMap = new HashMap<>();
-        AtomicInteger remainingChunks = new AtomicInteger(fileChunks.size());
-        logger.info("Creating embeddings for {} chunks", fileChunks.size());
-        ExecutorService executor = Executors.newFixedThreadPool(4);
-
-        fileChunks.forEach(chunk -> executor.submit(() -> {
-            Set<FileSection> sections = createFileSections(chunk, remainingChunks);
-            synchronized (chunkMap) {
-                if (!sections.isEmpty()) {
-                    chunkMap.put(chunk, sections);
+        Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+        Map<String, String> missingKeys = new LinkedHashMap<>();
+        for (FileChunk chunk : fileChunks) {
+            for (String section : chunk.sections()) {
+                if (embeddings.containsKey(section) || missingKeys.containsKey(section)) {
+                    continue;
+                }
+                String key = SectionEmbeddingCache.key(embeddingsModel, embeddingDimensions, section);
+                float[] cached = sectionEmbeddingCache.getIfPresent(key);
+                if (cached != null) {
+                    embeddings.put(section, cached);
+                } else {
+                    missingKeys.put(section, key);
                 }
             }
+        }
+
+        List<List<String>> batches = EmbeddingBatchPacker.pack(missingKeys.keySet(), batchSize, batchTokens);
+        AtomicInteger remainingBatches = new AtomicInteger(batches.size());
+        logger.info("Creating embeddings for {} chunks: {} cached sections, {} sections in {} requests",
+                fileChunks.size(), embeddings.size(), missingKeys.size(), batches.size());
+        // The governor bounds the calls in flight, so the pool only has to be large enough for its limit.
+        ExecutorService executor = Executors.newFixedThreadPool(apiGovernor.getMaxConcurrency());
+
+        batches.forEach(batch -> executor.submit(() -> {
+            Map<String, float[]> computed = new HashMap<>();
+            try {
+                embedBatch(batch, computed);
+            } catch (Exception e) {
+                logger.error("Error occurred during embedding creation for {} sections", batch.size(), e);
+            } finally {
+                // Sections embedded before a failure are kept, only the chunks of the failed ones are left out.
+                computed.forEach((section, embedding) -> sectionEmbeddingCache.put(missingKeys.get(section), embedding));
+                embeddings.putAll(computed);
+                remainingBatches.decrementAndGet();
+            }
         }));
 
         executor.shutdown();
         try {
             while (!executor.awaitTermination(100L, TimeUnit.MILLISECONDS)) {
-                logger.info("Waiting for tasks to complete... Remaining: {}", remainingChunks.get());
+                logger.info("Waiting for tasks to complete... Remaining: {}", remainingBatches.get());
             }
         } catch (InterruptedException e) {
             logger.error("Interrupted while waiting for completion", e);
@@ -86,30 +186,91 @@ public class EmbeddingGptService {
             throw new RuntimeException("Thread interrupted while waiting for task completion", e);
         }
 
+        Map<FileChunk, Set<FileSection>> chunkMap = new HashMap<>();
+        for (FileChunk chunk : fileChunks) {
+            Set<FileSection> sections = createFileSections(chunk, embeddings);
+            if (!sections.isEmpty()) {
+                chunkMap.put(chunk, sections);
+            }
+        }
         logger.info("Embeddings created and files indexed.");
         return chunkMap;
     }
 
     /**
-     * Creates a set of FileSections from the embeddings of the given FileChunk.
+     * Embeds one packed request. If the API rejects the request with a client error other than the
+     * rate limit, such as an input over the context length, it is split in half and each half is
+     * sent on its own, so one oversized or rejected input does not fail its whole batch. Server
+     * and network errors have already been retried by the {@link ApiGovernor} and are rethrown
+     * at once, as smaller requests would not fare better.
      *
-     * @param fileChunk The file chunk to process.
-     * @param remainingCount Counter for the remaining chunks.
-     * @return Set of FileSections created from the file chunk.
+     * @param texts the distinct texts of the request
+     * @param embeddings receives the embedding of every text that could be embedded
+     * @throws RuntimeException if a text could not be embedded, once all other texts are
      */
-    private Set<FileSection> createFileSections(FileChunk fileChunk, AtomicInteger remainingCount) {
+    private void embedBatch(List<String> texts, Map<String, float[]> embeddings) {
+        EmbeddingResponse response;
         try {
-            Set<FileSection> sections = new HashSet<>();
-            EmbeddingResponse embeddingResponse = getEmbeddingResponse(fileChunk.sections());
-            for (int i = 0; i < embeddingResponse.getResults().size(); i++) {
-                sections.add(new FileSection(fileChunk.sections().get(i), embeddingResponse.getResults().get(i).getOutput(), 0));
+            response = getEmbeddingResponse(texts);
+        } catch (RuntimeException e) {
+            if (texts.size() == 1 || !isRejected(e)) {
+                throw e;
+            }
+            logger.warn("Failed to create embeddings for {} texts, splitting the request", texts.size(), e);
+            int half = texts.size() / 2;
+            RuntimeException failure = null;
+            for (List<String> part : List.of(texts.subList(0, half), texts.subList(half, texts.size()))) {
+                try {
+                    embedBatch(part, embeddings);
+                } catch (RuntimeException partFailure) {
+                    if (!isRejected(partFailure)) {
+                        throw partFailure;
+                    }
+                    if (failure == null) {
+                        failure = partFailure;
+                    } else {
+                        failure.addSuppressed(partFailure);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.put(texts.get(i), MathUtils.toFloatArray(response.getResults().get(i).getOutput()));
+        }
+    }
+
+    /**
+     * @return true if the API refused the request itself, which may depend on its inputs
+     */
+    private static boolean isRejected(RuntimeException error) {
+        int status = ApiGovernor.statusOf(error);
+        return status >= 400 && status < 500 && status != 429;
+    }
+
+    /**
+     * Creates a set of FileSections for the given FileChunk from the embedded sections.
+     *
+     * @param fileChunk The file chunk to process.
+     * @param embeddings The embeddings by section content, shared with the cache and therefore copied.
+     * @return Set of FileSections created from the file chunk, empty if any section has no embedding.
+     */
+    private Set<FileSection> createFileSections(FileChunk fileChunk, Map<String, float[]> embeddings) {
+        Set<FileSection> sections = new HashSet<>();
+        for (String content : fileChunk.sections()) {
+            float[] embedding = embeddings.get(content);
+            if (embedding == null) {
+                logger.error("Error occurred during embedding creation and indexing for chunk: {}", fileChunk);
+                return Collections.emptySet();
             }
-            return sections;
-        } catch (Exception e) {
-            logger.error("Error occurred during embedding creation and indexing for chunk: {}", fileChunk, e);
-            return Collections.emptySet();
-        } finally {
-            remainingCount.decrementAndGet();
+            FileSection section = new FileSection(content, null, 0);
+            // Normalize a copy, the cached vector is shared.
+            section.setEmbedding(MathUtils.normalize(embedding.clone()));
+            sections.add(section);
         }
+        return sections;
     }
 }
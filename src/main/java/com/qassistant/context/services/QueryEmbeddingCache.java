@@ -0,0 +1,220 @@
+package com.qassistant.context.services;
+
+import com.qassistant.context.configs.EmbeddingCacheConfig;
+import com.qassistant.context.db.converters.FloatArrayConverter;
+import com.qassistant.context.utils.TextUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache of query embeddings keyed by embeddings model and normalized prompt.
+ * <p>
+ * Entries live in an LRU map bounded by an estimate of their heap size and expire after a TTL.
+ * When a disk directory is configured, every entry is also written there as a float32 file named
+ * after the SHA-256 of its key, so repeated questions survive restarts. Prompts are normalized
+ * by Unicode NFC, trimming and collapsing whitespace; case is kept since it matters for code.
+ */
+@Service
+public class QueryEmbeddingCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+    // Rough per-entry overhead of the map node, the entry object, the key string and array headers.
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final long maxBytes;
+    private final Duration ttl;
+    private final Path diskDirectory;
+    private final Clock clock;
+    private final Counter memoryHits = Metrics.counter("qassistant.embedding.cache", "result", "hit", "tier", "memory");
+    private final Counter diskHits = Metrics.counter("qassistant.embedding.cache", "result", "hit", "tier", "disk");
+    private final Counter misses = Metrics.counter("qassistant.embedding.cache", "result", "miss", "tier", "none");
+
+    @Autowired
+    public QueryEmbeddingCache(EmbeddingCacheConfig config) {
+        this(config.getMaxBytes(), config.getTtl(),
+                Optional.ofNullable(config.getDiskDirectory()).map(Path::of).orElse(null), Clock.systemUTC());
+    }
+
+    QueryEmbeddingCache(long maxBytes, Duration ttl, Path diskDirectory, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.diskDirectory = diskDirectory;
+        this.clock = clock;
+        Metrics.gauge("qassistant.embedding.cache.bytes", this.usedBytes);
+    }
+
+    /**
+     * Returns the cached embedding of a prompt, computing and caching it on a miss.
+     *
+     * @param model the embeddings model the vector belongs to
+     * @param prompt the prompt
+     * @param loader computes the embedding on a miss
+     * @return the embedding, shared with the cache and therefore not to be modified
+     */
+    public float[] get(String model, String prompt, Supplier<float[]> loader) {
+        float[] vector = getIfPresent(model, prompt);
+        if (vector == null) {
+            vector = loader.get();
+            put(model, prompt, vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Returns the cached embedding of a prompt without computing it, so callers can embed all
+     * misses of a batch in one request.
+     *
+     * @param model the embeddings model the vector belongs to
+     * @param prompt the prompt
+     * @return the embedding, shared with the cache and therefore not to be modified, or null on a miss
+     */
+    public float[] getIfPresent(String model, String prompt) {
+        String key = key(model, prompt);
+        long now = clock.millis();
+        synchronized (this.entries) {
+            Entry entry = this.entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                this.memoryHits.increment();
+                return entry.vector;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+
+        float[] vector = readFromDisk(key, now);
+        if (vector != null) {
+            this.diskHits.increment();
+            putInMemory(key, vector, now);
+            return vector;
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the embedding of a prompt.
+     *
+     * @param model the embeddings model the vector belongs to
+     * @param prompt the prompt
+     * @param vector the embedding, kept by the cache and therefore not to be modified afterwards
+     */
+    public void put(String model, String prompt, float[] vector) {
+        String key = key(model, prompt);
+        putInMemory(key, vector, clock.millis());
+        writeToDisk(key, vector);
+    }
+
+    /**
+     * @return the estimated heap size of the cached entries
+     */
+    public long getUsedBytes() {
+        return this.usedBytes.get();
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    static String normalize(String prompt) {
+        return Normalizer.normalize(prompt, Normalizer.Form.NFC).strip().replaceAll("\\s+", " ");
+    }
+
+    private static String key(String model, String prompt) {
+        return model + '\u0000' + normalize(prompt);
+    }
+
+    private void putInMemory(String key, float[] vector, long now) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length() + 4L * vector.length;
+        if (bytes > this.maxBytes) {
+            return;
+        }
+        synchronized (this.entries) {
+            remove(key);
+            this.entries.put(key, new Entry(vector, now + this.ttl.toMillis(), bytes));
+            this.usedBytes.addAndGet(bytes);
+            Iterator<Map.Entry<String, Entry>> eldest = this.entries.entrySet().iterator();
+            while (this.usedBytes.get() > this.maxBytes && eldest.hasNext()) {
+                this.usedBytes.addAndGet(-eldest.next().getValue().bytes);
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = this.entries.remove(key);
+        if (removed != null) {
+            this.usedBytes.addAndGet(-removed.bytes);
+        }
+    }
+
+    private float[] readFromDisk(String key, long now) {
+        if (this.diskDirectory == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        try {
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            if (Files.getLastModifiedTime(path).toMillis() + this.ttl.toMillis() <= now) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            return FloatArrayConverter.fromBytes(Files.readAllBytes(path));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read cached embedding {}", path, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        if (this.diskDirectory == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(this.diskDirectory);
+            Path temporary = Files.createTempFile(this.diskDirectory, "embedding", ".tmp");
+            Files.write(temporary, FloatArrayConverter.toBytes(vector));
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write cached embedding {}", path, e);
+        }
+    }
+
+    private Path diskPath(String key) {
+        return this.diskDirectory.resolve(TextUtils.generateSha256(key) + ".bin");
+    }
+
+    private static final class Entry {
+        final float[] vector;
+        final long expiresAt;
+        final long bytes;
+
+        Entry(float[] vector, long expiresAt, long bytes) {
+            this.vector = vector;
+            this.expiresAt = expiresAt;
+            this.bytes = bytes;
+        }
+    }
+}
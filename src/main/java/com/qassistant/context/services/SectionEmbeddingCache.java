@@ -0,0 +1,456 @@
+package com.qassistant.context.services;
+
+import com.qassistant.context.configs.SectionCacheConfig;
+import com.qassistant.context.utils.TextUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content-addressed cache of section embeddings, shared by all files and projects.
+ * <p>
+ * Entries are keyed by the SHA-256 of embeddings model, vector dimensions and the exact section
+ * text, so licence headers, generated code and vendored files are embedded once no matter where
+ * they appear, and unchanged sections of a re-indexed file are not embedded again.
+ * <p>
+ * The memory tier is an LRU map bounded by an estimate of its heap size. The disk tier appends
+ * records of (key, dimensions, float32 vector, CRC32) to segment files that are sealed once they
+ * reach {@code segmentBytes}; an index of key to record position is rebuilt by scanning them at
+ * startup, and a torn record at the end of the last segment is truncated. Compaction rewrites the
+ * live records of a sealed segment into the active one and deletes it. It runs when more than half
+ * of a segment is superseded, and on the oldest segment when the disk budget is exceeded; records
+ * not read since they were last written are then dropped instead of rewritten.
+ */
+@Service
+public class SectionEmbeddingCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SectionEmbeddingCache.class);
+    // Rough per-entry overhead of the map node, the key string and the array header.
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = KEY_BYTES + Integer.BYTES;
+    private static final int MAX_DIMENSIONS = 1 << 16;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private final LinkedHashMap<String, float[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final long memoryMaxBytes;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long diskMaxBytes;
+    private final ReadWriteLock diskLock = new ReentrantReadWriteLock();
+    private final Map<String, Location> locations = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final AtomicLong diskBytes = new AtomicLong();
+    // Kept apart from the counters, which do not count while no meter registry is bound.
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private Segment active;
+    private boolean diskEnabled;
+    private final Counter memoryHits = Metrics.counter("qassistant.section.embedding.cache", "result", "hit", "tier", "memory");
+    private final Counter diskHits = Metrics.counter("qassistant.section.embedding.cache", "result", "hit", "tier", "disk");
+    private final Counter misses = Metrics.counter("qassistant.section.embedding.cache", "result", "miss", "tier", "none");
+
+    @Autowired
+    public SectionEmbeddingCache(SectionCacheConfig config) {
+        this(config.getMemoryMaxBytes(), Optional.ofNullable(config.getDirectory()).map(Path::of).orElse(null),
+                config.getSegmentBytes(), config.getDiskMaxBytes());
+    }
+
+    SectionEmbeddingCache(long memoryMaxBytes, Path directory, long segmentBytes, long diskMaxBytes) {
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.diskMaxBytes = diskMaxBytes;
+        if (directory != null) {
+            open();
+        }
+        Metrics.gauge("qassistant.section.embedding.cache.bytes", this.usedBytes);
+        Metrics.gauge("qassistant.section.embedding.cache.disk.bytes", this.diskBytes);
+        Metrics.gauge("qassistant.section.embedding.cache.hit.ratio", this, SectionEmbeddingCache::getHitRatio);
+    }
+
+    /**
+     * @param model the embeddings model
+     * @param dimensions the size of the vectors the model returns
+     * @param text the exact section text
+     * @return the content address of the section embedding
+     */
+    public static String key(String model, int dimensions, String text) {
+        return TextUtils.generateSha256(model + '\u0000' + dimensions + '\u0000' + text);
+    }
+
+    /**
+     * @param key a key built by {@link #key(String, int, String)}
+     * @return the cached embedding, shared with the cache and therefore not to be modified, or null on a miss
+     */
+    public float[] getIfPresent(String key) {
+        this.lookups.incrementAndGet();
+        synchronized (this.entries) {
+            float[] vector = this.entries.get(key);
+            if (vector != null) {
+                this.memoryHits.increment();
+                this.hits.incrementAndGet();
+                return vector;
+            }
+        }
+        float[] vector = readFromDisk(key);
+        if (vector != null) {
+            this.diskHits.increment();
+            this.hits.incrementAndGet();
+            putInMemory(key, vector);
+            return vector;
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a section embedding in both tiers.
+     *
+     * @param key a key built by {@link #key(String, int, String)}
+     * @param vector the embedding, kept by the cache and therefore not to be modified afterwards
+     */
+    public void put(String key, float[] vector) {
+        putInMemory(key, vector);
+        writeToDisk(key, vector);
+    }
+
+    /**
+     * @return the share of lookups answered by either tier since startup
+     */
+    public double getHitRatio() {
+        long lookups = this.lookups.get();
+        return lookups == 0 ? 0.0 : (double) this.hits.get() / lookups;
+    }
+
+    /**
+     * @return the estimated heap size of the memory tier
+     */
+    public long getUsedBytes() {
+        return this.usedBytes.get();
+    }
+
+    /**
+     * @return the total size of the segment files
+     */
+    public long getDiskBytes() {
+        return this.diskBytes.get();
+    }
+
+    /**
+     * @return the number of entries in the disk tier
+     */
+    public int diskSize() {
+        diskLock.readLock().lock();
+        try {
+            return this.locations.size();
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        diskLock.writeLock().lock();
+        try {
+            for (Segment segment : this.segments.values()) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close embedding cache segment {}", segment.path, e);
+                }
+            }
+            this.segments.clear();
+            this.locations.clear();
+            this.diskEnabled = false;
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    private void putInMemory(String key, float[] vector) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length() + 4L * vector.length;
+        if (bytes > this.memoryMaxBytes) {
+            return;
+        }
+        synchronized (this.entries) {
+            float[] previous = this.entries.put(key, vector);
+            if (previous == null) {
+                this.usedBytes.addAndGet(bytes);
+            }
+            Iterator<Map.Entry<String, float[]>> eldest = this.entries.entrySet().iterator();
+            while (this.usedBytes.get() > this.memoryMaxBytes && eldest.hasNext()) {
+                Map.Entry<String, float[]> entry = eldest.next();
+                this.usedBytes.addAndGet(-(ENTRY_OVERHEAD_BYTES + 2L * entry.getKey().length() + 4L * entry.getValue().length));
+                eldest.remove();
+            }
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(this.directory);
+            List<Path> paths;
+            try (Stream<Path> files = Files.list(this.directory)) {
+                paths = files.filter(path -> segmentId(path) >= 0).toList();
+            }
+            for (Path path : paths) {
+                Segment segment = new Segment(segmentId(path), path);
+                this.segments.put(segment.id, segment);
+            }
+            for (Segment segment : this.segments.values()) {
+                scan(segment, segment == this.segments.lastEntry().getValue());
+                this.diskBytes.addAndGet(segment.size);
+            }
+            this.active = this.segments.isEmpty() ? newSegment() : this.segments.lastEntry().getValue();
+            this.diskEnabled = true;
+            LOGGER.info("Loaded {} cached section embeddings from {} segments in {}", this.locations.size(), this.segments.size(), this.directory);
+        } catch (IOException e) {
+            LOGGER.warn("Section embedding disk cache in {} is disabled", this.directory, e);
+            close();
+        }
+    }
+
+    /**
+     * Indexes the records of a segment. A record cut short or failing its checksum ends the scan;
+     * in the last segment it is what an interrupted append leaves behind and is truncated.
+     */
+    private void scan(Segment segment, boolean last) throws IOException {
+        long size = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (offset < size) {
+            header.clear();
+            if (!readFully(segment.channel, header, offset)) {
+                break;
+            }
+            int dimensions = header.getInt(KEY_BYTES);
+            if (dimensions <= 0 || dimensions > MAX_DIMENSIONS || offset + recordBytes(dimensions) > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(recordBytes(dimensions)).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(segment.channel, record, offset) || !checksumMatches(record)) {
+                break;
+            }
+            String key = HexFormat.of().formatHex(record.array(), 0, KEY_BYTES);
+            Location previous = this.locations.put(key, new Location(segment, offset, dimensions));
+            if (previous != null) {
+                previous.segment.deadBytes += recordBytes(previous.dimensions);
+            }
+            offset += record.capacity();
+        }
+        if (offset < size) {
+            LOGGER.warn("Embedding cache segment {} has a damaged record at offset {}", segment.path, offset);
+            if (last) {
+                segment.channel.truncate(offset);
+            }
+        }
+        segment.size = offset;
+    }
+
+    private float[] readFromDisk(String key) {
+        diskLock.readLock().lock();
+        try {
+            Location location = this.diskEnabled ? this.locations.get(key) : null;
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(recordBytes(location.dimensions)).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(location.segment.channel, record, location.offset) || !checksumMatches(record)) {
+                LOGGER.warn("Cached section embedding at {}:{} is damaged", location.segment.path, location.offset);
+                return null;
+            }
+            location.referenced = true;
+            float[] vector = new float[location.dimensions];
+            record.position(HEADER_BYTES);
+            record.asFloatBuffer().get(vector);
+            return vector;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read cached section embedding {}", key, e);
+            return null;
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        diskLock.writeLock().lock();
+        try {
+            if (!this.diskEnabled || this.locations.containsKey(key)) {
+                return;
+            }
+            ByteBuffer record = ByteBuffer.allocate(recordBytes(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+            record.put(HexFormat.of().parseHex(key)).putInt(vector.length);
+            record.asFloatBuffer().put(vector);
+            record.position(HEADER_BYTES + Float.BYTES * vector.length);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, record.position());
+            record.putInt((int) crc.getValue());
+            append(key, record.flip(), vector.length);
+            compactIfNeeded();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write cached section embedding {}", key, e);
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    private void append(String key, ByteBuffer record, int dimensions) throws IOException {
+        if (this.active.size > 0 && this.active.size + record.remaining() > this.segmentBytes) {
+            this.active = newSegment();
+        }
+        long offset = this.active.size;
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            this.active.channel.write(record, offset + record.position());
+        }
+        this.active.size += length;
+        this.diskBytes.addAndGet(length);
+        Location previous = this.locations.put(key, new Location(this.active, offset, dimensions));
+        if (previous != null) {
+            previous.segment.deadBytes += recordBytes(previous.dimensions);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        // Every pass removes one sealed segment, so the loop is bounded by their number.
+        for (int passes = this.segments.size() - 1; passes > 0; passes--) {
+            boolean overBudget = this.diskBytes.get() > this.diskMaxBytes;
+            Segment victim = overBudget ? this.segments.firstEntry().getValue() : mostlyDeadSegment();
+            if (victim == null || victim == this.active) {
+                return;
+            }
+            compact(victim, overBudget);
+        }
+    }
+
+    private Segment mostlyDeadSegment() {
+        return this.segments.values().stream()
+                .filter(segment -> segment != this.active && segment.deadBytes * 2 > segment.size)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void compact(Segment victim, boolean dropCold) throws IOException {
+        int kept = 0;
+        int dropped = 0;
+        Iterator<Map.Entry<String, Location>> iterator = this.locations.entrySet().iterator();
+        Map<String, Location> moved = new HashMap<>();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Location> entry = iterator.next();
+            Location location = entry.getValue();
+            if (location.segment != victim) {
+                continue;
+            }
+            iterator.remove();
+            if (dropCold && !location.referenced) {
+                dropped++;
+                continue;
+            }
+            moved.put(entry.getKey(), location);
+        }
+        for (Map.Entry<String, Location> entry : moved.entrySet()) {
+            ByteBuffer record = ByteBuffer.allocate(recordBytes(entry.getValue().dimensions));
+            if (readFully(victim.channel, record, entry.getValue().offset)) {
+                append(entry.getKey(), record.flip(), entry.getValue().dimensions);
+                kept++;
+            }
+        }
+        this.segments.remove(victim.id);
+        victim.channel.close();
+        Files.deleteIfExists(victim.path);
+        this.diskBytes.addAndGet(-victim.size);
+        LOGGER.info("Compacted embedding cache segment {}: kept {} entries, dropped {}", victim.path.getFileName(), kept, dropped);
+    }
+
+    private Segment newSegment() throws IOException {
+        long id = this.segments.isEmpty() ? 0 : this.segments.lastKey() + 1;
+        Segment segment = new Segment(id, this.directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        this.segments.put(id, segment);
+        return segment;
+    }
+
+    private static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int recordBytes(int dimensions) {
+        return HEADER_BYTES + Float.BYTES * dimensions + Integer.BYTES;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checksumMatches(ByteBuffer record) {
+        int end = record.capacity() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, end);
+        return (int) crc.getValue() == record.getInt(end);
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        long deadBytes;
+
+        Segment(long id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int dimensions;
+        // Set when the record is read, so compaction over budget keeps it; cleared when it is moved.
+        volatile boolean referenced;
+
+        Location(Segment segment, long offset, int dimensions) {
+            this.segment = segment;
+            this.offset = offset;
+            this.dimensions = dimensions;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.qassistant.context.entities.Context;
 import com.qassistant.context.configs.AiGptConfig;
 import com.qassistant.context.configs.ContextConfig;
 import com.qassistant.context.entities.SystemMessageContext;
+import com.qassistant.context.services.ApiGovernor;
+import com.qassistant.context.services.EmbeddingBatchPacker;
 import com.qassistant.context.utils.TextUtils;
 import org.springframework.ai.chat.ChatResponse;
 import org.springframework.ai.chat.Generation;
@@ -35,12 +37,15 @@ public class GptChatContextService implements ChatContextService<Message> {
     private final AiGptConfig gptConfig;
     private final DbService dbService;
     private final ContextConfig contextConfig;
+    private final ApiGovernor apiGovernor;
 
-    public GptChatContextService(OpenAiChatClient chatClient, AiGptConfig gptConfig, DbService dbService, ContextConfig contextConfig){
+    public GptChatContextService(OpenAiChatClient chatClient, AiGptConfig gptConfig, DbService dbService, ContextConfig contextConfig,
+                                 ApiGovernor apiGovernor){
         this.chatClient = chatClient;
         this.gptConfig = gptConfig;
         this.dbService = dbService;
         this.contextConfig = contextConfig;
+        this.apiGovernor = apiGovernor;
     }
 
     @Override
@@ -105,7 +110,7 @@ public class GptChatContextService implements ChatContextService<Message> {
         String continuePrompt = containsCyrillic ? "продолжай пожалуйста" : "continue please";
 
         do {
-            ChatResponse response = chatClient.call(new Prompt(messages));
+            ChatResponse response = callChat(messages);
             Generation result = response.getResult();
             AssistantMessage output = result.getOutput();
             finishReason = result.getMetadata().getFinishReason();
@@ -120,6 +125,18 @@ public class GptChatContextService implements ChatContextService<Message> {
         return completion.toString().trim();
     }
 
+    /**
+     * Calls the chat model as interactive traffic of the {@link ApiGovernor}, charging the prompt
+     * and the longest possible completion against the token limit.
+     */
+    private ChatResponse callChat(List<Message> messages) {
+        int tokens = messages.stream()
+                .mapToInt(message -> message.getContent() != null ? EmbeddingBatchPacker.estimateTokens(message.getContent()) : 0)
+                .sum() + gptConfig.getMaxTokens();
+        Prompt prompt = new Prompt(messages);
+        return apiGovernor.execute(ApiGovernor.Priority.INTERACTIVE, tokens, () -> chatClient.call(prompt));
+    }
+
     private String summarizeIfExceedsMaxLength(List<Message> messages, boolean containsCyrillic) {
         int totalLength = messages.stream()
                 .mapToInt(message -> message.getContent() != null ? message.getContent().length() : 0)
@@ -138,7 +155,7 @@ public class GptChatContextService implements ChatContextService<Message> {
             messages.add(new UserMessage(summaryPrompt));
 
             // Call the chat service to generate a summary
-            ChatResponse chatResponse = chatClient.call(new Prompt(messages));
+            ChatResponse chatResponse = callChat(messages);
             AssistantMessage summaryMessage = chatResponse.getResult().getOutput();
 
             // Clear the existing messages and add the context and the summary
@@ -1,7 +1,12 @@
 package com.qassistant.context.services.context.systemMessage;
 
+import com.qassistant.context.entities.ContextFilter;
 import com.qassistant.context.entities.SystemMessageContext;
 
 public interface ContextFormater {
-    SystemMessageContext formatContextToSystemMessage(String project, String formatString, String prompt);
+    default SystemMessageContext formatContextToSystemMessage(String project, String formatString, String prompt) {
+        return formatContextToSystemMessage(project, formatString, prompt, ContextFilter.NONE);
+    }
+
+    SystemMessageContext formatContextToSystemMessage(String project, String formatString, String prompt, ContextFilter filter);
 }
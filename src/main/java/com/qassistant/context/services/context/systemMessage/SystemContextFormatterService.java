@@ -3,6 +3,7 @@ package com.qassistant.context.services.context.systemMessage;
 import com.qassistant.context.configs.ContextConfig;
 import com.qassistant.context.db.service.DbService;
 import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
 import com.qassistant.context.entities.SystemMessageContext;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.stereotype.Service;
@@ -22,8 +23,8 @@ public class SystemContextFormatterService implements ContextFormater{
     }
 
     @Override
-    public SystemMessageContext formatContextToSystemMessage(String project, String formatString, String prompt) {
-        List<Context> contexts = dbService.findContext(project, prompt, contextConfig.getContextEntries());
+    public SystemMessageContext formatContextToSystemMessage(String project, String formatString, String prompt, ContextFilter filter) {
+        List<Context> contexts = dbService.findContext(project, prompt, contextConfig.getContextEntries(), filter);
         if (contexts.isEmpty()) {
             throw new RuntimeException("Context is empty");
         } else {
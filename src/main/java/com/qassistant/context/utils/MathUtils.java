@@ -1,5 +1,7 @@
 package com.qassistant.context.utils;
 
+import com.qassistant.context.utils.kernels.VectorKernelsFactory;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MathUtils {
@@ -11,28 +13,61 @@ public class MathUtils {
      * @return the cosine similarity between the two lists
      */
     public static double cosineSimilarity(List<Double> values1, List<Double> values2) {
-        double[] array1 = values1.stream().mapToDouble(Double::doubleValue).toArray();
-        double[] array2 = values2.stream().mapToDouble(Double::doubleValue).toArray();
-        return cosineSimilarity(array1, array2);
+        return cosineSimilarity(toFloatArray(values1), toFloatArray(values2));
     }
 
     /**
-     * Helper method to calculate cosine similarity between two double arrays.
-     * @param array1 First array of doubles
-     * @param array2 Second array of doubles
-     * @return the cosine similarity between the two arrays
+     * Calculates the cosine similarity between two float vectors without boxing.
+     * For vectors normalized at ingest prefer a plain dot product, see {@link #normalize(float[])}.
+     * @param values1 First vector
+     * @param values2 Second vector
+     * @return the cosine similarity between the two vectors
      */
-    private static double cosineSimilarity(double[] array1, double[] array2) {
-        double dotProduct = 0.0;
-        double normArray1 = 0.0;
-        double normArray2 = 0.0;
-        for (int i = 0; i < array1.length; i++) {
-            dotProduct += array1[i] * array2[i];
-            normArray1 += array1[i] * array1[i];
-            normArray2 += array2[i] * array2[i];
+    public static double cosineSimilarity(float[] values1, float[] values2) {
+        return VectorKernelsFactory.getInstance().cosine(values1, values2);
+    }
+
+    /**
+     * Scales a vector in place to unit length, so that cosine similarity against it is a dot product.
+     * @param values the vector, zero vectors are left untouched
+     * @return the same array
+     */
+    public static float[] normalize(float[] values) {
+        if (values != null) {
+            VectorKernelsFactory.getInstance().normalize(values, 0, values.length);
+        }
+        return values;
+    }
+
+    /**
+     * Converts an embedding returned by the embedding client into a primitive float vector.
+     * @param values the embedding values
+     * @return the same values as a float array, or null if the input is null
+     */
+    public static float[] toFloatArray(List<Double> values) {
+        if (values == null) {
+            return null;
+        }
+        float[] result = new float[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).floatValue();
+        }
+        return result;
+    }
+
+    /**
+     * Converts a primitive float vector back into the list form used by Spring AI documents.
+     * @param values the vector
+     * @return the same values as a list of doubles, or null if the input is null
+     */
+    public static List<Double> toDoubleList(float[] values) {
+        if (values == null) {
+            return null;
+        }
+        List<Double> result = new ArrayList<>(values.length);
+        for (float value : values) {
+            result.add((double) value);
         }
-        normArray1 = Math.sqrt(normArray1);
-        normArray2 = Math.sqrt(normArray2);
-        return dotProduct / (normArray1 * normArray2);
+        return result;
     }
 }
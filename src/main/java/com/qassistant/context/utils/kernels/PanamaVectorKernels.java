@@ -0,0 +1,91 @@
+package com.qassistant.context.utils.kernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the JDK Vector API, using the widest float vector the CPU supports.
+ * <p>
+ * Only loaded by {@link VectorKernelsFactory} when the {@code jdk.incubator.vector} module is
+ * present at runtime; referencing this class otherwise fails with {@link NoClassDefFoundError}.
+ */
+final class PanamaVectorKernels implements VectorKernels {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // int8 lanes are widened to int before multiplying, so a byte vector feeds one int vector of the same lane count.
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Below 256 bits the byte vector would be narrower than any hardware shape; the scalar loop is faster there.
+    private static final boolean INT8_VECTORIZED = INTS.vectorBitSize() >= 256;
+    private static final VectorSpecies<Byte> BYTES = INT8_VECTORIZED
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE)) : null;
+
+    private final ScalarVectorKernels tail = new ScalarVectorKernels();
+
+    @Override
+    public String getName() {
+        return "panama-" + FLOATS.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        return i < length ? result + tail.dot(a, aOffset + i, b, bOffset + i, length - i) : result;
+    }
+
+    @Override
+    public float dot(float[] a, ByteBuffer b, int bByteOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, i);
+            FloatVector vb = FloatVector.fromByteBuffer(FLOATS, b, bByteOffset + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        ByteBuffer ordered = b.order() == ByteOrder.LITTLE_ENDIAN ? b : b.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (; i < length; i++) {
+            result += a[i] * ordered.getFloat(bByteOffset + i * Float.BYTES);
+        }
+        return result;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (!INT8_VECTORIZED) {
+            return tail.dot(a, aOffset, b, bOffset, length);
+        }
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = BYTES.loopBound(length); i < bound; i += BYTES.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTES, a, aOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTES, b, bOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            sum = sum.add(va.mul(vb));
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        return i < length ? result + tail.dot(a, aOffset + i, b, bOffset + i, length - i) : result;
+    }
+
+    @Override
+    public float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector diff = FloatVector.fromArray(FLOATS, a, aOffset + i).sub(FloatVector.fromArray(FLOATS, b, bOffset + i));
+            sum = diff.fma(diff, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        return i < length ? result + tail.squaredL2(a, aOffset + i, b, bOffset + i, length - i) : result;
+    }
+}
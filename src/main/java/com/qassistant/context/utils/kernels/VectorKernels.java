@@ -0,0 +1,78 @@
+package com.qassistant.context.utils.kernels;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Distance kernels used on the retrieval hot path.
+ * <p>
+ * Vectors are addressed as a slice of a larger block ({@code offset}, {@code length}) so that
+ * packed per-project matrices can be scored without copying rows. Off-heap blocks are
+ * little-endian float32 {@link ByteBuffer}s addressed in bytes, the layout written by
+ * {@link com.qassistant.context.db.converters.FloatArrayConverter}.
+ * Use {@link VectorKernelsFactory#getInstance()} to obtain the implementation selected for this JVM.
+ */
+public interface VectorKernels {
+
+    /**
+     * @return a short name of the implementation, reported in logs
+     */
+    public String getName();
+
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    public default float dot(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of a heap vector with a float32 row stored in a buffer.
+     *
+     * @param a the heap vector
+     * @param b the buffer holding little-endian float32 values
+     * @param bByteOffset the byte position of the first component of the row
+     * @param length the number of components
+     */
+    public float dot(float[] a, ByteBuffer b, int bByteOffset, int length);
+
+    /**
+     * Dot product of two int8-quantized vectors, accumulated exactly in an int.
+     */
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    public float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    public default float squaredL2(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return squaredL2(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Cosine similarity of two vectors of arbitrary length. When both vectors are known to be
+     * normalized, {@link #dot(float[], float[])} gives the same result for a third of the work.
+     */
+    public default float cosine(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        float norms = dot(a, 0, a, 0, a.length) * dot(b, 0, b, 0, b.length);
+        return norms == 0.0f ? 0.0f : (float) (dot(a, 0, b, 0, a.length) / Math.sqrt(norms));
+    }
+
+    /**
+     * Scales a slice of a vector block in place to unit length. Zero vectors are left untouched.
+     */
+    public default void normalize(float[] vectors, int offset, int length) {
+        float norm = dot(vectors, offset, vectors, offset, length);
+        if (norm > 0.0f) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = offset; i < offset + length; i++) {
+                vectors[i] *= scale;
+            }
+        }
+    }
+
+    private static void checkLength(int aLength, int bLength) {
+        if (aLength != bLength) {
+            throw new IllegalArgumentException("Vector lengths differ: " + aLength + " and " + bLength);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.qassistant.context.utils.kernels;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the kernel implementation once per JVM.
+ * <p>
+ * The Vector API kernels are used when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, otherwise the scalar ones. Setting the system
+ * property {@value #IMPLEMENTATION_PROPERTY} to {@code scalar} forces the fallback.
+ */
+public final class VectorKernelsFactory {
+    public static final String IMPLEMENTATION_PROPERTY = "qassistant.vector.kernels";
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorKernelsFactory.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final VectorKernels INSTANCE = create();
+
+    private VectorKernelsFactory() {
+    }
+
+    public static VectorKernels getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the portable implementation, regardless of what the JVM supports
+     */
+    public static VectorKernels scalar() {
+        return new ScalarVectorKernels();
+    }
+
+    private static VectorKernels create() {
+        VectorKernels kernels = scalar();
+        if (!"scalar".equalsIgnoreCase(System.getProperty(IMPLEMENTATION_PROPERTY))
+                && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Loaded reflectively so this class never links against the incubator module when it is absent.
+                kernels = (VectorKernels) Class.forName(VectorKernelsFactory.class.getPackageName() + ".PanamaVectorKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOGGER.warn("Vector API kernels are unavailable, falling back to scalar kernels", e);
+            }
+        }
+        LOGGER.info("Using {} vector kernels", kernels.getName());
+        return kernels;
+    }
+}
@@ -0,0 +1,31 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeTokenizerTest {
+
+    @Test
+    void splitsCamelAndSnakeCaseAndKeepsWholeIdentifiers() {
+        assertEquals(List.of("get", "user", "name", "getusername"), CodeTokenizer.tokenize("getUserName"));
+        assertEquals(List.of("http", "server", "httpserver"), CodeTokenizer.tokenize("HTTPServer"));
+        assertEquals(List.of("max", "pool", "size", "max_pool_size"), CodeTokenizer.tokenize("max_pool_size"));
+        assertEquals(List.of("err", "4012", "err4012", "spring"), CodeTokenizer.tokenize("ERR4012: spring"));
+    }
+
+    @Test
+    void dropsSingleLettersButKeepsNumbers() {
+        assertEquals(List.of("7", "1"), CodeTokenizer.tokenize("a b 7 x1"));
+        assertEquals(List.of("value"), CodeTokenizer.tokenize("(Value)"));
+    }
+
+    @Test
+    void nullOrBlankTextHasNoTerms() {
+        assertTrue(CodeTokenizer.tokenize(null).isEmpty());
+        assertTrue(CodeTokenizer.tokenize("  -- ").isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.entities.ContextFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSectionMapTest {
+
+    @Test
+    void resolvesFilterToSectionsOfMatchingFiles() {
+        FileSectionMap map = new FileSectionMap();
+        map.add("a1", "src/main/App.java");
+        map.add("a2", "src/main/App.java");
+        map.add("b1", "src/test/AppTest.java");
+        map.add("c1", "config/application.yaml");
+
+        assertEquals(Set.of("a1", "a2"), map.sectionIds(ContextFilter.parse("src/main/**")::matches));
+        assertEquals(Set.of("a1", "a2", "c1"), map.sectionIds(ContextFilter.parse("src/main/**,*.yaml")::matches));
+        assertTrue(map.sectionIds(ContextFilter.parse("*.md")::matches).isEmpty());
+    }
+
+    @Test
+    void removedAndMovedSectionsAreTrackedUnderTheirCurrentPath() {
+        FileSectionMap map = new FileSectionMap();
+        map.add("a", "one.java");
+        map.add("b", "one.java");
+        map.add("b", "two.java");
+        long bytes = map.estimatedBytes();
+
+        assertTrue(map.remove("a"));
+        assertFalse(map.remove("a"));
+
+        assertEquals(1, map.size());
+        assertTrue(map.sectionIds(path -> path.equals("one.java")).isEmpty());
+        assertEquals(Set.of("b"), map.sectionIds(path -> path.equals("two.java")));
+        assertTrue(map.estimatedBytes() < bytes);
+    }
+}
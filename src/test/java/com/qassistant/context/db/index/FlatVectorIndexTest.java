@@ -0,0 +1,115 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.qassistant.context.utils.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlatVectorIndexTest {
+
+    @Test
+    void searchReturnsClosestSectionsFirst() {
+        FlatVectorIndex index = new FlatVectorIndex();
+        index.add("x", new float[]{1, 0, 0}, 0);
+        index.add("y", new float[]{0, 2, 0}, 0);
+        index.add("xy", new float[]{1, 1, 0}, 0);
+
+        List<IndexHit> hits = index.search(new float[]{3, 0.5f, 0}, 2);
+
+        assertEquals(2, hits.size());
+        assertEquals("x", hits.get(0).getId());
+        assertEquals("xy", hits.get(1).getId());
+        assertTrue(hits.get(0).getDistance() <= hits.get(1).getDistance());
+    }
+
+    @Test
+    void weightIsSubtractedFromDistance() {
+        FlatVectorIndex index = new FlatVectorIndex();
+        index.add("close", new float[]{1, 0}, 0);
+        index.add("boosted", new float[]{0, 1}, 1.5);
+
+        List<IndexHit> hits = index.search(new float[]{1, 0}, 2);
+
+        assertEquals("boosted", hits.get(0).getId());
+        assertEquals(1.0 - 0.0 - 1.5, hits.get(0).getDistance(), 1e-6);
+        assertEquals(0.0, hits.get(1).getDistance(), 1e-6);
+    }
+
+    @Test
+    void removedSectionIsNoLongerReturned() {
+        FlatVectorIndex index = new FlatVectorIndex();
+        index.add("a", new float[]{1, 0}, 0);
+        index.add("b", new float[]{0, 1}, 0);
+        index.add("c", new float[]{1, 1}, 0);
+
+        assertTrue(index.remove("a"));
+        List<IndexHit> hits = index.search(new float[]{1, 0}, 3);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("c", "b"), hits.stream().map(IndexHit::getId).toList());
+    }
+
+    @Test
+    void searchMatchesBruteForceCosine() {
+        Random random = new Random(42);
+        int dimension = 64;
+        FlatVectorIndex index = new FlatVectorIndex();
+        float[][] vectors = new float[500][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, dimension);
+            index.add(String.valueOf(i), vectors[i], 0);
+        }
+        float[] query = randomVector(random, dimension);
+
+        List<IndexHit> hits = index.search(query, 10);
+
+        int best = 0;
+        double bestSimilarity = -2;
+        for (int i = 0; i < vectors.length; i++) {
+            double similarity = cosine(query, vectors[i]);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = i;
+            }
+        }
+        assertEquals(String.valueOf(best), hits.get(0).getId());
+        assertEquals(1.0 - bestSimilarity, hits.get(0).getDistance(), 1e-5);
+    }
+
+    @Test
+    void batchSearchMatchesSearchPerQuery() {
+        Random random = new Random(3);
+        int dimension = 48;
+        FlatVectorIndex index = new FlatVectorIndex(new ParallelScanner(500, 4096));
+        for (int i = 0; i < 3000; i++) {
+            index.add(String.valueOf(i), randomVector(random, dimension), i % 5 == 0 ? 0.1 : 0);
+        }
+        float[][] queries = new float[20][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomVector(random, dimension);
+        }
+
+        List<List<IndexHit>> batch = index.searchBatch(queries, 5);
+
+        assertEquals(queries.length, batch.size());
+        for (int i = 0; i < queries.length; i++) {
+            List<IndexHit> expected = index.search(queries[i], 5);
+            assertEquals(expected.stream().map(IndexHit::getId).toList(), batch.get(i).stream().map(IndexHit::getId).toList());
+            assertEquals(expected.get(0).getDistance(), batch.get(i).get(0).getDistance(), 1e-6);
+        }
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
@@ -0,0 +1,111 @@
+package com.qassistant.context.db.index;
+
+import com.qassistant.context.entities.RecallReport;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.qassistant.context.utils.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswVectorIndexTest {
+
+    @Test
+    void recallIsCloseToExactSearch() {
+        Random random = new Random(7);
+        HnswVectorIndex index = new HnswVectorIndex(16, 200, 64);
+        for (int i = 0; i < 2000; i++) {
+            index.add(String.valueOf(i), randomVector(random, 32), 0);
+        }
+
+        RecallReport report = RecallEvaluator.evaluate("test", index, 10, 50, 1L);
+
+        assertTrue(report.getRecall() >= 0.9, "recall was " + report.getRecall());
+    }
+
+    @Test
+    void removedSectionsAreNotReturnedAndManyTombstonesRequestARebuild() {
+        Random random = new Random(11);
+        HnswVectorIndex index = new HnswVectorIndex(8, 100, 32);
+        float[][] vectors = new float[400][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, 16);
+            index.add(String.valueOf(i), vectors[i], 0);
+        }
+
+        assertTrue(index.remove("0"));
+        assertFalse(index.remove("0"));
+        assertEquals(399, index.size());
+        assertFalse(ids(index.search(vectors[0], 10)).contains("0"));
+        assertFalse(index.needsRebuild());
+
+        // Once tombstones outnumber live sections the owner should rebuild, until then they are only skipped.
+        for (int i = 1; i < 300; i++) {
+            index.remove(String.valueOf(i));
+        }
+        assertEquals(100, index.size());
+        assertTrue(index.needsRebuild());
+        for (int i = 300; i < vectors.length; i += 10) {
+            List<String> hits = ids(index.search(vectors[i], 10));
+            assertEquals(String.valueOf(i), hits.get(0));
+            assertTrue(hits.stream().allMatch(id -> Integer.parseInt(id) >= 300), hits.toString());
+        }
+    }
+
+    @Test
+    void addingAnExistingSectionReplacesIt() {
+        HnswVectorIndex index = new HnswVectorIndex(4, 16, 16);
+        index.add("a", new float[]{1, 0}, 0);
+        index.add("b", new float[]{0, 1}, 0);
+        index.add("a", new float[]{0, 1}, 0.5);
+
+        List<IndexHit> hits = index.search(new float[]{0, 1}, 5);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("a", "b"), ids(hits));
+        assertEquals(0.5, hits.get(0).getWeight(), 1e-9);
+    }
+
+    @Test
+    void weightedSectionOutsideTheUnweightedCandidatesIsFound() {
+        Random random = new Random(5);
+        HnswVectorIndex index = new HnswVectorIndex(8, 100, 64);
+        float[] query = randomVector(random, 16);
+        for (int i = 0; i < 500; i++) {
+            index.add(String.valueOf(i), randomVector(random, 16), 0);
+        }
+        float[] opposite = new float[query.length];
+        for (int i = 0; i < query.length; i++) {
+            opposite[i] = -query[i];
+        }
+        index.add("boosted", opposite, 3.0);
+
+        List<IndexHit> hits = index.search(query, 3);
+
+        assertEquals("boosted", hits.get(0).getId());
+        assertEquals(ids(index.exactSearch(query, 3)), ids(hits));
+    }
+
+    @Test
+    void filteredSearchOnlyScoresTheGivenLiveSections() {
+        HnswVectorIndex index = new HnswVectorIndex(4, 16, 16);
+        index.add("x", new float[]{1, 0, 0}, 0);
+        index.add("y", new float[]{0, 1, 0}, 0);
+        index.add("z", new float[]{0, 0, 1}, 0.1);
+        index.add("xy", new float[]{1, 1, 0}, 0);
+        index.remove("y");
+
+        List<IndexHit> hits = index.search(new float[]{1, 0, 0}, 5, List.of("y", "z", "xy", "unknown"));
+
+        assertEquals(List.of("xy", "z"), ids(hits));
+        assertEquals(1.0 - 0.0 - 0.1, hits.get(1).getDistance(), 1e-6);
+        assertTrue(index.search(new float[]{1, 0, 0}, 5, List.of("y")).isEmpty());
+    }
+
+    private static List<String> ids(List<IndexHit> hits) {
+        return hits.stream().map(IndexHit::getId).toList();
+    }
+}
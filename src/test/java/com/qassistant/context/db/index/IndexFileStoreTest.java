@@ -0,0 +1,97 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static com.qassistant.context.utils.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexFileStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedIndexReturnsSameHitsAsWrittenIndex() {
+        Random random = new Random(4);
+        FlatVectorIndex index = new FlatVectorIndex();
+        for (int i = 0; i < 300; i++) {
+            index.add("section-" + i, randomVector(random, 24), i % 7 == 0 ? 0.1 : 0);
+        }
+        IndexFileStore store = new IndexFileStore(directory);
+        store.write("project", "fingerprint", index);
+
+        MappedVectorIndex mapped = store.open("project", "fingerprint").orElseThrow();
+        float[] query = randomVector(random, 24);
+        List<IndexHit> expected = index.search(query, 10);
+        List<IndexHit> actual = mapped.search(query, 10);
+
+        assertEquals(300, mapped.size());
+        assertEquals(expected.stream().map(IndexHit::getId).toList(), actual.stream().map(IndexHit::getId).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDistance(), actual.get(i).getDistance(), 1e-6);
+        }
+    }
+
+    @Test
+    void staleFileIsIgnored() {
+        FlatVectorIndex index = new FlatVectorIndex();
+        index.add("a", new float[]{1, 0}, 0);
+        IndexFileStore store = new IndexFileStore(directory);
+        store.write("project", "old", index);
+
+        assertFalse(store.open("project", "new").isPresent());
+        assertFalse(store.open("other", "old").isPresent());
+    }
+
+    @Test
+    void changesAfterOpeningAreOverlaid() {
+        FlatVectorIndex index = new FlatVectorIndex();
+        index.add("a", new float[]{1, 0}, 0);
+        index.add("b", new float[]{0, 1}, 0);
+        IndexFileStore store = new IndexFileStore(directory);
+        store.write("project", "fingerprint", index);
+        MappedVectorIndex mapped = store.open("project", "fingerprint").orElseThrow();
+
+        assertTrue(mapped.remove("a"));
+        mapped.add("b", new float[]{1, 0.1f}, 0);
+        mapped.add("c", new float[]{-1, 0}, 0);
+
+        List<IndexHit> hits = mapped.search(new float[]{1, 0}, 3);
+        assertEquals(2, mapped.size());
+        assertEquals(List.of("b", "c"), hits.stream().map(IndexHit::getId).toList());
+    }
+
+    @Test
+    void mappedBatchSearchMatchesSearchPerQuery() {
+        Random random = new Random(6);
+        FlatVectorIndex index = new FlatVectorIndex();
+        for (int i = 0; i < 2000; i++) {
+            index.add("section-" + i, randomVector(random, 32), i % 5 == 0 ? 0.05 : 0);
+        }
+        IndexFileStore store = new IndexFileStore(directory, new ParallelScanner(500, 16 * 1024));
+        store.write("project", "fingerprint", index);
+        MappedVectorIndex mapped = store.open("project", "fingerprint").orElseThrow();
+        mapped.remove("section-3");
+        mapped.add("added", randomVector(random, 32), 0.2);
+        float[][] queries = new float[12][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomVector(random, 32);
+        }
+
+        List<List<IndexHit>> batch = mapped.searchBatch(queries, 5);
+
+        assertEquals(queries.length, batch.size());
+        for (int i = 0; i < queries.length; i++) {
+            List<IndexHit> expected = mapped.search(queries[i], 5);
+            assertEquals(expected.stream().map(IndexHit::getId).toList(), batch.get(i).stream().map(IndexHit::getId).toList());
+            assertEquals(expected.get(0).getDistance(), batch.get(i).get(0).getDistance(), 1e-6);
+        }
+    }
+}
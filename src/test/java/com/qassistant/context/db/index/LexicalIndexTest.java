@@ -0,0 +1,39 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexicalIndexTest {
+
+    @Test
+    void ranksSectionsContainingExactIdentifierFirst() {
+        LexicalIndex index = new LexicalIndex();
+        index.add("a", "The service retries requests and logs failures.");
+        index.add("b", "PaymentGatewayTimeoutException is thrown when the gateway does not answer.");
+        index.add("c", "Configure the payment gateway url in application.yml.");
+        index.add("d", "Unrelated text about users.");
+
+        List<IndexHit> hits = index.search("why do we get PaymentGatewayTimeoutException", 3);
+
+        assertEquals("b", hits.get(0).getId());
+        assertEquals("c", hits.get(1).getId());
+        assertTrue(hits.get(0).getDistance() < hits.get(1).getDistance());
+    }
+
+    @Test
+    void forgetsRemovedAndReplacedSections() {
+        LexicalIndex index = new LexicalIndex();
+        index.add("a", "alphaBeta");
+        index.add("b", "gammaDelta");
+        index.add("a", "epsilon");
+        index.remove("b");
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("alphaBeta gammaDelta", 5).isEmpty());
+        assertEquals("a", index.search("epsilon", 5).get(0).getId());
+    }
+}
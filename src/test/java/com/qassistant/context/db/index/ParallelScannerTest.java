@@ -0,0 +1,56 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelScannerTest {
+
+    @Test
+    void partitionedScanMatchesSequentialScan() {
+        Random random = new Random(11);
+        double[] distances = new double[50_000];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = i % 97 == 0 ? Double.NaN : random.nextDouble();
+        }
+        TopK sequential = new ParallelScanner(Integer.MAX_VALUE, 1).scan(distances.length, 4, 30, row -> distances[row]);
+        TopK parallel = new ParallelScanner(1000, 4 * 64).scan(distances.length, 4, 30, row -> distances[row]);
+
+        int[] expectedRows = new int[30];
+        double[] expectedDistances = new double[30];
+        int[] rows = new int[30];
+        double[] actualDistances = new double[30];
+        assertEquals(30, sequential.drainSorted(expectedRows, expectedDistances));
+        assertEquals(30, parallel.drainSorted(rows, actualDistances));
+        for (int i = 0; i < 30; i++) {
+            assertEquals(expectedDistances[i], actualDistances[i]);
+            assertEquals(expectedRows[i], rows[i]);
+        }
+    }
+
+    @Test
+    void flatIndexReturnsSameHitsAboveThreshold() {
+        Random random = new Random(5);
+        FlatVectorIndex sequential = new FlatVectorIndex(new ParallelScanner(Integer.MAX_VALUE, 1));
+        FlatVectorIndex parallel = new FlatVectorIndex(new ParallelScanner(100, 1024));
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = new float[16];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            sequential.add("s" + i, vector, 0.0);
+            parallel.add("s" + i, vector, 0.0);
+        }
+        float[] query = new float[16];
+        for (int d = 0; d < query.length; d++) {
+            query[d] = (float) random.nextGaussian();
+        }
+
+        List<IndexHit> expected = sequential.search(query, 10);
+        List<IndexHit> actual = parallel.search(query, 10);
+        assertEquals(expected, actual);
+    }
+}
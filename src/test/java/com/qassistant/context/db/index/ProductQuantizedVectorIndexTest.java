@@ -0,0 +1,102 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductQuantizedVectorIndexTest {
+
+    @Test
+    void rerankedSearchFindsExactNeighbours() {
+        Random random = new Random(13);
+        Map<String, float[]> stored = new HashMap<>();
+        ProductQuantizedVectorIndex index = new ProductQuantizedVectorIndex(8, 1000, 8, 10, 1.5, ids -> {
+            Map<String, float[]> loaded = new HashMap<>();
+            ids.forEach(id -> loaded.put(id, stored.get(id)));
+            return loaded;
+        }, new Random(1));
+        FlatVectorIndex reference = new FlatVectorIndex();
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = clusteredVector(random, 32, i % 20);
+            stored.put(String.valueOf(i), vector);
+            index.add(String.valueOf(i), vector, 0);
+            reference.add(String.valueOf(i), vector, 0);
+        }
+        assertTrue(index.isTrained());
+
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = clusteredVector(random, 32, q);
+            Set<String> expected = new HashSet<>();
+            reference.search(query, 10).forEach(hit -> expected.add(hit.getId()));
+            List<IndexHit> actual = index.search(query, 10);
+            found += (int) actual.stream().filter(hit -> expected.contains(hit.getId())).count();
+        }
+        assertTrue(found >= 180, "found " + found + " of 200");
+    }
+
+    @Test
+    void exactSearchUsesFullVectorsFromTheSource() {
+        Random random = new Random(19);
+        Map<String, float[]> stored = new HashMap<>();
+        ProductQuantizedVectorIndex index = new ProductQuantizedVectorIndex(4, 200, 5, 4, 1.5, ids -> {
+            Map<String, float[]> loaded = new HashMap<>();
+            ids.forEach(id -> loaded.put(id, stored.get(id)));
+            return loaded;
+        }, new Random(1));
+        FlatVectorIndex reference = new FlatVectorIndex();
+        for (int i = 0; i < 400; i++) {
+            float[] vector = clusteredVector(random, 16, i % 10);
+            stored.put(String.valueOf(i), vector);
+            index.add(String.valueOf(i), vector, 0);
+            reference.add(String.valueOf(i), vector, 0);
+        }
+        float[] query = clusteredVector(random, 16, 3);
+
+        List<IndexHit> expected = reference.search(query, 10);
+        List<IndexHit> actual = index.exactSearch(query, 10);
+
+        assertEquals(expected.stream().map(IndexHit::getId).toList(), actual.stream().map(IndexHit::getId).toList());
+        assertEquals(expected.get(0).getDistance(), actual.get(0).getDistance(), 1e-5);
+    }
+
+    @Test
+    void shiftedDataRequestsRebuild() {
+        Random random = new Random(17);
+        ProductQuantizedVectorIndex index = new ProductQuantizedVectorIndex(4, 500, 5, 4, 1.5, null, new Random(1));
+        for (int i = 0; i < 500; i++) {
+            index.add("a" + i, clusteredVector(random, 16, i % 5), 0);
+        }
+        for (int i = 0; i < 100; i++) {
+            index.add("b" + i, clusteredVector(random, 16, i % 5), 0);
+        }
+        assertFalse(index.needsRebuild());
+
+        for (int i = 0; i < 200; i++) {
+            float[] vector = new float[16];
+            for (int d = 0; d < 16; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            index.add("c" + i, vector, 0);
+        }
+        assertTrue(index.needsRebuild());
+    }
+
+    private static float[] clusteredVector(Random random, int dimension, int cluster) {
+        Random centre = new Random(cluster);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (centre.nextGaussian() + 0.3 * random.nextGaussian());
+        }
+        return vector;
+    }
+}
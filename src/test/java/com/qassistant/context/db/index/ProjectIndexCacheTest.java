@@ -0,0 +1,183 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectIndexCacheTest {
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", Long.MAX_VALUE);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<VectorIndex>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("p", id -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return indexOf(10, 8);
+                })));
+            }
+            started.await();
+            Thread.sleep(100);
+            release.countDown();
+            VectorIndex first = results.get(0).get();
+            for (Future<VectorIndex> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedProjectsOverBudget() {
+        long projectBytes = indexOf(100, 8).estimatedBytes();
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", projectBytes * 2);
+        cache.get("a", id -> indexOf(100, 8));
+        cache.get("b", id -> indexOf(100, 8));
+        cache.get("a", id -> indexOf(100, 8));
+        cache.get("c", id -> indexOf(100, 8));
+
+        assertTrue(cache.getIfPresent("a").isPresent());
+        assertFalse(cache.getIfPresent("b").isPresent());
+        assertTrue(cache.getIfPresent("c").isPresent());
+        assertEquals(projectBytes * 2, cache.usedBytes());
+    }
+
+    @Test
+    void appliesDeltasToResidentIndex() {
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", Long.MAX_VALUE);
+        VectorIndex index = cache.get("p", id -> indexOf(10, 8));
+        long bytes = cache.usedBytes();
+
+        cache.update("p", delta -> delta.remove("s0"));
+
+        assertSame(index, cache.get("p", id -> indexOf(10, 8)));
+        assertEquals(9, index.size());
+        assertTrue(cache.usedBytes() < bytes);
+    }
+
+    @Test
+    void slowDeltaDoesNotBlockOtherProjects() throws Exception {
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", Long.MAX_VALUE);
+        cache.get("slow", id -> indexOf(10, 8));
+        VectorIndex other = cache.get("other", id -> indexOf(10, 8));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> update = executor.submit(() -> cache.update("slow", delta -> {
+                started.countDown();
+                await(release);
+                delta.remove("s0");
+            }));
+            started.await();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertSame(other, cache.getIfPresent("other").orElseThrow());
+                assertSame(other, cache.get("other", id -> indexOf(10, 8)));
+            });
+            release.countDown();
+            update.get();
+            assertEquals(9, cache.getIfPresent("slow").orElseThrow().size());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void indexNeedingARebuildAfterADeltaIsDropped() {
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", Long.MAX_VALUE);
+        HnswVectorIndex index = new HnswVectorIndex(4, 16, 16);
+        for (int i = 0; i < 4; i++) {
+            float[] vector = new float[4];
+            vector[i] = 1.0f;
+            index.add("s" + i, vector, 0.0);
+        }
+        cache.get("p", id -> index);
+
+        cache.update("p", delta -> delta.remove("s0"));
+        assertTrue(cache.getIfPresent("p").isPresent());
+        cache.update("p", delta -> List.of("s1", "s2").forEach(delta::remove));
+
+        assertFalse(cache.getIfPresent("p").isPresent());
+        assertEquals(0, cache.usedBytes());
+    }
+
+    @Test
+    void loadRunningDuringAChangeIsSharedButNotCached() throws Exception {
+        ProjectIndexCache<VectorIndex> cache = new ProjectIndexCache<>("vector", Long.MAX_VALUE);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<VectorIndex> stale = executor.submit(() -> cache.get("p", id -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return indexOf(10, 8);
+            }));
+            started.await();
+            Future<VectorIndex> joined = executor.submit(() -> cache.get("p", id -> {
+                loads.incrementAndGet();
+                return indexOf(10, 8);
+            }));
+            Thread.sleep(100);
+
+            cache.update("p", delta -> delta.remove("s0"));
+            VectorIndex fresh = cache.get("p", id -> {
+                loads.incrementAndGet();
+                return indexOf(9, 8);
+            });
+            release.countDown();
+
+            assertSame(stale.get(), joined.get());
+            assertEquals(2, loads.get());
+            assertSame(fresh, cache.getIfPresent("p").orElseThrow());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static FlatVectorIndex indexOf(int sections, int dimension) {
+        FlatVectorIndex index = new FlatVectorIndex();
+        for (int i = 0; i < sections; i++) {
+            float[] vector = new float[dimension];
+            vector[i % dimension] = 1.0f;
+            index.add("s" + i, vector, 0.0);
+        }
+        return index;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.qassistant.context.utils.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedVectorIndexTest {
+
+    @Test
+    void rerankedSearchMatchesExactScanWithExactDistances() {
+        Random random = new Random(21);
+        Map<String, float[]> stored = new HashMap<>();
+        QuantizedVectorIndex index = new QuantizedVectorIndex(QuantizationCalibration.PER_DIMENSION, 500, 4, false, ids -> {
+            Map<String, float[]> loaded = new HashMap<>();
+            ids.forEach(id -> loaded.put(id, stored.get(id)));
+            return loaded;
+        });
+        FlatVectorIndex reference = new FlatVectorIndex();
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = randomVector(random, 96);
+            stored.put(String.valueOf(i), vector);
+            index.add(String.valueOf(i), vector, 0);
+            reference.add(String.valueOf(i), vector, 0);
+        }
+        assertTrue(index.isTrained());
+
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, 96);
+            List<IndexHit> expected = reference.search(query, 10);
+            List<IndexHit> actual = index.search(query, 10);
+            Set<String> expectedIds = new HashSet<>();
+            expected.forEach(hit -> expectedIds.add(hit.getId()));
+            found += (int) actual.stream().filter(hit -> expectedIds.contains(hit.getId())).count();
+            // Returned distances are re-scored with full precision.
+            IndexHit first = actual.get(0);
+            reference.search(query, 3000).stream()
+                    .filter(hit -> hit.getId().equals(first.getId()))
+                    .forEach(hit -> assertEquals(hit.getDistance(), first.getDistance(), 1e-5));
+        }
+        assertTrue(found >= 190, "found " + found + " of 200");
+    }
+
+    @Test
+    void exactSearchUsesFullVectorsFromTheSource() {
+        Random random = new Random(8);
+        Map<String, float[]> stored = new HashMap<>();
+        QuantizedVectorIndex index = new QuantizedVectorIndex(QuantizationCalibration.GLOBAL, 50, 2, false, ids -> {
+            Map<String, float[]> loaded = new HashMap<>();
+            ids.forEach(id -> loaded.put(id, stored.get(id)));
+            return loaded;
+        });
+        FlatVectorIndex reference = new FlatVectorIndex();
+        for (int i = 0; i < 300; i++) {
+            float[] vector = randomVector(random, 32);
+            stored.put(String.valueOf(i), vector);
+            index.add(String.valueOf(i), vector, 0);
+            reference.add(String.valueOf(i), vector, 0);
+        }
+        float[] query = randomVector(random, 32);
+
+        List<IndexHit> expected = reference.search(query, 10);
+        List<IndexHit> actual = index.exactSearch(query, 10);
+
+        assertEquals(expected.stream().map(IndexHit::getId).toList(), actual.stream().map(IndexHit::getId).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDistance(), actual.get(i).getDistance(), 1e-5);
+        }
+    }
+
+    @Test
+    void searchesExactlyUntilCalibrated() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(QuantizationCalibration.GLOBAL, 10, 4, true, null);
+        index.add("x", new float[]{1, 0}, 0);
+        index.add("y", new float[]{0, 1}, 0);
+
+        assertFalse(index.isTrained());
+        assertEquals("x", index.search(new float[]{1, 0.1f}, 1).get(0).getId());
+        assertTrue(index.remove("x"));
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,37 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReciprocalRankFusionTest {
+
+    @Test
+    void fusesRankingsByReciprocalRank() {
+        List<IndexHit> vector = List.of(new IndexHit("x", 0.1, 0), new IndexHit("y", 0.2, 0), new IndexHit("z", 0.3, 0));
+        List<IndexHit> lexical = List.of(new IndexHit("z", -9, 0), new IndexHit("w", -5, 0));
+
+        assertEquals(List.of("z", "x"), ReciprocalRankFusion.fuse(60, 2, vector, lexical));
+    }
+
+    @Test
+    void largerKFavoursSectionsBothRetrieversFound() {
+        List<IndexHit> first = List.of(new IndexHit("a", 0.1, 0), new IndexHit("d", 0.2, 0), new IndexHit("c", 0.3, 0));
+        List<IndexHit> second = List.of(new IndexHit("b", -9, 0), new IndexHit("e", -8, 0), new IndexHit("c", -7, 0));
+
+        assertFalse(ReciprocalRankFusion.fuse(0, 1, first, second).contains("c"));
+        assertEquals(List.of("c"), ReciprocalRankFusion.fuse(60, 1, first, second));
+    }
+
+    @Test
+    void singleOrEmptyRankingsKeepTheirOrder() {
+        List<IndexHit> ranking = List.of(new IndexHit("a", 0.1, 0), new IndexHit("b", 0.2, 0));
+
+        assertEquals(List.of("a", "b"), ReciprocalRankFusion.fuse(60, 5, ranking, List.of()));
+        assertTrue(ReciprocalRankFusion.fuse(60, 5, List.of(), List.of()).isEmpty());
+    }
+}
@@ -0,0 +1,48 @@
+package com.qassistant.context.db.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopKTest {
+
+    @Test
+    void keepsSmallestDistancesInAscendingOrder() {
+        Random random = new Random(3);
+        double[] values = new double[1000];
+        TopK topK = new TopK(25);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+            topK.offer(i, values[i]);
+        }
+
+        int[] indexes = new int[topK.size()];
+        double[] distances = new double[topK.size()];
+        int count = topK.drainSorted(indexes, distances);
+
+        double[] expected = Arrays.stream(values).sorted().limit(25).toArray();
+        assertEquals(25, count);
+        assertArrayEquals(expected, distances);
+        for (int i = 0; i < count; i++) {
+            assertEquals(values[indexes[i]], distances[i]);
+        }
+    }
+
+    @Test
+    void returnsEverythingWhenFewerCandidatesThanK() {
+        TopK topK = new TopK(10);
+        topK.offer(0, 0.5);
+        topK.offer(1, 0.1);
+        topK.offer(2, 0.3);
+
+        int[] indexes = new int[topK.size()];
+        double[] distances = new double[topK.size()];
+        topK.drainSorted(indexes, distances);
+
+        assertArrayEquals(new int[]{1, 2, 0}, indexes);
+    }
+}
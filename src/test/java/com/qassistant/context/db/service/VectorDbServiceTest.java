@@ -0,0 +1,338 @@
+package com.qassistant.context.db.service;
+
+import com.qassistant.context.configs.GraphConfig;
+import com.qassistant.context.configs.VectorStoreConfig;
+import com.qassistant.context.db.dbEntity.FileSection;
+import com.qassistant.context.entities.ChunkResult;
+import com.qassistant.context.entities.Context;
+import com.qassistant.context.entities.ContextFilter;
+import com.qassistant.context.entities.DeletionJob;
+import com.qassistant.context.entities.FileChunk;
+import com.qassistant.context.services.EmbeddingGptService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.TransactionCallback;
+import org.neo4j.driver.TransactionContext;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.NoSuchRecordException;
+import org.neo4j.driver.summary.ResultSummary;
+import org.neo4j.driver.summary.SummaryCounters;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VectorDbServiceTest {
+    private static final String PROJECT_LOOKUP = "WHERE p.id = $projectId";
+    private static final String CHECKSUM_DIFF = "OPTIONAL MATCH (f:File {projectId: $projectId, path: row.path})";
+    private static final String STALE_DELETE = "UNWIND $paths AS path";
+    private static final String FILE_CREATE = "CREATE (f:File";
+    private static final String DOCUMENT_WRITE = "CALL db.create.setNodeVectorProperty";
+    private static final String VECTOR_QUERY = "db.index.vector.queryNodes";
+    private static final String EXACT_QUERY = "vector.similarity.cosine";
+
+    private final List<Statement> statements = new ArrayList<>();
+    private final Map<String, Function<Map<String, Object>, List<Map<String, Object>>>> responses = new LinkedHashMap<>();
+    private final EmbeddingGptService embeddingGptService = mock(EmbeddingGptService.class);
+    private final GraphConfig graphConfig = new GraphConfig();
+    private int transactions;
+
+    @BeforeEach
+    void setUp() {
+        respond(PROJECT_LOOKUP, parameters -> List.of(Map.of("id", "p1", "name", "demo")));
+    }
+
+    @Test
+    void changedFilesAreReplacedAndWrittenWithTheirDocumentsInOneTransaction() {
+        graphConfig.setIngestBatchSize(2);
+        respond(CHECKSUM_DIFF, parameters -> List.of(
+                Map.of("path", "a.txt", "status", "UNCHANGED"),
+                Map.of("path", "b.txt", "status", "CHANGED")));
+        embedAllSections();
+        List<FileChunk> chunks = List.of(
+                new FileChunk("p1", "a1", "a.txt", List.of("a")),
+                new FileChunk("p1", "b2", "b.txt", List.of("b", "bb")),
+                new FileChunk("p1", "c1", "c.txt", List.of("c")));
+
+        List<String> paths = service().indexChunkResult(new ChunkResult("p1", chunks, 3, 0));
+
+        assertEquals(List.of("a.txt", "b.txt", "c.txt"), paths);
+        List<Statement> deletes = statements(STALE_DELETE);
+        assertEquals(1, deletes.size());
+        assertEquals(List.of("b.txt"), deletes.get(0).parameters().get("paths"));
+        List<Statement> fileWrites = statements(FILE_CREATE);
+        List<Statement> documentWrites = statements(DOCUMENT_WRITE);
+        assertEquals(fileWrites.size(), documentWrites.size());
+        Set<String> writtenPaths = new HashSet<>();
+        int documents = 0;
+        for (int i = 0; i < fileWrites.size(); i++) {
+            assertTrue(fileWrites.get(i).transaction() > deletes.get(0).transaction());
+            assertEquals(fileWrites.get(i).transaction(), documentWrites.get(i).transaction());
+            Set<Object> fileIds = new HashSet<>();
+            for (Map<?, ?> file : rows(fileWrites.get(i), "files")) {
+                fileIds.add(file.get("id"));
+                writtenPaths.add((String) file.get("path"));
+            }
+            for (Map<?, ?> document : rows(documentWrites.get(i), "documents")) {
+                assertTrue(fileIds.contains(document.get("fileId")));
+                documents++;
+            }
+        }
+        assertEquals(Set.of("b.txt", "c.txt"), writtenPaths);
+        assertEquals(3, documents);
+    }
+
+    @Test
+    void staleFilesAreDeletedInBatchesAndFailedEmbeddingsAreNotStored() {
+        graphConfig.setIngestBatchSize(2);
+        respond(CHECKSUM_DIFF, parameters -> List.of(
+                Map.of("path", "a.txt", "status", "CHANGED"),
+                Map.of("path", "b.txt", "status", "CHANGED"),
+                Map.of("path", "c.txt", "status", "CHANGED")));
+        when(embeddingGptService.mapChunksToSections(anyList())).thenReturn(Map.of());
+        List<FileChunk> chunks = List.of(
+                new FileChunk("p1", "a2", "a.txt", List.of("a")),
+                new FileChunk("p1", "b2", "b.txt", List.of("b")),
+                new FileChunk("p1", "c2", "c.txt", List.of("c")));
+
+        service().indexChunkResult(new ChunkResult("p1", chunks, 3, 0));
+
+        List<Statement> deletes = statements(STALE_DELETE);
+        assertEquals(2, deletes.size());
+        assertEquals(2, ((List<?>) deletes.get(0).parameters().get("paths")).size());
+        assertEquals(1, ((List<?>) deletes.get(1).parameters().get("paths")).size());
+        assertNotEquals(deletes.get(0).transaction(), deletes.get(1).transaction());
+        assertEquals(List.of(), statements(FILE_CREATE));
+    }
+
+    @Test
+    void filesWithADocumentWithoutEmbeddingAreNotStored() {
+        respond(CHECKSUM_DIFF, parameters -> List.of());
+        when(embeddingGptService.mapChunksToSections(anyList())).thenAnswer(invocation -> {
+            Map<FileChunk, Set<FileSection>> sections = new HashMap<>();
+            for (FileChunk chunk : invocation.<List<FileChunk>>getArgument(0)) {
+                sections.put(chunk, chunk.sections().stream()
+                        .filter(section -> !section.equals("lost"))
+                        .map(section -> new FileSection(section, List.of(1.0, 0.0), 0))
+                        .collect(Collectors.toSet()));
+            }
+            return sections;
+        });
+        List<FileChunk> chunks = List.of(
+                new FileChunk("p1", "a1", "a.txt", List.of("a", "lost")),
+                new FileChunk("p1", "b1", "b.txt", List.of("b")));
+
+        service().indexChunkResult(new ChunkResult("p1", chunks, 2, 0));
+
+        List<Statement> fileWrites = statements(FILE_CREATE);
+        assertEquals(1, fileWrites.size());
+        assertEquals(List.of("b.txt"), rows(fileWrites.get(0), "files").stream().map(file -> file.get("path")).toList());
+        assertEquals(1, rows(statements(DOCUMENT_WRITE).get(0), "documents").size());
+    }
+
+    @Test
+    void projectDeletionRemovesDocumentsAndFilesInBatchedStatements() throws InterruptedException {
+        graphConfig.setDeleteBatchSize(100);
+        respond("-[:HAS]->(d:`Document`) CALL", parameters -> rows(3));
+        respond("CALL { WITH f DETACH DELETE f }", parameters -> rows(2));
+        respond("NOT ()-[:HAS]->(d)", parameters -> rows(1));
+        respond("DETACH DELETE p", parameters -> rows(1));
+
+        DeletionJob job = service().deleteProject("p1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(DeletionJob.Status.DONE, job.getStatus());
+        assertEquals(7, job.getDeletedNodes());
+        List<Statement> batched = statements("IN TRANSACTIONS OF 100 ROWS");
+        assertEquals(3, batched.size());
+        batched.forEach(statement -> assertEquals(0, statement.transaction()));
+    }
+
+    @Test
+    void contextIsRankedByWeightedDistanceInsideTheQuery() {
+        float[] embedding = {0.6f, 0.8f};
+        when(embeddingGptService.getQueryEmbedding("question")).thenReturn(embedding);
+        respond(VECTOR_QUERY, parameters -> List.of(
+                Map.of("id", "d1", "content", "answer", "distance", -0.3, "weight", 0.5),
+                Map.of("id", "d2", "content", "text", "distance", 0.2, "weight", 0.0)));
+
+        List<Context> context = service().findContext("p1", "question", 3, ContextFilter.NONE);
+
+        assertEquals(List.of(new Context(-0.3, "answer", "d1", 0.5), new Context(0.2, "text", "d2", 0.0)), context);
+        Statement query = statements(VECTOR_QUERY).get(0);
+        assertTrue(query.transaction() > 0);
+        assertTrue(query.query().contains("1.0 - score - weight AS distance"));
+        assertTrue(query.query().contains("ORDER BY distance ASC LIMIT $limit"));
+        assertEquals(12, query.parameters().get("candidates"));
+        assertEquals(3, query.parameters().get("limit"));
+        assertEquals("spring-ai-document-index", query.parameters().get("indexName"));
+        assertEquals(embedding, query.parameters().get("embedding"));
+    }
+
+    @Test
+    void filteredContextIsScoredExactlyOverTheMatchingFiles() {
+        when(embeddingGptService.getQueryEmbedding("question")).thenReturn(new float[]{1f, 0f});
+        respond("RETURN f.path AS path", parameters -> List.of(Map.of("path", "src/App.java"), Map.of("path", "docs/a.md")));
+        respond(EXACT_QUERY, parameters -> List.of(Map.of("id", "d1", "content", "class App", "distance", 0.1, "weight", 0.0)));
+
+        assertEquals(List.of(), service().findContext("p1", "question", 3, ContextFilter.parse("test/**")));
+        assertEquals(List.of(), statements(EXACT_QUERY));
+
+        List<Context> context = service().findContext("p1", "question", 3, ContextFilter.parse("src/**"));
+
+        assertEquals(List.of(new Context(0.1, "class App", "d1", 0.0)), context);
+        assertEquals(List.of(), statements(VECTOR_QUERY));
+        Statement query = statements(EXACT_QUERY).get(0);
+        assertTrue(query.query().contains("MATCH (f:File {projectId: $projectId})-[:HAS]->(node:`Document`) WHERE f.path IN $paths"));
+        assertTrue(query.query().contains("ORDER BY distance ASC LIMIT $limit"));
+        assertEquals(List.of("src/App.java"), query.parameters().get("paths"));
+    }
+
+    @Test
+    void batchLookupRunsOneStatementAndGroupsRowsByPrompt() {
+        when(embeddingGptService.getQueryEmbeddings(List.of("first", "second", "third")))
+                .thenReturn(List.of(new float[]{1f, 0f}, new float[]{0f, 1f}, new float[]{1f, 1f}));
+        respond(VECTOR_QUERY, parameters -> List.of(
+                Map.of("query", 1, "id", "d2", "content", "two", "distance", 0.1, "weight", 0.0),
+                Map.of("query", 0, "id", "d1", "content", "one", "distance", 0.2, "weight", 0.0),
+                Map.of("query", 1, "id", "d3", "content", "three", "distance", 0.3, "weight", 0.0)));
+
+        List<List<Context>> contexts = service().findContextBatch("p1", List.of("first", "second", "third"), 2, ContextFilter.NONE);
+
+        assertEquals(List.of(
+                List.of(new Context(0.2, "one", "d1", 0.0)),
+                List.of(new Context(0.1, "two", "d2", 0.0), new Context(0.3, "three", "d3", 0.0)),
+                List.of()), contexts);
+        List<Statement> queries = statements(VECTOR_QUERY);
+        assertEquals(1, queries.size());
+        assertTrue(queries.get(0).query().startsWith("UNWIND range(0, size($embeddings) - 1) AS query"));
+        assertEquals(3, ((List<?>) queries.get(0).parameters().get("embeddings")).size());
+    }
+
+    private VectorDbService service() {
+        Session session = mock(Session.class);
+        when(session.run(anyString(), anyMap())).thenAnswer(invocation ->
+                run(0, invocation.getArgument(0), invocation.getArgument(1)));
+        when(session.executeRead(any(TransactionCallback.class))).thenAnswer(invocation ->
+                inTransaction(invocation.getArgument(0)));
+        when(session.executeWrite(any(TransactionCallback.class))).thenAnswer(invocation ->
+                inTransaction(invocation.getArgument(0)));
+        Driver driver = mock(Driver.class);
+        when(driver.session()).thenReturn(session);
+        return new VectorDbService(mock(VectorStore.class), driver, embeddingGptService, graphConfig, new VectorStoreConfig());
+    }
+
+    private Object inTransaction(TransactionCallback<?> callback) {
+        int transaction = ++transactions;
+        TransactionContext tx = mock(TransactionContext.class);
+        when(tx.run(anyString(), anyMap())).thenAnswer(invocation ->
+                run(transaction, invocation.getArgument(0), invocation.getArgument(1)));
+        return callback.execute(tx);
+    }
+
+    /**
+     * Records the statement, in transaction 0 when it runs outside a managed transaction, and answers it with the
+     * rows of the first response whose key the query contains.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized Result run(int transaction, String query, Map<String, Object> parameters) {
+        statements.add(new Statement(transaction, query, parameters));
+        List<Map<String, Object>> rows = responses.entrySet().stream()
+                .filter(response -> query.contains(response.getKey()))
+                .findFirst()
+                .map(response -> response.getValue().apply(parameters))
+                .orElse(List.of());
+        List<Record> records = rows.stream().map(VectorDbServiceTest::record).toList();
+
+        Result result = mock(Result.class);
+        when(result.list()).thenReturn(records);
+        when(result.list(any(Function.class))).thenAnswer(invocation ->
+                records.stream().map(invocation.<Function<Record, Object>>getArgument(0)).collect(Collectors.toList()));
+        when(result.single()).thenAnswer(invocation -> {
+            if (records.size() != 1) {
+                throw new NoSuchRecordException("Expected one record, got " + records.size());
+            }
+            return records.get(0);
+        });
+        doAnswer(invocation -> {
+            records.forEach(invocation.<Consumer<Record>>getArgument(0));
+            return null;
+        }).when(result).forEachRemaining(any(Consumer.class));
+        SummaryCounters counters = mock(SummaryCounters.class);
+        when(counters.nodesDeleted()).thenReturn(records.size());
+        ResultSummary summary = mock(ResultSummary.class);
+        when(summary.counters()).thenReturn(counters);
+        when(result.consume()).thenReturn(summary);
+        return result;
+    }
+
+    private static Record record(Map<String, Object> values) {
+        Record record = mock(Record.class);
+        when(record.get(anyString())).thenAnswer(invocation -> Values.value(values.get(invocation.<String>getArgument(0))));
+        return record;
+    }
+
+    private void respond(String queryPart, Function<Map<String, Object>, List<Map<String, Object>>> rows) {
+        responses.put(queryPart, rows);
+    }
+
+    private void embedAllSections() {
+        when(embeddingGptService.mapChunksToSections(anyList())).thenAnswer(invocation -> {
+            Map<FileChunk, Set<FileSection>> sections = new HashMap<>();
+            for (FileChunk chunk : invocation.<List<FileChunk>>getArgument(0)) {
+                sections.put(chunk, chunk.sections().stream()
+                        .map(section -> new FileSection(section, List.of(1.0, 0.0), 0))
+                        .collect(Collectors.toSet()));
+            }
+            return sections;
+        });
+    }
+
+    private List<Statement> statements(String queryPart) {
+        return statements.stream().filter(statement -> statement.query().contains(queryPart)).toList();
+    }
+
+    private static List<Map<?, ?>> rows(Statement statement, String parameter) {
+        List<Map<?, ?>> rows = new ArrayList<>();
+        ((List<?>) statement.parameters().get(parameter)).forEach(row -> rows.add((Map<?, ?>) row));
+        return rows;
+    }
+
+    private static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(Map.of("1", 1));
+        }
+        return rows;
+    }
+
+    private record Statement(int transaction, String query, Map<String, Object> parameters) {
+    }
+}
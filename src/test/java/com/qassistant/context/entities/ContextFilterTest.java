@@ -0,0 +1,41 @@
+package com.qassistant.context.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextFilterTest {
+
+    @Test
+    void blankExpressionMatchesEverything() {
+        assertSame(ContextFilter.NONE, ContextFilter.parse(null));
+        assertSame(ContextFilter.NONE, ContextFilter.parse(" , "));
+        assertTrue(ContextFilter.NONE.matches("any/File.java"));
+    }
+
+    @Test
+    void matchesPathPrefixesAndExtensions() {
+        ContextFilter filter = ContextFilter.parse("src/main/**, *.yaml");
+
+        assertEquals(List.of("src/main/**", "*.yaml"), filter.getPatterns());
+        assertTrue(filter.matches("src/main/java/App.java"));
+        assertTrue(filter.matches("repo/src/main/App.java"));
+        assertTrue(filter.matches("deploy\\values.yaml"));
+        assertFalse(filter.matches("src/test/java/AppTest.java"));
+        assertFalse(filter.matches("values.yml"));
+    }
+
+    @Test
+    void singleStarStaysWithinSegment() {
+        ContextFilter filter = ContextFilter.parse("/docs/*.md,config/");
+
+        assertTrue(filter.matches("/docs/README.md"));
+        assertFalse(filter.matches("/docs/api/README.md"));
+        assertTrue(filter.matches("app/config/nested/application.properties"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.qassistant.context.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiGovernorTest {
+
+    @Test
+    void rateLimitIsRetriedAfterTheRequestedWaitAndHalvesConcurrency() {
+        ApiGovernor governor = governor(8);
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+
+        String result = governor.execute(ApiGovernor.Priority.BULK, 10, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RuntimeException("429 - Rate limit reached for requests. Please try again in 50ms.");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(4.25, governor.getConcurrencyLimit(), 1e-9);
+        assertEquals(0, governor.getInFlight());
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndSuccessesGrowConcurrency() {
+        ApiGovernor governor = governor(2);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RuntimeException.class, () -> governor.execute(ApiGovernor.Priority.BULK, 10, () -> {
+            attempts.incrementAndGet();
+            throw new RuntimeException("400 - This model's maximum context length is 8192 tokens");
+        }));
+        governor.execute(ApiGovernor.Priority.BULK, 10, () -> "ok");
+        governor.execute(ApiGovernor.Priority.BULK, 10, () -> "ok");
+
+        assertEquals(1, attempts.get());
+        assertEquals(2.9, governor.getConcurrencyLimit(), 1e-9);
+    }
+
+    @Test
+    void interactiveCallIsNotBlockedByBulkCallsHoldingAllSlots() throws Exception {
+        ApiGovernor governor = governor(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch bulkStarted = new CountDownLatch(1);
+        CountDownLatch releaseBulk = new CountDownLatch(1);
+        try {
+            Future<String> bulk = executor.submit(() -> governor.execute(ApiGovernor.Priority.BULK, 10, () -> {
+                bulkStarted.countDown();
+                await(releaseBulk);
+                return "bulk";
+            }));
+            assertTrue(bulkStarted.await(5, TimeUnit.SECONDS));
+            Future<String> queuedBulk = executor.submit(() -> governor.execute(ApiGovernor.Priority.BULK, 10, () -> "queued"));
+            AtomicBoolean queuedBulkDone = new AtomicBoolean(true);
+
+            String interactive = executor.submit(() -> governor.execute(ApiGovernor.Priority.INTERACTIVE, 10, () -> {
+                queuedBulkDone.set(queuedBulk.isDone());
+                return "interactive";
+            })).get(5, TimeUnit.SECONDS);
+
+            assertEquals("interactive", interactive);
+            assertFalse(queuedBulkDone.get());
+            releaseBulk.countDown();
+            assertEquals("bulk", bulk.get(5, TimeUnit.SECONDS));
+            assertEquals("queued", queuedBulk.get(5, TimeUnit.SECONDS));
+        } finally {
+            releaseBulk.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ApiGovernor governor(int initialConcurrency) {
+        return new ApiGovernor(100000, 10000000, initialConcurrency, 16, Duration.ofSeconds(10), 3,
+                Duration.ofMillis(1), Duration.ofMillis(10));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
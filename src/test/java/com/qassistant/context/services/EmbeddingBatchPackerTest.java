@@ -0,0 +1,28 @@
+package com.qassistant.context.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmbeddingBatchPackerTest {
+
+    @Test
+    void duplicatesAreSentOnceAndItemCountIsBounded() {
+        List<List<String>> batches = EmbeddingBatchPacker.pack(List.of("a", "b", "a", "c", "d", "b", "e"), 2, 1000);
+
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d"), List.of("e")), batches);
+    }
+
+    @Test
+    void tokenBudgetIsBoundedAndOversizedTextGetsItsOwnRequest() {
+        String small = "x".repeat(30);
+        String large = "y".repeat(600);
+        assertEquals(11, EmbeddingBatchPacker.estimateTokens(small));
+
+        List<List<String>> batches = EmbeddingBatchPacker.pack(List.of(small + 1, small + 2, large, small + 3), 100, 30);
+
+        assertEquals(List.of(List.of(small + 1, small + 2), List.of(large), List.of(small + 3)), batches);
+    }
+}
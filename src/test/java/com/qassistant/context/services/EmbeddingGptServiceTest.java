@@ -0,0 +1,127 @@
+package com.qassistant.context.services;
+
+import com.qassistant.context.configs.AiGptConfig;
+import com.qassistant.context.db.dbEntity.FileSection;
+import com.qassistant.context.entities.FileChunk;
+import com.qassistant.context.utils.MathUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.openai.OpenAiEmbeddingClient;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddingGptServiceTest {
+    private static final String REJECTED = "rejected";
+    private static final String UNAVAILABLE = "unavailable";
+
+    private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+    private final SectionEmbeddingCache sectionCache = new SectionEmbeddingCache(1 << 20, null, 1 << 20, 1 << 30);
+
+    @Test
+    void rejectedInputIsIsolatedBySplittingTheRequest() {
+        FileChunk first = new FileChunk("p1", "1", "a.txt", List.of("a", "b"));
+        FileChunk withRejected = new FileChunk("p1", "2", "b.txt", List.of(REJECTED, "c"));
+        FileChunk last = new FileChunk("p1", "3", "c.txt", List.of("d"));
+
+        Map<FileChunk, Set<FileSection>> sections = service(512).mapChunksToSections(List.of(first, withRejected, last));
+
+        assertEquals(List.of(
+                List.of("a", "b", REJECTED, "c", "d"),
+                List.of("a", "b"),
+                List.of(REJECTED, "c", "d"),
+                List.of(REJECTED),
+                List.of("c", "d")), requests);
+        assertEquals(Set.of(first, last), sections.keySet());
+        assertEmbedded(sections.get(first), "a", "b");
+        assertEmbedded(sections.get(last), "d");
+        // The accepted sections of the left-out chunk are cached for the next attempt.
+        assertNotNull(sectionCache.getIfPresent(SectionEmbeddingCache.key("text-embedding-3-large", 1536, "c")));
+        assertNull(sectionCache.getIfPresent(SectionEmbeddingCache.key("text-embedding-3-large", 1536, REJECTED)));
+    }
+
+    @Test
+    void sharedAndCachedSectionsAreFannedBackToEveryChunk() {
+        sectionCache.put(SectionEmbeddingCache.key("text-embedding-3-large", 1536, "cached"), vector("cached"));
+        FileChunk first = new FileChunk("p1", "1", "a.txt", List.of("x", "shared"));
+        FileChunk second = new FileChunk("p1", "2", "b.txt", List.of("shared", "z", "cached"));
+
+        Map<FileChunk, Set<FileSection>> sections = service(2).mapChunksToSections(List.of(first, second));
+
+        assertEquals(Set.of("x", "shared", "z"), requests.stream().flatMap(List::stream).collect(Collectors.toSet()));
+        assertEquals(3, requests.stream().mapToInt(List::size).sum());
+        assertEmbedded(sections.get(first), "x", "shared");
+        assertEmbedded(sections.get(second), "shared", "z", "cached");
+    }
+
+    @Test
+    void rejectedQueryFailsTheLookupAfterTheOthersAreEmbedded() {
+        EmbeddingGptService service = service(512);
+
+        assertThrows(RuntimeException.class, () -> service.getEmbeddings(List.of("a", REJECTED, "b")));
+        assertEquals(List.of(List.of("a", REJECTED, "b"), List.of("a"), List.of(REJECTED, "b"), List.of(REJECTED), List.of("b")), requests);
+    }
+
+    @Test
+    void serverErrorFailsTheRequestWithoutSplittingIt() {
+        FileChunk first = new FileChunk("p1", "1", "a.txt", List.of("a", "b"));
+        FileChunk second = new FileChunk("p1", "2", "b.txt", List.of(UNAVAILABLE, "c"));
+
+        Map<FileChunk, Set<FileSection>> sections = service(512).mapChunksToSections(List.of(first, second));
+
+        assertEquals(List.of(List.of("a", "b", UNAVAILABLE, "c")), requests);
+        assertEquals(Map.of(), sections);
+        assertThrows(RuntimeException.class, () -> service(512).getEmbeddings(List.of(UNAVAILABLE, "d")));
+        assertEquals(2, requests.size());
+    }
+
+    private EmbeddingGptService service(int batchSize) {
+        OpenAiEmbeddingClient client = mock(OpenAiEmbeddingClient.class);
+        when(client.embedForResponse(anyList())).thenAnswer(invocation -> {
+            List<String> texts = List.copyOf(invocation.<List<String>>getArgument(0));
+            requests.add(texts);
+            if (texts.contains(REJECTED)) {
+                throw new RuntimeException("400 - Invalid input");
+            }
+            if (texts.contains(UNAVAILABLE)) {
+                throw new RuntimeException("500 - The server had an error while processing your request");
+            }
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(MathUtils.toDoubleList(vector(texts.get(i))), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        });
+        AiGptConfig config = new AiGptConfig();
+        config.setEmbeddingBatchSize(batchSize);
+        ApiGovernor governor = new ApiGovernor(100000, 10000000, 1, 1, Duration.ofSeconds(10), 0,
+                Duration.ofMillis(1), Duration.ofMillis(10));
+        return new EmbeddingGptService(client, new QueryEmbeddingCache(1 << 20, Duration.ofHours(1), null, Clock.systemUTC()),
+                sectionCache, governor, config);
+    }
+
+    private static void assertEmbedded(Set<FileSection> sections, String... contents) {
+        assertEquals(Set.of(contents), sections.stream().map(FileSection::getContent).collect(Collectors.toSet()));
+        sections.forEach(section -> assertArrayEquals(MathUtils.normalize(vector(section.getContent())), section.getEmbedding(), 1e-6f));
+    }
+
+    private static float[] vector(String text) {
+        return new float[]{text.length(), text.charAt(0), 1};
+    }
+}
@@ -0,0 +1,83 @@
+package com.qassistant.context.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryEmbeddingCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void repeatedPromptIsEmbeddedOnce() {
+        QueryEmbeddingCache cache = new QueryEmbeddingCache(1 << 20, Duration.ofHours(1), null, Clock.systemUTC());
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("model", "How  does\n indexing work? ", () -> new float[]{calls.incrementAndGet()});
+        float[] vector = cache.get("model", "How does indexing work?", () -> new float[]{calls.incrementAndGet()});
+        cache.get("other-model", "How does indexing work?", () -> new float[]{calls.incrementAndGet()});
+
+        assertArrayEquals(new float[]{1}, vector);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedOverBudget() {
+        QueryEmbeddingCache cache = new QueryEmbeddingCache(3 * 600, Duration.ofHours(1), null, Clock.systemUTC());
+        for (int i = 0; i < 10; i++) {
+            cache.get("model", "prompt " + i, () -> new float[100]);
+        }
+
+        assertTrue(cache.getUsedBytes() <= 3 * 600);
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void expiredEntriesAreReloadedAndDiskTierSurvivesRestart() {
+        MutableClock clock = new MutableClock();
+        QueryEmbeddingCache cache = new QueryEmbeddingCache(1 << 20, Duration.ofMinutes(10), directory, clock);
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("model", "prompt", () -> new float[]{calls.incrementAndGet()});
+
+        QueryEmbeddingCache restarted = new QueryEmbeddingCache(1 << 20, Duration.ofMinutes(10), directory, clock);
+        assertArrayEquals(new float[]{1}, restarted.get("model", "prompt", () -> new float[]{calls.incrementAndGet()}));
+
+        clock.advance(Duration.ofMinutes(11));
+        assertArrayEquals(new float[]{2}, restarted.get("model", "prompt", () -> new float[]{calls.incrementAndGet()}));
+    }
+
+    private static final class MutableClock extends Clock {
+        final long start = System.currentTimeMillis();
+        long now = start;
+
+        void advance(Duration duration) {
+            now += duration.toMillis();
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.qassistant.context.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionEmbeddingCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keyDependsOnModelDimensionsAndExactText() {
+        String key = SectionEmbeddingCache.key("model", 1536, "int a;");
+
+        assertEquals(key, SectionEmbeddingCache.key("model", 1536, "int a;"));
+        assertNotEquals(key, SectionEmbeddingCache.key("other-model", 1536, "int a;"));
+        assertNotEquals(key, SectionEmbeddingCache.key("model", 256, "int a;"));
+        assertNotEquals(key, SectionEmbeddingCache.key("model", 1536, "int a; "));
+    }
+
+    @Test
+    void diskTierSurvivesRestartAndTruncatesTornRecord() throws IOException {
+        SectionEmbeddingCache cache = new SectionEmbeddingCache(1 << 20, directory, 1 << 20, 1 << 30);
+        String first = SectionEmbeddingCache.key("model", 3, "first");
+        String second = SectionEmbeddingCache.key("model", 3, "second");
+        cache.put(first, new float[]{1, 2, 3});
+        cache.put(second, new float[]{4, 5, 6});
+        cache.close();
+
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+
+        SectionEmbeddingCache restarted = new SectionEmbeddingCache(1 << 20, directory, 1 << 20, 1 << 30);
+        assertArrayEquals(new float[]{1, 2, 3}, restarted.getIfPresent(first));
+        assertNull(restarted.getIfPresent(second));
+        assertEquals(0.5, restarted.getHitRatio());
+
+        restarted.put(second, new float[]{4, 5, 6});
+        restarted.close();
+        assertArrayEquals(new float[]{4, 5, 6},
+                new SectionEmbeddingCache(1 << 20, directory, 1 << 20, 1 << 30).getIfPresent(second));
+    }
+
+    @Test
+    void compactionOverBudgetKeepsEntriesThatWereRead() throws IOException {
+        // Records of four dimensions take 56 bytes, so every segment holds two of them.
+        SectionEmbeddingCache cache = new SectionEmbeddingCache(0, directory, 112, 5 * 56);
+        for (int i = 0; i < 4; i++) {
+            cache.put(SectionEmbeddingCache.key("model", 4, "section " + i), new float[]{i, i, i, i});
+        }
+        assertNotNull(cache.getIfPresent(SectionEmbeddingCache.key("model", 4, "section 0")));
+
+        cache.put(SectionEmbeddingCache.key("model", 4, "section 4"), new float[4]);
+        cache.put(SectionEmbeddingCache.key("model", 4, "section 5"), new float[4]);
+
+        assertTrue(cache.getDiskBytes() <= 5 * 56);
+        assertEquals(5, cache.diskSize());
+        assertArrayEquals(new float[]{0, 0, 0, 0}, cache.getIfPresent(SectionEmbeddingCache.key("model", 4, "section 0")));
+        assertNull(cache.getIfPresent(SectionEmbeddingCache.key("model", 4, "section 1")));
+        assertEquals(cache.getDiskBytes(), segments().stream().mapToLong(this::size).sum());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.qassistant.context.utils;
+
+import java.util.Random;
+
+/**
+ * Vectors shared by the index and kernel tests.
+ */
+public final class TestVectors {
+
+    private TestVectors() {
+    }
+
+    /**
+     * @return a vector of standard normal components, so its direction is uniformly distributed
+     */
+    public static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,59 @@
+package com.qassistant.context.utils.kernels;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static com.qassistant.context.utils.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VectorKernelsTest {
+    private final VectorKernels selected = VectorKernelsFactory.getInstance();
+    private final VectorKernels scalar = VectorKernelsFactory.scalar();
+
+    @Test
+    void selectedKernelsMatchScalarKernels() {
+        Random random = new Random(11);
+        // Odd length so the vector loops also run their scalar tail.
+        int length = 1539;
+        float[] a = randomVector(random, length);
+        float[] b = randomVector(random, length);
+
+        assertEquals(scalar.dot(a, b), selected.dot(a, b), 1e-2);
+        assertEquals(scalar.squaredL2(a, b), selected.squaredL2(a, b), 1e-1);
+        assertEquals(scalar.cosine(a, b), selected.cosine(a, b), 1e-4);
+        assertEquals(scalar.dot(a, 3, b, 7, 100), selected.dot(a, 3, b, 7, 100), 1e-3);
+    }
+
+    @Test
+    void bufferDotMatchesHeapDot() {
+        Random random = new Random(5);
+        float[] a = randomVector(random, 37);
+        float[] b = randomVector(random, 37);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8 + b.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < b.length; i++) {
+            buffer.putFloat(8 + i * Float.BYTES, b[i]);
+        }
+
+        assertEquals(scalar.dot(a, b), scalar.dot(a, buffer, 8, b.length), 1e-4);
+        assertEquals(scalar.dot(a, b), selected.dot(a, buffer, 8, b.length), 1e-4);
+    }
+
+    @Test
+    void int8DotIsExact() {
+        Random random = new Random(9);
+        byte[] a = new byte[301];
+        byte[] b = new byte[301];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        int expected = 0;
+        for (int i = 0; i < a.length; i++) {
+            expected += a[i] * b[i];
+        }
+
+        assertEquals(expected, scalar.dot(a, 0, b, 0, a.length));
+        assertEquals(expected, selected.dot(a, 0, b, 0, a.length));
+    }
+}